@@ -0,0 +1,96 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfFile;
+import com.pdf.pdfapi.service.PdfOutputStorage;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap allocated per operation with and without {@code pdfapi.buffers.pooled}. Run with {@code -prof gc}:
+ * {@code gc.alloc.rate.norm} is the garbage each call leaves behind, which drives the young collections under load.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class AllocationBenchmark {
+
+    @Param({"false", "true"})
+    private boolean pooled;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] documents;
+    private MultipartFile[] images;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getBuffers().setPooled(pooled);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig, new DiscardingStorage());
+        documents = new MultipartFile[]{BenchmarkDocuments.pdf(workDirectory, "first", 200), BenchmarkDocuments.pdf(workDirectory, "second", 200)};
+        images = new MultipartFile[]{BenchmarkDocuments.png(workDirectory, "first", 800, 600), BenchmarkDocuments.png(workDirectory, "second", 800, 600)};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void merge() {
+        pdfService.merge(documents);
+    }
+
+    @Benchmark
+    public void extract() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), documents[0], 1, 100);
+    }
+
+    @Benchmark
+    public void convertImageToPDF() {
+        pdfService.convertImageToPDF(true, images);
+    }
+
+    /**
+     * Keeps nothing, so stored results do not pile up on the heap between invocations.
+     */
+    private static class DiscardingStorage implements PdfOutputStorage {
+
+        @Override
+        public void write(String name, byte[] content) {
+        }
+
+        @Override
+        public List<PdfFile> list() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<PdfFile> find(String name) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void transfer(PdfFile file, long start, long length, OutputStream outputStream) {
+        }
+
+        @Override
+        public void delete(String name) {
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.LocalPdfOutputStorage;
+import com.pdf.pdfapi.service.PdfBufferPool;
+import com.pdf.pdfapi.service.PdfConcurrencyLimiter;
+import com.pdf.pdfapi.service.PdfInputFactory;
+import com.pdf.pdfapi.service.PdfLinearizer;
+import com.pdf.pdfapi.service.PdfMetrics;
+import com.pdf.pdfapi.service.PdfOutputStorage;
+import com.pdf.pdfapi.service.PdfOutputWriter;
+import com.pdf.pdfapi.service.PdfPreflight;
+import com.pdf.pdfapi.service.PdfResultCache;
+import com.pdf.pdfapi.service.PdfService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Synthetic inputs and service wiring shared by the benchmarks.
+ */
+final class BenchmarkDocuments {
+
+    private BenchmarkDocuments() {
+    }
+
+    static PdfService pdfService(PdfConfig pdfConfig) throws IOException {
+        return pdfService(pdfConfig, new LocalPdfOutputStorage(pdfConfig));
+    }
+
+    static PdfService pdfService(PdfConfig pdfConfig, PdfOutputStorage pdfOutputStorage) throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfBufferPool pdfBufferPool = new PdfBufferPool(pdfConfig, meterRegistry);
+        return new PdfService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), new PdfMetrics(meterRegistry), new PdfResultCache(pdfConfig, pdfBufferPool, meterRegistry), new PdfLinearizer(pdfConfig, meterRegistry), new PdfConcurrencyLimiter(pdfConfig, meterRegistry),
+                new PdfOutputWriter(pdfConfig, pdfOutputStorage, meterRegistry), new PdfPreflight(pdfConfig, pdfBufferPool, meterRegistry), pdfBufferPool);
+    }
+
+    static PdfConfig pdfConfig(Path outputFolder) {
+        PdfConfig pdfConfig = new PdfConfig();
+        pdfConfig.setOutputFolder(outputFolder.toString() + "/");
+        // every invocation repeats the same inputs, so the result cache would turn the benchmarks into cache reads
+        pdfConfig.getCache().setEnabled(false);
+        return pdfConfig;
+    }
+
+    static Path workDirectory() throws IOException {
+        return Files.createTempDirectory("pdfapi-bench-");
+    }
+
+    static void delete(Path workDirectory) throws IOException {
+        FileSystemUtils.deleteRecursively(workDirectory);
+    }
+
+    /**
+     * Writes a PDF with {@code pages} text pages into {@code workDirectory} and returns it as an upload.
+     */
+    static MultipartFile pdf(Path workDirectory, String name, int pages) throws IOException {
+        Path path = workDirectory.resolve(name + ".pdf");
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(path.toString()))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                new PdfCanvas(pdfDocument.addNewPage())
+                        .beginText()
+                        .setFontAndSize(font, 12)
+                        .moveText(36, 800)
+                        .showText(String.format("%s - page %d of %d", name, i, pages))
+                        .endText();
+            }
+        }
+        return new DiskMultipartFile(path);
+    }
+
+    /**
+     * Writes a PDF whose {@code pages} pages all carry {@code logo}, like documents generated from one template,
+     * and returns it as an upload. Documents written with the same logo embed identical image streams.
+     */
+    static MultipartFile template(Path workDirectory, String name, int pages, MultipartFile logo) throws IOException {
+        Path path = workDirectory.resolve(name + ".pdf");
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(path.toString()))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            ImageData logoData = ImageDataFactory.create(logo.getBytes());
+            for (int i = 1; i <= pages; i++) {
+                PdfCanvas canvas = new PdfCanvas(pdfDocument.addNewPage());
+                canvas.addImageFittedIntoRectangle(logoData, new Rectangle(36, 700, 124, 124), false);
+                canvas.beginText()
+                        .setFontAndSize(font, 12)
+                        .moveText(36, 650)
+                        .showText(String.format("%s - page %d of %d", name, i, pages))
+                        .endText();
+            }
+        }
+        return new DiskMultipartFile(path);
+    }
+
+    /**
+     * Writes a PNG of the given size into {@code workDirectory} and returns it as an upload.
+     */
+    static MultipartFile png(Path workDirectory, String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.WHITE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        Path path = workDirectory.resolve(name + ".png");
+        Files.write(path, outputStream.toByteArray());
+        return new DiskMultipartFile(path);
+    }
+
+}
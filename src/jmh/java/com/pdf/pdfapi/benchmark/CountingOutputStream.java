@@ -0,0 +1,39 @@
+package com.pdf.pdfapi.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+
+/**
+ * Discards what is written and only counts it, so that benchmarks can report the size of their results.
+ */
+public final class CountingOutputStream extends OutputStream {
+
+    /**
+     * Reports the size of the last result as the {@code outputBytes} counter next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class OutputSize {
+        public long outputBytes;
+    }
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    long count() {
+        return count;
+    }
+
+}
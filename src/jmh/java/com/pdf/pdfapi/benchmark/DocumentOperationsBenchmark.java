@@ -0,0 +1,82 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfBufferPool;
+import com.pdf.pdfapi.service.PdfDocumentHandle;
+import com.pdf.pdfapi.service.PdfDocumentService;
+import com.pdf.pdfapi.service.PdfInputFactory;
+import com.pdf.pdfapi.service.PdfService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Single-document operations (extract, remove) on synthetic documents of increasing size, both on an upload and on a
+ * document registered once with {@link PdfDocumentService}. Results are streamed to a null sink so that only the PDF
+ * work is measured.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class DocumentOperationsBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    private int pages;
+
+    @Param({"1", "100"})
+    private int maxPageCount;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+    private PdfDocumentService pdfDocumentService;
+    private PdfDocumentHandle handle;
+    private Integer[] everyOtherPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+        pdfDocumentService = new PdfDocumentService(pdfConfig, new PdfInputFactory(pdfConfig, new PdfBufferPool(pdfConfig, new SimpleMeterRegistry())), new SimpleMeterRegistry());
+        handle = pdfDocumentService.register(file);
+        everyOtherPage = IntStream.iterate(1, page -> page <= pages, page -> page + 2).boxed().toArray(Integer[]::new);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pdfDocumentService.shutdown();
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void extract() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), file, 1, Math.min(pages, maxPageCount));
+    }
+
+    @Benchmark
+    public void remove() {
+        pdfService.removeTo(OutputStream.nullOutputStream(), file, everyOtherPage);
+    }
+
+    @Benchmark
+    public void extractRegistered() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), handle, 1, Math.min(pages, maxPageCount));
+    }
+
+    @Benchmark
+    public void removeRegistered() {
+        pdfService.removeTo(OutputStream.nullOutputStream(), handle, everyOtherPage);
+    }
+
+}
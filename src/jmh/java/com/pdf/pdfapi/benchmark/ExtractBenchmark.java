@@ -0,0 +1,76 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Extracting {@code ranges} ranges of 10 pages from a large document: one {@code extractTo} call per range, as clients
+ * had to before, against a single multi-range call producing one combined document or one document per range.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class ExtractBenchmark {
+
+    @Param({"1000"})
+    private int pages;
+
+    @Param({"10", "50"})
+    private int ranges;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+    private PageSet pageSet;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getSplit().setParallelism(parallelism);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+        int step = pages / ranges;
+        pageSet = PageSet.parse(IntStream.range(0, ranges).mapToObj(i -> (i * step + 1) + "-" + (i * step + 10)).collect(Collectors.joining(",")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void oneCallPerRange() {
+        int step = pages / ranges;
+        for (int i = 0; i < ranges; i++) {
+            pdfService.extractTo(OutputStream.nullOutputStream(), file, i * step + 1, i * step + 10);
+        }
+    }
+
+    @Benchmark
+    public void combined() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), file, pageSet, false);
+    }
+
+    @Benchmark
+    public void separate() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), file, pageSet, true);
+    }
+
+}
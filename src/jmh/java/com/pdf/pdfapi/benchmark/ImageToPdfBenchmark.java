@@ -0,0 +1,60 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image conversion into one PDF per image or a single document, decoding sequentially or in parallel
+ * ({@code pdfapi.images.parallelism}).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class ImageToPdfBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int imageCount;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param({"false", "true"})
+    private boolean singleDocument;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] images;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getImages().setParallelism(parallelism);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        images = new MultipartFile[imageCount];
+        for (int i = 0; i < imageCount; i++) {
+            images[i] = BenchmarkDocuments.png(workDirectory, "image" + i, 1240, 1754);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void convertImageToPDF() {
+        pdfService.convertImageToPDFTo(OutputStream.nullOutputStream(), singleDocument, images);
+    }
+
+}
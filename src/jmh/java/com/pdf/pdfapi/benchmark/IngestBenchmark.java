@@ -0,0 +1,130 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.PdfApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of merging {@code fileCount} 200 page documents over HTTP when the client uploads each of them in
+ * {@code uploadMillisPerFile}, through {@code /pdfapi/stream/merge}, which starts once the whole request is received,
+ * and through {@code /pdfapi/ingest/merge}, which merges each file while the next is still uploading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class IngestBenchmark {
+
+    private static final String BOUNDARY = "pdfapi-benchmark-boundary";
+
+    @Param({"4", "16"})
+    private int fileCount;
+
+    @Param({"0", "5", "20"})
+    private int uploadMillisPerFile;
+
+    @Param({"stream", "ingest"})
+    private String endpoint;
+
+    private Path workDirectory;
+    private ConfigurableApplicationContext context;
+    private ExecutorService uploader;
+    private URI uri;
+    private byte[] body;
+    private int chunk;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        workDirectory = BenchmarkDocuments.workDirectory();
+        MultipartFile document = BenchmarkDocuments.pdf(workDirectory, "document", 200);
+
+        SpringApplication application = new SpringApplication(PdfApiApplication.class);
+        application.setDefaultProperties(Map.of(
+                "server.port", "0",
+                "pdfapi.output_folder", workDirectory + "/",
+                // every request repeats the same inputs, so the result cache would turn the benchmark into cache reads
+                "pdfapi.cache.enabled", "false",
+                "spring.devtools.restart.enabled", "false",
+                "logging.level.root", "WARN"));
+        context = application.run();
+
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        uri = URI.create("http://localhost:" + port + "/pdfapi/" + endpoint + "/merge");
+        uploader = Executors.newSingleThreadExecutor();
+        body = multipart(document, fileCount);
+        // sent in 1 ms steps, so that each file takes uploadMillisPerFile
+        chunk = uploadMillisPerFile == 0 ? body.length : (int) Math.max(1, document.getSize() / uploadMillisPerFile);
+
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        uploader.shutdown();
+        context.close();
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    /**
+     * Sends the request over a plain socket, writing the body on another thread while the response is read, so that a
+     * response which starts before the upload has ended is consumed as it arrives, as curl or a browser would.
+     */
+    @Benchmark
+    public int merge() throws Exception {
+        try (Socket socket = new Socket(uri.getHost(), uri.getPort())) {
+            socket.setTcpNoDelay(true);
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(String.format("POST %s HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n"
+                    + "Content-Type: multipart/form-data; boundary=%s\r\nContent-Length: %d\r\n\r\n", uri.getPath(), BOUNDARY, body.length)
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            Future<?> upload = uploader.submit(() -> {
+                for (int offset = 0; offset < body.length; offset += chunk) {
+                    outputStream.write(body, offset, Math.min(chunk, body.length - offset));
+                    if (uploadMillisPerFile > 0) {
+                        Thread.sleep(1);
+                    }
+                }
+                outputStream.flush();
+                return null;
+            });
+            byte[] response = socket.getInputStream().readAllBytes();
+            upload.get();
+            String statusLine = new String(response, 0, Math.min(response.length, 12), StandardCharsets.ISO_8859_1);
+            if (!statusLine.equals("HTTP/1.1 200")) {
+                throw new IllegalStateException(uri + " answered " + statusLine);
+            }
+            return response.length;
+        }
+    }
+
+    private static byte[] multipart(MultipartFile file, int count) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + i + ".pdf"
+                    + "\"\r\nContent-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.write(file.getBytes());
+            body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+}
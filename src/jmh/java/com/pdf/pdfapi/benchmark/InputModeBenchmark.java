@@ -0,0 +1,56 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap versus memory-mapped input ({@code pdfapi.input.mapped-threshold}) on a parse-dominated operation.
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} shows the per-operation heap copy that the mapped
+ * path avoids, which is what bounds peak heap when many large uploads are processed at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class InputModeBenchmark {
+
+    @Param({"1000", "10000"})
+    private int pages;
+
+    @Param({"heap", "mapped"})
+    private String mode;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getInput().setMappedThreshold("mapped".equals(mode) ? DataSize.ofBytes(0) : DataSize.ofBytes(Long.MAX_VALUE));
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void extractFirstPage() {
+        pdfService.extractTo(OutputStream.nullOutputStream(), file, 1, 1);
+    }
+
+}
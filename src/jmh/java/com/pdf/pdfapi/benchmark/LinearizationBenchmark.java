@@ -0,0 +1,68 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code pdfapi.output.linearize} on merge and extract: the qpdf run is added to the latency, and the hint
+ * tables to the size reported as {@code outputBytes}. The {@code true} runs need qpdf on the {@code PATH}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class LinearizationBenchmark {
+
+    @Param({"false", "true"})
+    private boolean linearize;
+
+    @Param({"10"})
+    private int fileCount;
+
+    @Param({"100"})
+    private int pagesPerFile;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] files;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getOutput().setLinearize(linearize);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        files = new MultipartFile[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            files[i] = BenchmarkDocuments.pdf(workDirectory, "document" + i, pagesPerFile);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void merge(CountingOutputStream.OutputSize outputSize) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        pdfService.mergeTo(outputStream, files);
+        outputSize.outputBytes = outputStream.count();
+    }
+
+    @Benchmark
+    public void extract(CountingOutputStream.OutputSize outputSize) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        pdfService.extractTo(outputStream, files[0], 1, pagesPerFile / 2);
+        outputSize.outputBytes = outputStream.count();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge of many files, sequential ({@code parallelism = 1}) and by parallel tree reduction.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class MergeBenchmark {
+
+    @Param({"2", "10", "100", "500"})
+    private int fileCount;
+
+    @Param({"1", "100"})
+    private int pagesPerFile;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] files;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getMerge().setParallelism(parallelism);
+        pdfConfig.getMerge().setParallelThreshold(2);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        files = new MultipartFile[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            files[i] = BenchmarkDocuments.pdf(workDirectory, "document" + i, pagesPerFile);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void merge() {
+        pdfService.mergeTo(OutputStream.nullOutputStream(), files);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.PdfApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed HTTP traffic against the running application: 2 clients streaming merges of two 200 page documents while
+ * 14 clients stream 5 page extracts, with request handling on Tomcat's platform thread pool or on virtual threads
+ * ({@code spring.threads.virtual.enabled}) and with merges unlimited or capped at one at a time
+ * ({@code pdfapi.concurrency.limits.merge}). The latency percentiles of each request type are reported separately.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class MixedTrafficBenchmark {
+
+    private static final String BOUNDARY = "pdfapi-benchmark-boundary";
+
+    @Param({"false", "true"})
+    private boolean virtualThreads;
+
+    @Param({"0", "1"})
+    private int mergeLimit;
+
+    private Path workDirectory;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private HttpRequest merge;
+    private HttpRequest extract;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        workDirectory = BenchmarkDocuments.workDirectory();
+        MultipartFile large = BenchmarkDocuments.pdf(workDirectory, "large", 200);
+        MultipartFile small = BenchmarkDocuments.pdf(workDirectory, "small", 100);
+
+        SpringApplication application = new SpringApplication(PdfApiApplication.class);
+        application.setDefaultProperties(Map.of(
+                "server.port", "0",
+                "pdfapi.output_folder", workDirectory + "/",
+                // every request repeats the same inputs, so the result cache would turn the benchmark into cache reads
+                "pdfapi.cache.enabled", "false",
+                "spring.threads.virtual.enabled", String.valueOf(virtualThreads),
+                "spring.devtools.restart.enabled", "false",
+                "logging.level.root", "WARN"));
+        String[] args = mergeLimit > 0 ? new String[]{"--pdfapi.concurrency.limits.merge=" + mergeLimit} : new String[0];
+        context = application.run(args);
+
+        String baseUri = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort() + "/pdfapi/stream/";
+        httpClient = HttpClient.newHttpClient();
+        merge = post(baseUri + "merge", multipart(Map.of(), large, large));
+        extract = post(baseUri + "extract", multipart(Map.of("startPage", "1", "endPage", "5"), small));
+
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public int merge() throws IOException, InterruptedException {
+        return send(merge);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(14)
+    public int extract() throws IOException, InterruptedException {
+        return send(extract);
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private static HttpRequest post(String uri, byte[] body) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static byte[] multipart(Map<String, String> fields, MultipartFile... files) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n"
+                    + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        for (MultipartFile file : files) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + file.getOriginalFilename()
+                    + "\"\r\nContent-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.write(file.getBytes());
+            body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+}
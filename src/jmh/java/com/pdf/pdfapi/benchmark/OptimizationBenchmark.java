@@ -0,0 +1,72 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output size against CPU time for each {@code pdfapi.output.optimization} level. Inputs are generated from one
+ * template, so they share an embedded image the way real letterheads share fonts and logos. The size of the last
+ * result is reported as the {@code outputBytes} counter next to the timings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class OptimizationBenchmark {
+
+    @Param({"NONE", "COMPRESSED", "SMART"})
+    private PdfConfig.Output.Optimization optimization;
+
+    @Param({"10"})
+    private int fileCount;
+
+    @Param({"10"})
+    private int pagesPerFile;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] files;
+    private MultipartFile document;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getOutput().setOptimization(optimization);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        MultipartFile logo = BenchmarkDocuments.png(workDirectory, "logo", 400, 400);
+        files = new MultipartFile[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            files[i] = BenchmarkDocuments.template(workDirectory, "document" + i, pagesPerFile, logo);
+        }
+        document = BenchmarkDocuments.template(workDirectory, "document", fileCount * pagesPerFile, logo);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void merge(CountingOutputStream.OutputSize outputSize) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        pdfService.mergeTo(outputStream, files);
+        outputSize.outputBytes = outputStream.count();
+    }
+
+    @Benchmark
+    public void split(CountingOutputStream.OutputSize outputSize) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        pdfService.splitTo(outputStream, document, pagesPerFile);
+        outputSize.outputBytes = outputStream.count();
+    }
+
+}
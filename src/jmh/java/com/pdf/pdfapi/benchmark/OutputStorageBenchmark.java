@@ -0,0 +1,102 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfFile;
+import com.pdf.pdfapi.service.PdfOutputStorage;
+import com.pdf.pdfapi.service.PdfOutputWriter;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge into a storage answering after {@code latencyMillis}, like a remote object store: rendering and then storing
+ * in the calling thread, as the operations did before, against handing the result to {@link PdfOutputWriter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class OutputStorageBenchmark {
+
+    @Param({"0", "20"})
+    private int latencyMillis;
+
+    private Path workDirectory;
+    private PdfOutputStorage storage;
+    private PdfService pdfService;
+    private MultipartFile[] files;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getStorage().setWriters(8);
+        storage = new SlowStorage(latencyMillis);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig, storage);
+        files = new MultipartFile[]{BenchmarkDocuments.pdf(workDirectory, "first", 100), BenchmarkDocuments.pdf(workDirectory, "second", 100)};
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void renderThenStore() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        pdfService.mergeTo(outputStream, files);
+        storage.write(PdfOutputWriter.uniqueName("merged_", ".pdf"), outputStream.toByteArray());
+    }
+
+    @Benchmark
+    public void renderAndQueue() {
+        pdfService.merge(files);
+    }
+
+    /**
+     * Discards what it is given after sleeping, so only the latency of a store is simulated.
+     */
+    private record SlowStorage(int latencyMillis) implements PdfOutputStorage {
+
+        @Override
+        public void write(String name, byte[] content) throws IOException {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public List<PdfFile> list() {
+            return List.of();
+        }
+
+        @Override
+        public Optional<PdfFile> find(String name) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void transfer(PdfFile file, long start, long length, OutputStream outputStream) {
+        }
+
+        @Override
+        public void delete(String name) {
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfPipelineStep;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The typical job of merging two documents, removing two pages, extracting the first half and splitting it, run one
+ * operation at a time (each result uploaded again, as a client chaining the endpoints would) against a single
+ * pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class PipelineBenchmark {
+
+    @Param({"100", "1000"})
+    private int pagesPerFile;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile[] files;
+    private List<PdfPipelineStep> steps;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        pdfService = BenchmarkDocuments.pdfService(BenchmarkDocuments.pdfConfig(workDirectory));
+        files = new MultipartFile[]{
+                BenchmarkDocuments.pdf(workDirectory, "a", pagesPerFile),
+                BenchmarkDocuments.pdf(workDirectory, "b", pagesPerFile)
+        };
+        steps = PdfPipelineStep.parse(String.format("merge;remove:3,7;extract:1-%d;split:10", pagesPerFile));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void oneOperationAtATime() {
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        pdfService.mergeTo(merged, files);
+        ByteArrayOutputStream removed = new ByteArrayOutputStream();
+        pdfService.removeTo(removed, upload(merged), 3, 7);
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        pdfService.extractTo(extracted, upload(removed), 1, pagesPerFile);
+        pdfService.splitTo(OutputStream.nullOutputStream(), upload(extracted), 10);
+    }
+
+    @Benchmark
+    public void pipeline() {
+        pdfService.pipelineTo(OutputStream.nullOutputStream(), steps, files);
+    }
+
+    private static MultipartFile upload(ByteArrayOutputStream result) {
+        return new MockMultipartFile("file", result.toByteArray());
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejecting an extract of pages past the end of a document: by the pre-flight check against failing inside the
+ * operation, which is where such requests were found before. The document is read from disk, as uploads beyond
+ * {@code pdfapi.input.mapped-threshold} are.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class PreflightBenchmark {
+
+    @Param({"100", "10000"})
+    private int pages;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+    private PageSet beyondLastPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getInput().setMappedThreshold(DataSize.ofBytes(0));
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+        beyondLastPage = PageSet.range(1, pages + 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public PdfErrorException rejectByPreflight() {
+        try {
+            pdfService.validateExtract(file, beyondLastPage);
+            throw new IllegalStateException("Not rejected");
+        } catch (PdfErrorException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public PdfErrorException rejectInsideOperation() {
+        try {
+            pdfService.extractTo(OutputStream.nullOutputStream(), file, beyondLastPage, false);
+            throw new IllegalStateException("Not rejected");
+        } catch (PdfErrorException e) {
+            return e;
+        }
+    }
+
+}
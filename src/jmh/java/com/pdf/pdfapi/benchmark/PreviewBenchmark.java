@@ -0,0 +1,66 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Previews of 10 pages of a template document carrying a logo and a line of text, rendered by {@code parallelism}
+ * workers, with the page cache turned off ({@code cold}) or holding every page from the previous call ({@code warm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+public class PreviewBenchmark {
+
+    private static final PageSet PAGES = PageSet.parse("1-10");
+
+    @Param({"72", "150"})
+    private int dpi;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    @Param({"cold", "warm"})
+    private String cache;
+
+    private Path workDirectory;
+    private PdfPreviewService pdfPreviewService;
+    private MultipartFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getPreview().setParallelism(parallelism);
+        pdfConfig.getPreview().setCacheSize(cache.equals("cold") ? DataSize.ofBytes(0) : DataSize.ofMegabytes(32));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfBufferPool pdfBufferPool = new PdfBufferPool(pdfConfig, meterRegistry);
+        pdfPreviewService = new PdfPreviewService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), new PdfMetrics(meterRegistry),
+                new PdfConcurrencyLimiter(pdfConfig, meterRegistry), new PdfPreflight(pdfConfig, pdfBufferPool, meterRegistry), new PdfPreviewCache(pdfConfig, meterRegistry));
+        file = BenchmarkDocuments.template(workDirectory, "document", 20, BenchmarkDocuments.png(workDirectory, "logo", 400, 400));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public long preview() {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        pdfPreviewService.previewTo(outputStream, file, PAGES, dpi);
+        return outputStream.count();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Removing {@code removedPages} pages spread over a large document: the former loop calling
+ * {@link PdfDocument#removePage(int)} once per page as given, the bulk removal of
+ * {@link PdfService#removeTo(OutputStream, MultipartFile, PageSet)}, and copying the kept pages into a new document
+ * in one {@link PdfDocument#copyPagesTo} call as registered documents do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class RemoveBenchmark {
+
+    @Param({"10000"})
+    private int pages;
+
+    @Param({"10", "1000", "5000"})
+    private int removedPages;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+    private byte[] content;
+    private Integer[] removed;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        pdfService = BenchmarkDocuments.pdfService(BenchmarkDocuments.pdfConfig(workDirectory));
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+        content = file.getBytes();
+        int step = pages / removedPages;
+        removed = IntStream.iterate(1, page -> page <= pages, page -> page + step).limit(removedPages).boxed().toArray(Integer[]::new);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void removePageLoop() throws IOException {
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(content)), new PdfWriter(OutputStream.nullOutputStream()));
+        int removeCount = 0;
+        for (Integer pageNumber : removed) {
+            pdfDocument.removePage(pageNumber - removeCount++);
+        }
+        pdfDocument.close();
+    }
+
+    @Benchmark
+    public void copyKeptPages() throws IOException {
+        BitSet removedSet = PageSet.of(removed).resolve(pages);
+        List<Integer> kept = IntStream.rangeClosed(1, pages).filter(page -> !removedSet.get(page)).boxed().toList();
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(content)));
+        try (PdfDocument newPdfDocument = new PdfDocument(new PdfWriter(OutputStream.nullOutputStream()))) {
+            pdfDocument.copyPagesTo(kept, newPdfDocument);
+        }
+        pdfDocument.close();
+    }
+
+    @Benchmark
+    public void bulkRemove() {
+        pdfService.removeTo(OutputStream.nullOutputStream(), file, PageSet.of(removed));
+    }
+
+}
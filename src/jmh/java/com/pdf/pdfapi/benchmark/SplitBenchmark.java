@@ -0,0 +1,56 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.service.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Split by page count, sequential ({@code parallelism = 1}) and fanned out over several workers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class SplitBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    private int pages;
+
+    @Param({"1", "100"})
+    private int maxPageCount;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        PdfConfig pdfConfig = BenchmarkDocuments.pdfConfig(workDirectory);
+        pdfConfig.getSplit().setParallelism(parallelism);
+        pdfService = BenchmarkDocuments.pdfService(pdfConfig);
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void split() {
+        pdfService.splitTo(OutputStream.nullOutputStream(), file, maxPageCount);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.pdf.pdfapi.benchmark;
+
+import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Splitting into parts of at most {@code 1 / parts} of the document size: one split by size against the loop clients
+ * ran before, splitting by an estimated page count, checking the part sizes and halving the page count until they fit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class SplitStrategyBenchmark {
+
+    @Param({"1000", "10000"})
+    private int pages;
+
+    @Param({"10", "100"})
+    private int parts;
+
+    private Path workDirectory;
+    private PdfService pdfService;
+    private MultipartFile file;
+    private long maxSize;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDirectory = BenchmarkDocuments.workDirectory();
+        pdfService = BenchmarkDocuments.pdfService(BenchmarkDocuments.pdfConfig(workDirectory));
+        file = BenchmarkDocuments.pdf(workDirectory, "document", pages);
+        maxSize = file.getSize() / parts;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkDocuments.delete(workDirectory);
+    }
+
+    @Benchmark
+    public void splitBySize() {
+        pdfService.splitTo(OutputStream.nullOutputStream(), file, SplitStrategy.size(maxSize));
+    }
+
+    @Benchmark
+    public int splitCheckAndRetry() throws IOException {
+        int maxPageCount = pages / parts;
+        while (true) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            pdfService.splitTo(outputStream, file, maxPageCount);
+            if (largestEntry(outputStream.toByteArray()) <= maxSize || maxPageCount == 1) {
+                return maxPageCount;
+            }
+            maxPageCount /= 2;
+        }
+    }
+
+    private static long largestEntry(byte[] zip) throws IOException {
+        long largest = 0;
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+                largest = Math.max(largest, zipInputStream.readAllBytes().length);
+            }
+        }
+        return largest;
+    }
+
+}
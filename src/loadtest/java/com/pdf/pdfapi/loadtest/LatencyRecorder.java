@@ -0,0 +1,75 @@
+package com.pdf.pdfapi.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The latencies of the successful requests of one operation and the causes of its failed ones. Every latency is kept,
+ * so percentiles are exact rather than bucketed.
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private final Map<String, Long> errors = new TreeMap<>();
+
+    synchronized void success(long latencyNanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+    }
+
+    synchronized void error(String cause) {
+        errors.merge(cause, 1L, Long::sum);
+    }
+
+    /**
+     * What was recorded, with throughput over {@code elapsedSeconds} and {@code slo} as the expected p99, if any.
+     */
+    synchronized LoadTestReport.OperationResult result(double elapsedSeconds, Duration slo) {
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long failed = errors.values().stream().mapToLong(Long::longValue).sum();
+        long requests = count + failed;
+        double p99 = percentile(sorted, 0.99);
+        Double sloMillis = slo == null ? null : (double) slo.toMillis();
+
+        return new LoadTestReport.OperationResult(requests, failed, requests == 0 ? 0 : (double) failed / requests,
+                count / elapsedSeconds, percentile(sorted, 0.5), p99, percentile(sorted, 0.999),
+                percentile(sorted, 1), Map.copyOf(errors), sloMillis,
+                sloMillis == null ? null : failed == 0 && !(p99 > sloMillis));
+
+    }
+
+    /**
+     * Merges {@code others} into one recorder, for the figures across all operations.
+     */
+    static LatencyRecorder combine(Iterable<LatencyRecorder> others) {
+        LatencyRecorder combined = new LatencyRecorder();
+        for (LatencyRecorder other : others) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) {
+                    combined.success(other.latencies[i]);
+                }
+                other.errors.forEach((cause, count) -> combined.errors.merge(cause, count, Long::sum));
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * The nearest-rank percentile in milliseconds, or {@link Double#NaN} without samples.
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+}
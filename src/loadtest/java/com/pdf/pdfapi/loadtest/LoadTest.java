@@ -0,0 +1,255 @@
+package com.pdf.pdfapi.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of the application, started in a JVM of its own: requests of a weighted mix of operations are started at a
+ * fixed rate, whether or not earlier ones have finished, first for a warmup and then for the measurement. Each request
+ * is timed from when it was due, so a slow application shows up as latency rather than as fewer requests. Latency
+ * percentiles, throughput and errors of each operation, along with the application's heap and GC figures, are printed
+ * and written to a JSON report, optionally checked against per-operation p99 SLOs and compared with the report of an
+ * earlier run. The process exits with 1 if an SLO was missed or a figure regressed.
+ * <p>
+ * Run with {@code ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="..."}; see {@link LoadTestOptions} for the
+ * arguments.
+ */
+public final class LoadTest {
+
+    private static final long SAMPLE_PERIOD_MILLIS = 1000;
+
+    private final LoadTestOptions options;
+    private final ServerProcess server;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+    private final AtomicLong lastCompletion = new AtomicLong();
+
+    private LoadTest(LoadTestOptions options, ServerProcess server) {
+        this.options = options;
+        this.server = server;
+        options.mix().keySet().forEach(operation -> recorders.put(operation, new LatencyRecorder()));
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Path log = options.report().toAbsolutePath().resolveSibling("server.log");
+        List<String> problems = new ArrayList<>();
+
+        try (ServerProcess server = ServerProcess.start(options.serverJvmArgs(), options.serverArgs(), log)) {
+            LoadTestReport report = new LoadTest(options, server).run();
+            report.write(options.report());
+            print(report);
+            System.out.println("Report written to " + options.report());
+
+            problems.addAll(report.sloMisses());
+            if (options.baseline() != null) {
+                LoadTestReport baseline = LoadTestReport.read(options.baseline());
+                if (!baseline.scenario().equals(report.scenario())) {
+                    System.out.println("Warning: the baseline ran a different scenario: " + baseline.scenario());
+                }
+                List<String> regressions = report.regressions(baseline, options.tolerance());
+                System.out.printf("Compared with %s (started %s): %d regression(s) beyond %.0f%%%n",
+                        options.baseline(), baseline.startedAt(), regressions.size(), options.tolerance() * 100);
+                problems.addAll(regressions);
+            }
+        }
+
+        problems.forEach(problem -> System.out.println("FAIL " + problem));
+        System.exit(problems.isEmpty() ? 0 : 1);
+
+    }
+
+    private LoadTestReport run() throws IOException, InterruptedException {
+
+        Map<String, HttpRequest> requests = Payloads.requests(server.baseUri(), options.pages(), options.timeout());
+        String[] operations = operations();
+        Random random = new Random(options.seed());
+
+        long period = Math.round(1e9 / options.rate());
+        long warmupRequests = Math.round(options.warmup().toNanos() / 1e9 * options.rate());
+        long measuredRequests = Math.max(1, Math.round(options.duration().toNanos() / 1e9 * options.rate()));
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        HeapSampler heapSampler = new HeapSampler();
+        ServerSnapshot before = null;
+        long measurementStart = 0;
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long start = System.nanoTime();
+        for (long i = 0; i < warmupRequests + measuredRequests; i++) {
+            long due = start + i * period;
+            if (i == warmupRequests) {
+                before = snapshot();
+                heapSampler.start();
+                measurementStart = due;
+            }
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String operation = operations[random.nextInt(operations.length)];
+            LatencyRecorder recorder = i < warmupRequests ? new LatencyRecorder() : recorders.get(operation);
+            if (!inFlight.tryAcquire()) {
+                recorder.error("more than " + options.maxInFlight() + " in flight");
+                continue;
+            }
+            HttpRequest request = requests.get(operation);
+            executor.execute(() -> {
+                try {
+                    send(request, due, recorder);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(options.timeout().toSeconds() + 60, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+
+        heapSampler.stop();
+        ServerSnapshot after = snapshot();
+        double elapsedSeconds = Math.max(options.duration().toNanos(), lastCompletion.get() - measurementStart) / 1e9;
+        return report(elapsedSeconds, before, after, heapSampler);
+
+    }
+
+    /**
+     * Each operation repeated by its weight, so that a uniformly random index picks operations in proportion to it.
+     */
+    private String[] operations() {
+        List<String> operations = new ArrayList<>();
+        options.mix().forEach((operation, weight) -> operations.addAll(Collections.nCopies(weight, operation)));
+        return operations.toArray(String[]::new);
+    }
+
+    private void send(HttpRequest request, long due, LatencyRecorder recorder) {
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            long completed = System.nanoTime();
+            lastCompletion.accumulateAndGet(completed, Math::max);
+            if (response.statusCode() == 200) {
+                recorder.success(completed - due);
+            } else {
+                recorder.error("HTTP " + response.statusCode());
+            }
+        } catch (HttpTimeoutException e) {
+            recorder.error("timeout");
+        } catch (IOException e) {
+            recorder.error(e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            recorder.error("interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LoadTestReport report(double elapsedSeconds, ServerSnapshot before, ServerSnapshot after,
+                                  HeapSampler heapSampler) throws IOException, InterruptedException {
+
+        Map<String, LoadTestReport.OperationResult> operations = new LinkedHashMap<>();
+        recorders.forEach((operation, recorder) ->
+                operations.put(operation, recorder.result(elapsedSeconds, options.slo().get(operation))));
+        LoadTestReport.OperationResult total = LatencyRecorder.combine(recorders.values()).result(elapsedSeconds, null);
+
+        double allocated = after.allocatedBytes() - before.allocatedBytes();
+        double gcPauseSeconds = after.gcPauseSeconds() - before.gcPauseSeconds();
+        LoadTestReport.ServerResult server = new LoadTestReport.ServerResult(heapSampler.peak(), heapSampler.average(),
+                this.server.metric("jvm.gc.live.data.size", "VALUE"), after.gcPauses() - before.gcPauses(),
+                gcPauseSeconds, gcPauseSeconds / elapsedSeconds, allocated, allocated / elapsedSeconds,
+                total.requests() == 0 ? 0 : allocated / total.requests());
+
+        LoadTestReport.Scenario scenario = new LoadTestReport.Scenario(options.rate(), options.duration().toNanos() / 1e9,
+                options.warmup().toNanos() / 1e9, options.mix(), options.pages(), options.seed(), options.serverJvmArgs(),
+                options.serverArgs());
+        return new LoadTestReport(Instant.now().minusNanos(Math.round(elapsedSeconds * 1e9)).toString(),
+                System.getProperty("java.version"), scenario, operations, total, server);
+
+    }
+
+    /**
+     * The application's GC counters so far; meters that do not exist yet, before the first collection, count as zero.
+     */
+    private ServerSnapshot snapshot() throws IOException, InterruptedException {
+        return new ServerSnapshot((long) counter("jvm.gc.pause", "COUNT"), counter("jvm.gc.pause", "TOTAL_TIME"),
+                counter("jvm.gc.memory.allocated", "COUNT"));
+    }
+
+    private double counter(String name, String statistic) throws IOException, InterruptedException {
+        double value = server.metric(name, statistic);
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    private static void print(LoadTestReport report) {
+
+        System.out.printf("%-18s %9s %7s %11s %9s %9s %9s %9s  %s%n",
+                "operation", "requests", "errors", "throughput", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "SLO");
+        report.operations().forEach((operation, result) -> print(operation, result));
+        print("total", report.total());
+
+        LoadTestReport.ServerResult server = report.server();
+        System.out.printf("Heap peak %.1f MB, average %.1f MB, live data %.1f MB; %d GC pauses, %.3f s (%.2f%% of the run); "
+                        + "allocated %.1f MB (%.1f MB/s, %.1f KB per request)%n",
+                server.heapPeakUsedBytes() / 1e6, server.heapAverageUsedBytes() / 1e6, server.liveDataBytes() / 1e6,
+                server.gcPauses(), server.gcPauseSeconds(), server.gcPauseFraction() * 100, server.allocatedBytes() / 1e6,
+                server.allocatedBytesPerSecond() / 1e6, server.allocatedBytesPerRequest() / 1024);
+
+    }
+
+    private static void print(String operation, LoadTestReport.OperationResult result) {
+        String slo = result.sloP99() == null ? "" : String.format("p99 <= %.0f ms %s", result.sloP99(), result.sloMet() ? "met" : "MISSED");
+        System.out.printf("%-18s %9d %7d %9.2f/s %9.1f %9.1f %9.1f %9.1f  %s%n", operation, result.requests(),
+                result.errors(), result.throughput(), result.p50(), result.p99(), result.p999(), result.max(), slo);
+        result.errorsByCause().forEach((cause, count) -> System.out.printf("%-18s %9s %7d %s%n", "", "", count, cause));
+    }
+
+    private record ServerSnapshot(long gcPauses, double gcPauseSeconds, double allocatedBytes) {
+    }
+
+    /**
+     * Samples the application's heap use once a second during the measurement.
+     */
+    private final class HeapSampler {
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        private final List<Double> samples = new CopyOnWriteArrayList<>();
+
+        void start() {
+            scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    double used = server.metric("jvm.memory.used", "VALUE", "area:heap");
+                    if (!Double.isNaN(used)) {
+                        samples.add(used);
+                    }
+                } catch (IOException e) {
+                    // a missed sample
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 0, SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            scheduler.shutdown();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        double peak() {
+            return samples.stream().mapToDouble(Double::doubleValue).max().orElse(Double.NaN);
+        }
+
+        double average() {
+            return samples.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+        }
+
+    }
+
+}
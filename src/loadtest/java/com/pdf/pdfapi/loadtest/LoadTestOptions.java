@@ -0,0 +1,118 @@
+package com.pdf.pdfapi.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * What a load test run does, read from {@code key=value} arguments; arguments starting with {@code --} are passed on
+ * to the application, e.g. {@code --pdfapi.buffers.pooled=true}.
+ *
+ * @param rate          requests started per second, across all operations, whether or not earlier ones have finished
+ * @param duration      how long requests are started for and measured
+ * @param warmup        how long requests are started for before the measurement, at the same rate, and not reported
+ * @param mix           the relative share of each operation among the requests
+ * @param pages         number of pages of the documents sent
+ * @param timeout       how long a single request may take before it counts as an error
+ * @param maxInFlight   requests outstanding at once before further ones are counted as errors instead of being sent
+ * @param seed          seed of the operation sequence, so runs with the same options send the same requests
+ * @param serverJvmArgs JVM options of the application, e.g. its heap size and collector
+ * @param serverArgs    properties passed to the application
+ * @param slo           the p99 latency each operation is expected to stay within
+ * @param report        where the JSON report is written
+ * @param baseline      an earlier report to compare against, or {@code null}
+ * @param tolerance     relative change in latency or throughput against the baseline that counts as a regression
+ */
+record LoadTestOptions(double rate, Duration duration, Duration warmup, Map<String, Integer> mix, int pages,
+                       Duration timeout, int maxInFlight, long seed, List<String> serverJvmArgs, List<String> serverArgs,
+                       Map<String, Duration> slo, Path report, Path baseline, double tolerance) {
+
+    private static final String DEFAULT_MIX = "merge:2,split:1,extract:4,remove:2,convertImageToPDF:1";
+    private static final Set<String> KEYS = Set.of("rate", "duration", "warmup", "mix", "pages", "timeout", "maxInFlight",
+            "seed", "jvmArgs", "report", "baseline", "tolerance");
+
+    static LoadTestOptions parse(String... args) {
+
+        Map<String, String> values = new HashMap<>();
+        List<String> serverArgs = new ArrayList<>();
+        Map<String, Duration> slo = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (arg.startsWith("--")) {
+                serverArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value or --property=value but got " + arg);
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            if (key.startsWith("slo.")) {
+                slo.put(operation(key.substring("slo.".length())), DurationStyle.detectAndParse(value));
+            } else if (KEYS.contains(key)) {
+                values.put(key, value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + key + ", expected one of " + new TreeSet<>(KEYS) + " or slo.<operation>");
+            }
+        }
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        LoadTestOptions options = new LoadTestOptions(
+                Double.parseDouble(values.getOrDefault("rate", "10")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "15s")),
+                mix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Integer.parseInt(values.getOrDefault("pages", "50")),
+                DurationStyle.detectAndParse(values.getOrDefault("timeout", "30s")),
+                Integer.parseInt(values.getOrDefault("maxInFlight", "256")),
+                Long.parseLong(values.getOrDefault("seed", "1")),
+                List.of(values.getOrDefault("jvmArgs", "-Xmx1g").split(",")),
+                List.copyOf(serverArgs),
+                slo,
+                Path.of(values.getOrDefault("report", "target/loadtest/report-" + timestamp + ".json")),
+                values.containsKey("baseline") ? Path.of(values.get("baseline")) : null,
+                Double.parseDouble(values.getOrDefault("tolerance", "0.1")));
+
+        if (options.rate() <= 0 || options.duration().isNegative() || options.duration().isZero() || options.pages() < 2) {
+            throw new IllegalArgumentException("rate and duration must be positive and pages at least 2");
+        }
+        return options;
+
+    }
+
+    /**
+     * Parses {@code <operation>:<weight>,...}, keeping the order given.
+     */
+    private static Map<String, Integer> mix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + parts[0]);
+            }
+            if (weight > 0) {
+                mix.put(operation(parts[0]), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("mix selects no operation");
+        }
+        return mix;
+    }
+
+    private static String operation(String name) {
+        if (!Payloads.OPERATIONS.contains(name)) {
+            throw new IllegalArgumentException("Unknown operation " + name + ", expected one of " + Payloads.OPERATIONS);
+        }
+        return name;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.pdf.pdfapi.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a load test run, written as JSON so that runs of different releases can be compared. Latencies are in
+ * milliseconds from when each request was due to start, so time spent queued behind slow requests is included.
+ *
+ * @param operations the figures of each operation, in the order of the mix
+ * @param total      the figures across all operations
+ * @param server     heap and GC figures of the application during the measurement
+ */
+record LoadTestReport(String startedAt, String javaVersion, Scenario scenario, Map<String, OperationResult> operations,
+                      OperationResult total, ServerResult server) {
+
+    /**
+     * How much higher an error rate may be than in the baseline, in absolute terms, before it counts as a regression.
+     */
+    private static final double ERROR_RATE_MARGIN = 0.01;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    record Scenario(double rate, double durationSeconds, double warmupSeconds, Map<String, Integer> mix, int pages,
+                    long seed, List<String> serverJvmArgs, List<String> serverArgs) {
+    }
+
+    /**
+     * @param requests   requests due during the measurement
+     * @param throughput successful requests per second
+     * @param sloP99     the expected p99, if one was given
+     * @param sloMet     whether p99 stayed within {@code sloP99} without any error, if one was given
+     */
+    record OperationResult(long requests, long errors, double errorRate, double throughput, double p50, double p99,
+                           double p999, double max, Map<String, Long> errorsByCause, Double sloP99, Boolean sloMet) {
+    }
+
+    /**
+     * @param heapPeakUsedBytes the highest heap use sampled once a second
+     * @param liveDataBytes     the old generation after the last collection, at the end of the run
+     * @param gcPauseFraction   the share of the measurement the application spent in GC pauses
+     */
+    record ServerResult(double heapPeakUsedBytes, double heapAverageUsedBytes, double liveDataBytes, long gcPauses,
+                        double gcPauseSeconds, double gcPauseFraction, double allocatedBytes,
+                        double allocatedBytesPerSecond, double allocatedBytesPerRequest) {
+    }
+
+    void write(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        OBJECT_MAPPER.writeValue(path.toFile(), this);
+    }
+
+    static LoadTestReport read(Path path) throws IOException {
+        return OBJECT_MAPPER.readValue(path.toFile(), LoadTestReport.class);
+    }
+
+    /**
+     * The operations whose SLO was missed.
+     */
+    List<String> sloMisses() {
+        List<String> misses = new ArrayList<>();
+        operations.forEach((operation, result) -> {
+            if (Boolean.FALSE.equals(result.sloMet())) {
+                misses.add(String.format("%s missed its SLO: p99 %.1f ms against %.0f ms, %d errors",
+                        operation, result.p99(), result.sloP99(), result.errors()));
+            }
+        });
+        return misses;
+    }
+
+    /**
+     * Differences from {@code baseline} worse than {@code tolerance}: higher p50 or p99 latency, lower throughput or
+     * more allocation per request, relative to the baseline, or an error rate more than one percentage point higher.
+     * Operations missing from either report are not compared.
+     */
+    List<String> regressions(LoadTestReport baseline, double tolerance) {
+
+        List<String> regressions = new ArrayList<>();
+        operations.forEach((operation, result) -> {
+            OperationResult before = baseline.operations().get(operation);
+            if (before != null) {
+                compare(regressions, operation, before, result, tolerance);
+            }
+        });
+        compare(regressions, "total", baseline.total(), total, tolerance);
+        if (server.allocatedBytesPerRequest() > baseline.server().allocatedBytesPerRequest() * (1 + tolerance)) {
+            regressions.add(change("allocation per request", baseline.server().allocatedBytesPerRequest() / 1024,
+                    server.allocatedBytesPerRequest() / 1024, "KB"));
+        }
+        return regressions;
+
+    }
+
+    private static void compare(List<String> regressions, String operation, OperationResult before, OperationResult after,
+                                double tolerance) {
+        if (after.p50() > before.p50() * (1 + tolerance)) {
+            regressions.add(change(operation + " p50", before.p50(), after.p50(), "ms"));
+        }
+        if (after.p99() > before.p99() * (1 + tolerance)) {
+            regressions.add(change(operation + " p99", before.p99(), after.p99(), "ms"));
+        }
+        if (after.throughput() < before.throughput() * (1 - tolerance)) {
+            regressions.add(change(operation + " throughput", before.throughput(), after.throughput(), "/s"));
+        }
+        if (after.errorRate() > before.errorRate() + ERROR_RATE_MARGIN) {
+            regressions.add(change(operation + " error rate", before.errorRate() * 100, after.errorRate() * 100, "%"));
+        }
+    }
+
+    private static String change(String figure, double before, double after, String unit) {
+        return String.format("%s %.1f %s -> %.1f %s (%+.1f%%)", figure, before, unit, after, unit, (after / before - 1) * 100);
+    }
+
+}
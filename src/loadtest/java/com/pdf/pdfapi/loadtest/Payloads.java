@@ -0,0 +1,121 @@
+package com.pdf.pdfapi.loadtest;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The request sent for each operation, built once from synthetic documents and images. Operations go to the streaming
+ * endpoints, whose responses are complete only once the result has been written, so the latency measured is that of
+ * the whole operation.
+ */
+final class Payloads {
+
+    static final List<String> OPERATIONS = List.of("merge", "split", "extract", "remove", "convertImageToPDF", "preview");
+
+    private static final String BOUNDARY = "pdfapi-loadtest-boundary";
+
+    private Payloads() {
+    }
+
+    /**
+     * Requests against {@code baseUri} on documents of {@code pages} pages: merges of two documents, splits into five
+     * parts, extracts of the first five pages, removal of every other page, conversion of two 800x600 PNGs into one
+     * document and previews of the first page.
+     */
+    static Map<String, HttpRequest> requests(URI baseUri, int pages, Duration timeout) throws IOException {
+
+        byte[] document = pdf("document", pages);
+        byte[] image = png(800, 600);
+        StringBuilder everyOtherPage = new StringBuilder("1");
+        for (int page = 3; page <= pages; page += 2) {
+            everyOtherPage.append(',').append(page);
+        }
+
+        Map<String, HttpRequest> requests = new LinkedHashMap<>();
+        requests.put("merge", post(baseUri, "pdfapi/stream/merge", timeout,
+                multipart(Map.of(), "application/pdf", document, document)));
+        requests.put("split", post(baseUri, "pdfapi/stream/split", timeout,
+                multipart(Map.of("maxPageCount", String.valueOf(Math.max(1, pages / 5))), "application/pdf", document)));
+        requests.put("extract", post(baseUri, "pdfapi/stream/extract", timeout,
+                multipart(Map.of("startPage", "1", "endPage", String.valueOf(Math.min(5, pages))), "application/pdf", document)));
+        requests.put("remove", post(baseUri, "pdfapi/stream/remove", timeout,
+                multipart(Map.of("pages", everyOtherPage.toString()), "application/pdf", document)));
+        requests.put("convertImageToPDF", post(baseUri, "pdfapi/stream/convertImageToPDF", timeout,
+                multipart(Map.of("singleDocument", "true"), "image/png", image, image)));
+        requests.put("preview", post(baseUri, "pdfapi/preview", timeout,
+                multipart(Map.of("pages", "1"), "application/pdf", document)));
+        return requests;
+
+    }
+
+    private static HttpRequest post(URI baseUri, String path, Duration timeout, byte[] body) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .timeout(timeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private static byte[] multipart(Map<String, String> fields, String contentType, byte[]... files) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n"
+                    + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        String extension = contentType.substring(contentType.indexOf('/') + 1);
+        for (int i = 0; i < files.length; i++) {
+            body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"file" + i + "." + extension
+                    + "\"\r\nContent-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.write(files[i]);
+            body.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static byte[] pdf(String name, int pages) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(outputStream))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                new PdfCanvas(pdfDocument.addNewPage())
+                        .beginText()
+                        .setFontAndSize(font, 12)
+                        .moveText(36, 800)
+                        .showText(String.format("%s - page %d of %d", name, i, pages))
+                        .endText();
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.WHITE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+}
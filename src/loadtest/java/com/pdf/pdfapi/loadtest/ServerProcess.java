@@ -0,0 +1,145 @@
+package com.pdf.pdfapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdf.pdfapi.PdfApiApplication;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application started in a JVM of its own on a free port, so that its heap and collections are not mixed up with
+ * those of the load generator. Its heap and GC figures are read from {@code /actuator/metrics}.
+ */
+final class ServerProcess implements Closeable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Process process;
+    private final Path workDirectory;
+    private final Path log;
+    private final URI baseUri;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ServerProcess(Process process, Path workDirectory, Path log, URI baseUri) {
+        this.process = process;
+        this.workDirectory = workDirectory;
+        this.log = log;
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Starts the application with the classpath of this JVM and waits until it reports healthy. Its output goes to
+     * {@code log}.
+     */
+    static ServerProcess start(List<String> jvmArgs, List<String> args, Path log) throws IOException, InterruptedException {
+
+        Path workDirectory = Files.createTempDirectory("pdfapi-loadtest-");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        // defaults as system properties, so that the same properties given in args take precedence
+        command.add("-Dpdfapi.output_folder=" + workDirectory + "/");
+        // every request repeats the same inputs, so the result cache would turn the load test into cache reads
+        command.add("-Dpdfapi.cache.enabled=false");
+        command.add("-Dspring.devtools.restart.enabled=false");
+        command.add("-Dlogging.level.root=WARN");
+        command.addAll(List.of("-classpath", System.getProperty("java.class.path"), PdfApiApplication.class.getName()));
+        command.add("--server.port=" + port);
+        command.addAll(args);
+
+        Files.createDirectories(log.toAbsolutePath().getParent());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        ServerProcess server = new ServerProcess(process, workDirectory, log, URI.create("http://localhost:" + port + "/"));
+        try {
+            server.awaitHealthy();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+
+    }
+
+    URI baseUri() {
+        return baseUri;
+    }
+
+    /**
+     * The {@code statistic} of the meter {@code name}, restricted to the given {@code key:value} tags, or
+     * {@link Double#NaN} if the application does not have it.
+     */
+    double metric(String name, String statistic, String... tags) throws IOException, InterruptedException {
+
+        StringBuilder uri = new StringBuilder("actuator/metrics/").append(name);
+        for (int i = 0; i < tags.length; i++) {
+            uri.append(i == 0 ? '?' : '&').append("tag=").append(tags[i]);
+        }
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(baseUri.resolve(uri.toString())).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            return Double.NaN;
+        }
+        for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+            if (statistic.equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return Double.NaN;
+
+    }
+
+    private void awaitHealthy() throws IOException, InterruptedException {
+
+        HttpRequest health = HttpRequest.newBuilder(baseUri.resolve("actuator/health")).timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("The application did not become healthy within " + STARTUP_TIMEOUT + ", see " + log);
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        process.destroy();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        FileSystemUtils.deleteRecursively(workDirectory);
+    }
+
+}
@@ -5,6 +5,12 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "pdfapi")
@@ -15,4 +21,374 @@ public class PdfConfig {
     @NotBlank
     private String outputFolder;
 
+    private Input input = new Input();
+
+    private Buffers buffers = new Buffers();
+
+    private Output output = new Output();
+
+    private Split split = new Split();
+
+    private Merge merge = new Merge();
+
+    private Images images = new Images();
+
+    private Jobs jobs = new Jobs();
+
+    private Cache cache = new Cache();
+
+    private Documents documents = new Documents();
+
+    private Concurrency concurrency = new Concurrency();
+
+    private Storage storage = new Storage();
+
+    private Retention retention = new Retention();
+
+    private Preview preview = new Preview();
+
+    @Setter
+    @Getter
+    public static class Input {
+
+        /**
+         * Uploads of at least this size are spooled to a temporary file and memory-mapped
+         * instead of being copied onto the heap.
+         */
+        private DataSize mappedThreshold = DataSize.ofMegabytes(10);
+
+        /**
+         * Largest request body accepted by the {@code /pdfapi/ingest/**} endpoints, which read it themselves instead
+         * of through {@code spring.servlet.multipart}.
+         */
+        private DataSize ingestMaxSize = DataSize.ofMegabytes(100);
+
+        /**
+         * How many fully received files the {@code /pdfapi/ingest/**} endpoints hold ahead of the operation before
+         * they stop reading the request body.
+         */
+        private int ingestReadAhead = 2;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Buffers {
+
+        /**
+         * Whether uploads read onto the heap and documents rendered into memory use buffers reused across operations
+         * instead of arrays allocated for each of them.
+         */
+        private boolean pooled = false;
+
+        /**
+         * Total size of the released buffers kept for reuse.
+         */
+        private DataSize poolSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Largest buffer that is pooled; bigger uploads and documents get arrays of their own.
+         */
+        private DataSize maxBufferSize = DataSize.ofMegabytes(16);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Output {
+
+        public enum Optimization {
+            NONE, COMPRESSED, SMART
+        }
+
+        /**
+         * How much effort goes into making written PDFs small: {@code NONE} keeps iText's defaults, {@code COMPRESSED}
+         * writes compressed cross-reference and object streams, {@code SMART} also deduplicates identical resources.
+         */
+        private Optimization optimization = Optimization.NONE;
+
+        /**
+         * Whether merge, extract and remove results are linearized for fast web view by running {@link #qpdf}
+         * on them, as iText cannot write linearized files itself.
+         */
+        private boolean linearize = false;
+
+        /**
+         * The qpdf executable used to linearize, looked up on the {@code PATH} unless absolute.
+         */
+        private String qpdf = "qpdf";
+
+        /**
+         * How long a single qpdf run may take before the operation fails.
+         */
+        private Duration linearizeTimeout = Duration.ofMinutes(2);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Split {
+
+        /**
+         * Number of parts rendered concurrently by split; 1 keeps the sequential splitter.
+         */
+        private int parallelism = 1;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Merge {
+
+        /**
+         * Number of chunks merged concurrently by the tree-reduction engine; 1 always merges sequentially.
+         */
+        private int parallelism = 1;
+
+        /**
+         * Minimum number of input files for which the tree-reduction engine is used.
+         */
+        private int parallelThreshold = 16;
+
+        /**
+         * Number of documents merged into each intermediate document.
+         */
+        private int chunkSize = 8;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Images {
+
+        /**
+         * Number of images decoded concurrently by convertImageToPDF; 1 decodes each image just before it is written.
+         */
+        private int parallelism = 1;
+
+        /**
+         * Maximum number of decoded images held in memory at once, including the one being written.
+         */
+        private int maxDecodedImages = 8;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Jobs {
+
+        /**
+         * Number of threads running asynchronous jobs.
+         */
+        private int workers = 2;
+
+        /**
+         * Number of jobs that may wait for a worker before submissions are rejected with 429.
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * How long finished jobs and their results are kept.
+         */
+        private Duration resultTtl = Duration.ofHours(1);
+
+        /**
+         * Time between the end of one purge of expired jobs and the start of the next.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(1);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Cache {
+
+        /**
+         * Whether streamed results are cached by a hash of their inputs, operation and parameters. Off by default: every
+         * result is then also written to disk, and a miss hashes all inputs before the first byte is sent.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Total size of the results kept on the heap; least recently used results are evicted first.
+         */
+        private DataSize memorySize = DataSize.ofMegabytes(64);
+
+        /**
+         * Largest result that is kept on the heap; bigger results are only cached on disk.
+         */
+        private DataSize memoryEntrySize = DataSize.ofMegabytes(4);
+
+        /**
+         * Total size of the results kept on disk under {@code <output folder>/cache}.
+         */
+        private DataSize diskSize = DataSize.ofGigabytes(1);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Documents {
+
+        /**
+         * How long a registered document is kept after it was last used.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * Total upload size of the registered documents; least recently used documents are evicted first. This bounds
+         * the compressed bytes uploaded, not the heap: a parsed document, page tree included, can take several times its
+         * upload size, while uploads above {@code pdfapi.input.mapped-threshold} are mapped rather than held on the heap.
+         */
+        private DataSize memorySize = DataSize.ofMegabytes(256);
+
+        /**
+         * Time between the end of one purge of idle documents and the start of the next.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(1);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Concurrency {
+
+        /**
+         * Maximum number of operations of each kind rendering at once, keyed by operation name ({@code merge},
+         * {@code split}, {@code extract}, {@code remove}, {@code convertImageToPDF}, {@code pipeline}); operations
+         * without an entry are not limited.
+         */
+        private Map<String, Integer> limits = new HashMap<>();
+
+        /**
+         * How long an operation waits for one of its slots before it is rejected with 429.
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Storage {
+
+        public enum Type {
+            LOCAL, MEMORY, S3
+        }
+
+        /**
+         * Where produced documents are kept: {@code LOCAL} in {@link PdfConfig#outputFolder}, {@code MEMORY} on the heap
+         * (lost on restart) or {@code S3} in a bucket of an S3-compatible object store.
+         */
+        private Type type = Type.LOCAL;
+
+        /**
+         * Number of threads storing produced documents in the background.
+         */
+        private int writers = 2;
+
+        /**
+         * Maximum number of rendered documents waiting to be stored; operations wait for one of them before queuing more.
+         */
+        private int maxPendingWrites = 32;
+
+        /**
+         * Maximum total size of the rendered documents waiting to be stored, which are held on the heap; operations
+         * wait for some of them to be stored before queuing more. A document larger than this waits until nothing else
+         * is pending.
+         */
+        private DataSize maxPendingSize = DataSize.ofMegabytes(256);
+
+        private S3 s3 = new S3();
+
+        @Setter
+        @Getter
+        public static class S3 {
+
+            /**
+             * Base URL of the object store, addressed path-style ({@code <endpoint>/<bucket>/<key>}).
+             */
+            private URI endpoint = URI.create("https://s3.amazonaws.com");
+
+            private String region = "us-east-1";
+
+            private String bucket;
+
+            /**
+             * Prepended to every document name to form its key.
+             */
+            private String prefix = "";
+
+            private String accessKey;
+
+            private String secretKey;
+
+            /**
+             * How long a single request to the object store may take.
+             */
+            private Duration timeout = Duration.ofSeconds(30);
+
+        }
+
+    }
+
+    @Setter
+    @Getter
+    public static class Retention {
+
+        /**
+         * Whether stored documents are deleted once they expire or exceed {@link #maxSize}. Off by default, so that
+         * upgrading does not start deleting results that were kept until then.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long a stored document is kept after it was written.
+         */
+        private Duration ttl = Duration.ofDays(1);
+
+        /**
+         * How long the documents of an operation are kept instead of {@link #ttl}, keyed by operation name
+         * ({@code merge}, {@code split}, {@code extract}, {@code remove}, {@code convertImageToPDF}).
+         */
+        private Map<String, Duration> operationTtl = new HashMap<>();
+
+        /**
+         * Total size of the stored documents kept; the oldest documents are deleted first once it is exceeded.
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(10);
+
+        /**
+         * Time between the end of one sweep and the start of the next.
+         */
+        private Duration sweepInterval = Duration.ofMinutes(5);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Preview {
+
+        /**
+         * Number of pages rendered concurrently by a preview, each worker with its own reader.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Highest resolution a preview may be requested at.
+         */
+        private int maxDpi = 300;
+
+        /**
+         * Largest image a page is rendered to; pages that would be larger at the requested resolution are rendered at
+         * the highest resolution that fits.
+         */
+        private long maxPixels = 25_000_000;
+
+        /**
+         * Total size of the rendered pages kept on the heap; least recently used pages are evicted first.
+         */
+        private DataSize cacheSize = DataSize.ofMegabytes(32);
+
+    }
+
 }
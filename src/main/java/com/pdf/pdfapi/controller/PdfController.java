@@ -1,53 +1,289 @@
-package com.pdf.pdfapi.controller;
-
-import com.pdf.pdfapi.service.PdfService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.multipart.MultipartFile;
-
-@RestController
-@RequestMapping("/pdfapi")
-@RequiredArgsConstructor
-public class PdfController {
-
-    private final PdfService pdfService;
-
-    @PostMapping("/merge")
-    public void merge(@RequestParam MultipartFile... file) {
-
-        pdfService.merge(file);
-
-    }
-
-    @PostMapping("/split")
-    public void split(@RequestParam MultipartFile file, @RequestParam Integer maxPageCount) {
-
-        pdfService.split(file, maxPageCount);
-
-    }
-
-    @PostMapping("/extract")
-    public void extract(@RequestParam MultipartFile file, @RequestParam Integer startPage, @RequestParam Integer endPage) {
-
-        pdfService.extract(file, startPage, endPage);
-
-    }
-
-    @PostMapping("/remove")
-    public void remove(@RequestParam MultipartFile file, @RequestParam Integer... page) {
-
-        pdfService.remove(file, page);
-
-    }
-
-    @PostMapping("/convertImageToPDF")
-    public void convertImageToPDF(@RequestParam MultipartFile... file) {
-
-        pdfService.convertImageToPDF(file);
-
-    }
-
-}
+package com.pdf.pdfapi.controller;
+
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfFile;
+import com.pdf.pdfapi.service.PdfFileService;
+import com.pdf.pdfapi.service.PdfPipelineStep;
+import com.pdf.pdfapi.service.PdfPreviewService;
+import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import com.pdf.pdfapi.service.StreamedUpload;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/pdfapi")
+@RequiredArgsConstructor
+public class PdfController {
+
+    private static final MediaType ZIP = MediaType.parseMediaType("application/zip");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final PdfService pdfService;
+    private final PdfFileService pdfFileService;
+    private final PdfPreviewService pdfPreviewService;
+
+    @PostMapping("/merge")
+    public void merge(@RequestParam MultipartFile... file) {
+
+        pdfService.merge(file);
+
+    }
+
+    /**
+     * Splits {@code file} every {@code maxPageCount} pages, into parts of at most {@code maxSize} bytes, or before each
+     * top-level bookmark; exactly one of them is given.
+     */
+    @PostMapping("/split")
+    public void split(@RequestParam MultipartFile file, @RequestParam(required = false) Integer maxPageCount, @RequestParam(required = false) Long maxSize,
+                      @RequestParam(defaultValue = "false") boolean bookmarks) {
+
+        pdfService.split(file, SplitStrategy.of(maxPageCount, maxSize, bookmarks));
+
+    }
+
+    /**
+     * Extracts {@code startPage}-{@code endPage} and/or the ranges of {@code pages}, e.g. {@code 1-5,20,40-60}, into
+     * one document or, with {@code separate}, into one document per range.
+     */
+    @PostMapping("/extract")
+    public void extract(@RequestParam MultipartFile file, @RequestParam(required = false) Integer startPage, @RequestParam(required = false) Integer endPage,
+                        @RequestParam(required = false) String pages, @RequestParam(defaultValue = "false") boolean separate) {
+
+        pdfService.extract(file, PageSet.ranges(pages, startPage, endPage), separate);
+
+    }
+
+    @PostMapping("/remove")
+    public void remove(@RequestParam MultipartFile file, @RequestParam(required = false) String pages, @RequestParam(required = false) Integer... page) {
+
+        pdfService.remove(file, PageSet.of(pages, page));
+
+    }
+
+    @PostMapping("/convertImageToPDF")
+    public void convertImageToPDF(@RequestParam(defaultValue = "false") boolean singleDocument, @RequestParam MultipartFile... file) {
+
+        pdfService.convertImageToPDF(singleDocument, file);
+
+    }
+
+    @PostMapping("/stream/merge")
+    public ResponseEntity<StreamingResponseBody> streamMerge(@RequestParam MultipartFile... file) {
+
+        pdfService.validateMerge(file);
+        return attachment("merged.pdf", MediaType.APPLICATION_PDF, outputStream -> pdfService.mergeTo(outputStream, file));
+
+    }
+
+    @PostMapping("/stream/split")
+    public ResponseEntity<StreamingResponseBody> streamSplit(@RequestParam MultipartFile file, @RequestParam(required = false) Integer maxPageCount, @RequestParam(required = false) Long maxSize,
+                                                             @RequestParam(defaultValue = "false") boolean bookmarks) {
+
+        SplitStrategy strategy = SplitStrategy.of(maxPageCount, maxSize, bookmarks);
+        pdfService.validateSplit(file);
+        return attachment("splitDocument.zip", ZIP, outputStream -> pdfService.splitTo(outputStream, file, strategy));
+
+    }
+
+    @PostMapping("/stream/extract")
+    public ResponseEntity<StreamingResponseBody> streamExtract(@RequestParam MultipartFile file, @RequestParam(required = false) Integer startPage, @RequestParam(required = false) Integer endPage,
+                                                               @RequestParam(required = false) String pages, @RequestParam(defaultValue = "false") boolean separate) {
+
+        PageSet pageSet = PageSet.ranges(pages, startPage, endPage);
+        pdfService.validateExtract(file, pageSet);
+        StreamingResponseBody body = outputStream -> pdfService.extractTo(outputStream, file, pageSet, separate);
+        return separate ? attachment("extractedPages.zip", ZIP, body) : attachment("extractedPages.pdf", MediaType.APPLICATION_PDF, body);
+
+    }
+
+    @PostMapping("/stream/remove")
+    public ResponseEntity<StreamingResponseBody> streamRemove(@RequestParam MultipartFile file, @RequestParam(required = false) String pages, @RequestParam(required = false) Integer... page) {
+
+        PageSet pageSet = PageSet.of(pages, page);
+        pdfService.validateRemove(file, pageSet);
+        return attachment("removedPages.pdf", MediaType.APPLICATION_PDF, outputStream -> pdfService.removeTo(outputStream, file, pageSet));
+
+    }
+
+    @PostMapping("/stream/convertImageToPDF")
+    public ResponseEntity<StreamingResponseBody> streamConvertImageToPDF(@RequestParam(defaultValue = "false") boolean singleDocument, @RequestParam MultipartFile... file) {
+
+        StreamingResponseBody body = outputStream -> pdfService.convertImageToPDFTo(outputStream, singleDocument, file);
+        return singleDocument ? attachment("ImageToPdf.pdf", MediaType.APPLICATION_PDF, body) : attachment("ImageToPdf.zip", ZIP, body);
+
+    }
+
+    /**
+     * Like {@code /stream/merge}, but reads the request body itself and merges each file as soon as it has arrived
+     * instead of once the whole request is received.
+     */
+    @PostMapping("/ingest/merge")
+    public ResponseEntity<StreamingResponseBody> ingestMerge(HttpServletRequest request) throws IOException {
+
+        StreamedUpload upload = pdfService.receive(request.getInputStream(), request.getContentType());
+        return attachment("merged.pdf", MediaType.APPLICATION_PDF, outputStream -> pdfService.mergeTo(outputStream, upload));
+
+    }
+
+    /**
+     * Like {@code /stream/convertImageToPDF}, converting each image as soon as it has arrived.
+     */
+    @PostMapping("/ingest/convertImageToPDF")
+    public ResponseEntity<StreamingResponseBody> ingestConvertImageToPDF(HttpServletRequest request) throws IOException {
+
+        boolean singleDocument = Boolean.parseBoolean(queryParameter(request, "singleDocument"));
+        StreamedUpload upload = pdfService.receive(request.getInputStream(), request.getContentType());
+        StreamingResponseBody body = outputStream -> pdfService.convertImageToPDFTo(outputStream, singleDocument, upload);
+        return singleDocument ? attachment("ImageToPdf.pdf", MediaType.APPLICATION_PDF, body) : attachment("ImageToPdf.zip", ZIP, body);
+
+    }
+
+    /**
+     * Runs several operations over the uploads in one request, e.g. {@code steps=merge;remove:3,7;extract:1-50;split:10}.
+     */
+    @PostMapping("/stream/pipeline")
+    public ResponseEntity<StreamingResponseBody> streamPipeline(@RequestParam String steps, @RequestParam MultipartFile... file) {
+
+        List<PdfPipelineStep> pipeline = PdfPipelineStep.parse(steps);
+        pdfService.validatePipeline(pipeline, file);
+
+        StreamingResponseBody body = outputStream -> pdfService.pipelineTo(outputStream, pipeline, file);
+        return PdfPipelineStep.endsWithSplit(pipeline) ? attachment("splitDocument.zip", ZIP, body) : attachment("pipeline.pdf", MediaType.APPLICATION_PDF, body);
+
+    }
+
+    /**
+     * Renders the {@code pages} of {@code file}, e.g. {@code 1-3,7}, at {@code dpi}: a single page as a PNG, several as a
+     * zip archive with one PNG per page.
+     */
+    @PostMapping("/preview")
+    public ResponseEntity<StreamingResponseBody> preview(@RequestParam MultipartFile file, @RequestParam(defaultValue = "1") String pages,
+                                                         @RequestParam(defaultValue = "72") int dpi) {
+
+        PageSet pageSet = PageSet.ranges(pages, null, null);
+        int count = pdfPreviewService.validatePreview(file, pageSet, dpi);
+        StreamingResponseBody body = outputStream -> pdfPreviewService.previewTo(outputStream, file, pageSet, dpi);
+        return count == 1 ? attachment("preview.png", MediaType.IMAGE_PNG, body) : attachment("preview.zip", ZIP, body);
+
+    }
+
+    /**
+     * Reads a query parameter without {@link HttpServletRequest#getParameter}, which would make the container read the
+     * whole multipart body first.
+     */
+    private static String queryParameter(HttpServletRequest request, String name) {
+        return UriComponentsBuilder.newInstance().query(request.getQueryString()).build().getQueryParams().getFirst(name);
+    }
+
+    @GetMapping("/files")
+    public List<PdfFile> files() {
+
+        return pdfFileService.list();
+
+    }
+
+    /**
+     * Downloads a document produced by {@code merge}, {@code split}, {@code extract}, {@code remove} or
+     * {@code convertImageToPDF}. A single byte range is honoured, so interrupted downloads can resume, and a matching
+     * {@code If-None-Match} answers {@code 304}. Files of the local storage are handed to Tomcat's sendfile when the
+     * container supports it; everything else is copied by the storage.
+     */
+    @GetMapping("/files/{name}")
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String name, @RequestHeader HttpHeaders requestHeaders, HttpServletRequest request) {
+
+        PdfFile file = pdfFileService.find(name).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown file " + name));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(file.getETag());
+        headers.setLastModified(file.getLastModified());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(requestHeaders.getIfNoneMatch(), file.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        long size = file.getSize();
+        long start = 0;
+        long length = size;
+        HttpStatus status = HttpStatus.OK;
+
+        HttpRange range = range(requestHeaders, file);
+        if (range != null) {
+            start = range.getRangeStart(size);
+            if (start >= size) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+            }
+            length = range.getRangeEnd(size) - start + 1;
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, start + length - 1, size));
+        }
+
+        headers.setContentType(MediaTypeFactory.getMediaType(file.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(file.getName()).build());
+        headers.setContentLength(length);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).headers(headers);
+
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return response.build();
+        }
+
+        if (file.getPath() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return response.build();
+        }
+
+        long offset = start;
+        long count = length;
+        return response.body(outputStream -> pdfFileService.transfer(file, offset, count, outputStream));
+
+    }
+
+    /**
+     * The single range requested, or {@code null} to send the whole file: when there is no valid {@code Range},
+     * when several ranges are asked for, or when {@code If-Range} names another version of the file.
+     */
+    private HttpRange range(HttpHeaders requestHeaders, PdfFile file) {
+
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(file.getETag())) {
+            return null;
+        }
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(requestHeaders.getFirst(HttpHeaders.RANGE));
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+    }
+
+    private boolean matches(List<String> ifNoneMatch, String eTag) {
+        return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || tag.replaceFirst("^W/", "").equals(eTag));
+    }
+
+    private ResponseEntity<StreamingResponseBody> attachment(String fileName, MediaType mediaType, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+}
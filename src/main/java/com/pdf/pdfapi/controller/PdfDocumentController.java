@@ -0,0 +1,93 @@
+package com.pdf.pdfapi.controller;
+
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfDocumentHandle;
+import com.pdf.pdfapi.service.PdfDocumentService;
+import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/pdfapi/documents")
+@RequiredArgsConstructor
+public class PdfDocumentController {
+
+    private static final MediaType ZIP = MediaType.parseMediaType("application/zip");
+
+    private final PdfService pdfService;
+    private final PdfDocumentService pdfDocumentService;
+
+    @PostMapping
+    public ResponseEntity<PdfDocumentHandle> register(@RequestParam MultipartFile file) {
+
+        PdfDocumentHandle handle = pdfDocumentService.register(file);
+        return ResponseEntity.created(URI.create("/pdfapi/documents/" + handle.getId())).body(handle);
+
+    }
+
+    @GetMapping("/{id}")
+    public PdfDocumentHandle status(@PathVariable String id) {
+
+        return handle(id);
+
+    }
+
+    @PostMapping("/{id}/split")
+    public ResponseEntity<StreamingResponseBody> split(@PathVariable String id, @RequestParam(required = false) Integer maxPageCount, @RequestParam(required = false) Long maxSize,
+                                                       @RequestParam(defaultValue = "false") boolean bookmarks) {
+
+        PdfDocumentHandle handle = handle(id);
+        SplitStrategy strategy = SplitStrategy.of(maxPageCount, maxSize, bookmarks);
+        return attachment("splitDocument.zip", ZIP, outputStream -> pdfService.splitTo(outputStream, handle, strategy));
+
+    }
+
+    @PostMapping("/{id}/extract")
+    public ResponseEntity<StreamingResponseBody> extract(@PathVariable String id, @RequestParam(required = false) Integer startPage, @RequestParam(required = false) Integer endPage,
+                                                         @RequestParam(required = false) String pages, @RequestParam(defaultValue = "false") boolean separate) {
+
+        PdfDocumentHandle handle = handle(id);
+        PageSet pageSet = PageSet.ranges(pages, startPage, endPage);
+        pdfService.validateExtract(handle, pageSet);
+        StreamingResponseBody body = outputStream -> pdfService.extractTo(outputStream, handle, pageSet, separate);
+        return separate ? attachment("extractedPages.zip", ZIP, body) : attachment("extractedPages.pdf", MediaType.APPLICATION_PDF, body);
+
+    }
+
+    @PostMapping("/{id}/remove")
+    public ResponseEntity<StreamingResponseBody> remove(@PathVariable String id, @RequestParam(required = false) String pages, @RequestParam(required = false) Integer... page) {
+
+        PdfDocumentHandle handle = handle(id);
+        PageSet pageSet = PageSet.of(pages, page);
+        pdfService.validateRemove(handle, pageSet);
+        return attachment("removedPages.pdf", MediaType.APPLICATION_PDF, outputStream -> pdfService.removeTo(outputStream, handle, pageSet));
+
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+
+        pdfDocumentService.delete(id);
+        return ResponseEntity.noContent().build();
+
+    }
+
+    private PdfDocumentHandle handle(String id) {
+        return pdfDocumentService.find(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown document " + id));
+    }
+
+    private ResponseEntity<StreamingResponseBody> attachment(String fileName, MediaType mediaType, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.pdf.pdfapi.controller;
+
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfJob;
+import com.pdf.pdfapi.service.PdfJobService;
+import com.pdf.pdfapi.service.PdfPipelineStep;
+import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/pdfapi/jobs")
+@RequiredArgsConstructor
+public class PdfJobController {
+
+    private static final String ZIP = "application/zip";
+
+    private final PdfService pdfService;
+    private final PdfJobService pdfJobService;
+
+    @PostMapping("/merge")
+    public ResponseEntity<PdfJob> merge(@RequestParam MultipartFile... file) {
+
+        pdfService.validateMerge(file);
+        return accepted(pdfJobService.submit("merge", "merged.pdf", MediaType.APPLICATION_PDF_VALUE, file,
+                (outputStream, files) -> pdfService.mergeTo(outputStream, files)));
+
+    }
+
+    @PostMapping("/split")
+    public ResponseEntity<PdfJob> split(@RequestParam MultipartFile file, @RequestParam(required = false) Integer maxPageCount, @RequestParam(required = false) Long maxSize,
+                                        @RequestParam(defaultValue = "false") boolean bookmarks) {
+
+        SplitStrategy strategy = SplitStrategy.of(maxPageCount, maxSize, bookmarks);
+        pdfService.validateSplit(file);
+        return accepted(pdfJobService.submit("split", "splitDocument.zip", ZIP, new MultipartFile[]{file},
+                (outputStream, files) -> pdfService.splitTo(outputStream, files[0], strategy)));
+
+    }
+
+    @PostMapping("/extract")
+    public ResponseEntity<PdfJob> extract(@RequestParam MultipartFile file, @RequestParam(required = false) Integer startPage, @RequestParam(required = false) Integer endPage,
+                                          @RequestParam(required = false) String pages, @RequestParam(defaultValue = "false") boolean separate) {
+
+        PageSet pageSet = PageSet.ranges(pages, startPage, endPage);
+        pdfService.validateExtract(file, pageSet);
+        return accepted(pdfJobService.submit("extract", separate ? "extractedPages.zip" : "extractedPages.pdf",
+                separate ? ZIP : MediaType.APPLICATION_PDF_VALUE, new MultipartFile[]{file},
+                (outputStream, files) -> pdfService.extractTo(outputStream, files[0], pageSet, separate)));
+
+    }
+
+    @PostMapping("/remove")
+    public ResponseEntity<PdfJob> remove(@RequestParam MultipartFile file, @RequestParam(required = false) String pages, @RequestParam(required = false) Integer... page) {
+
+        PageSet pageSet = PageSet.of(pages, page);
+        pdfService.validateRemove(file, pageSet);
+        return accepted(pdfJobService.submit("remove", "removedPages.pdf", MediaType.APPLICATION_PDF_VALUE, new MultipartFile[]{file},
+                (outputStream, files) -> pdfService.removeTo(outputStream, files[0], pageSet)));
+
+    }
+
+    @PostMapping("/convertImageToPDF")
+    public ResponseEntity<PdfJob> convertImageToPDF(@RequestParam(defaultValue = "false") boolean singleDocument, @RequestParam MultipartFile... file) {
+
+        return accepted(pdfJobService.submit("convertImageToPDF", singleDocument ? "ImageToPdf.pdf" : "ImageToPdf.zip",
+                singleDocument ? MediaType.APPLICATION_PDF_VALUE : ZIP, file,
+                (outputStream, files) -> pdfService.convertImageToPDFTo(outputStream, singleDocument, files)));
+
+    }
+
+    @PostMapping("/pipeline")
+    public ResponseEntity<PdfJob> pipeline(@RequestParam String steps, @RequestParam MultipartFile... file) {
+
+        List<PdfPipelineStep> pipeline = PdfPipelineStep.parse(steps);
+        pdfService.validatePipeline(pipeline, file);
+        boolean split = PdfPipelineStep.endsWithSplit(pipeline);
+
+        return accepted(pdfJobService.submit("pipeline", split ? "splitDocument.zip" : "pipeline.pdf",
+                split ? ZIP : MediaType.APPLICATION_PDF_VALUE, file,
+                (outputStream, files) -> pdfService.pipelineTo(outputStream, pipeline, files)));
+
+    }
+
+    @GetMapping("/{id}")
+    public PdfJob status(@PathVariable String id) {
+
+        return job(id);
+
+    }
+
+    @GetMapping("/{id}/result")
+    public ResponseEntity<Resource> result(@PathVariable String id) {
+
+        PdfJob job = job(id);
+        if (job.getStatus() != PdfJob.Status.SUCCEEDED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, String.format("Job %s is %s", id, job.getStatus()));
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(job.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(job.getFileName()).build().toString())
+                .body(new FileSystemResource(job.getResult()));
+
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+
+        pdfJobService.delete(id);
+        return ResponseEntity.noContent().build();
+
+    }
+
+    private PdfJob job(String id) {
+        return pdfJobService.find(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job " + id));
+    }
+
+    private ResponseEntity<PdfJob> accepted(PdfJob job) {
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/pdfapi/jobs/" + job.getId())
+                .body(job);
+    }
+
+}
@@ -1,11 +1,34 @@
 package com.pdf.pdfapi.exception;
 
-public class PdfErrorException extends RuntimeException {
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A failed PDF operation. Answers 500 unless created with another status, such as 400 for requests that cannot succeed
+ * on the given document.
+ */
+public class PdfErrorException extends ResponseStatusException {
     public PdfErrorException(String errorMessage) {
-        super(errorMessage);
+        this(HttpStatus.INTERNAL_SERVER_ERROR, errorMessage, null);
     }
 
     public PdfErrorException(String errorMessage, Throwable cause) {
-        super(errorMessage, cause);
+        this(HttpStatus.INTERNAL_SERVER_ERROR, errorMessage, cause);
+    }
+
+    public PdfErrorException(HttpStatus status, String errorMessage) {
+        this(status, errorMessage, null);
+    }
+
+    public PdfErrorException(HttpStatus status, String errorMessage, Throwable cause) {
+        super(status, errorMessage, cause);
+    }
+
+    /**
+     * The message alone, without the status {@link ResponseStatusException} prepends.
+     */
+    @Override
+    public String getMessage() {
+        return getReason();
     }
 }
@@ -0,0 +1,16 @@
+package com.pdf.pdfapi.service;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * An upload that may live in a local file, which can then be read at any position without streaming up to it.
+ */
+interface FileBackedUpload {
+
+    /**
+     * The file holding the upload, or empty while it is on the heap.
+     */
+    Optional<Path> localFile();
+
+}
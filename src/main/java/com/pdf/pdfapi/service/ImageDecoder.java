@@ -0,0 +1,86 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes uploaded images in order, ahead of the caller.
+ * <p>
+ * With a {@code parallelism} above 1, up to {@code maxDecodedImages} images are decoded concurrently on that many
+ * virtual threads while the caller writes the previous ones. The image handed out by {@link #next()} counts towards
+ * the limit, so no more than {@code maxDecodedImages} decoded images are held at once however large the batch is.
+ * Files are taken from the iterator only when their turn to be decoded comes, so they may still be arriving.
+ */
+class ImageDecoder implements Closeable {
+
+    private final Iterator<MultipartFile> file;
+    private final int maxDecodedImages;
+    private final ExecutorService executor;
+    private final Deque<Future<ImageData>> decoding = new ArrayDeque<>();
+
+    ImageDecoder(Iterator<MultipartFile> file, int parallelism, int maxDecodedImages) {
+        this.file = file;
+        this.maxDecodedImages = Math.max(1, maxDecodedImages);
+        this.executor = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("image-decode-", 0).factory())
+                : null;
+    }
+
+    boolean hasNext() {
+        return !decoding.isEmpty() || file.hasNext();
+    }
+
+    ImageData next() throws IOException {
+
+        if (executor == null) {
+            return decode(file.next());
+        }
+
+        // once the oldest image is decoded it is handed out rather than waiting for files that are still uploading
+        while (decoding.size() < maxDecodedImages && (decoding.isEmpty() || !decoding.peek().isDone()) && file.hasNext()) {
+            MultipartFile currentFile = file.next();
+            decoding.add(executor.submit(() -> decode(currentFile)));
+        }
+
+        try {
+            return decoding.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while decoding images", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new PdfErrorException("Failed to decode image", e.getCause());
+        }
+
+    }
+
+    private static ImageData decode(MultipartFile file) throws IOException {
+        return ImageDataFactory.create(file.getBytes());
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.close();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.pdf.pdfapi.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps produced documents on the heap, for tests and for deployments that only stream results and should not touch
+ * the disk. Documents are kept until they are deleted or the application stops.
+ */
+@Component
+@ConditionalOnProperty(prefix = "pdfapi.storage", name = "type", havingValue = "memory")
+public class InMemoryPdfOutputStorage implements PdfOutputStorage {
+
+    private record Stored(byte[] content, Instant lastModified) {
+    }
+
+    private final Map<String, Stored> documents = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(String name, byte[] content) {
+        if (name.isBlank() || name.contains("/") || name.contains("\\")) {
+            throw new IllegalArgumentException("Invalid file name " + name);
+        }
+        documents.put(name, new Stored(content, Instant.now()));
+    }
+
+    @Override
+    public List<PdfFile> list() {
+        return documents.keySet().stream()
+                .map(this::find)
+                .flatMap(Optional::stream)
+                .sorted(Comparator.comparing(PdfFile::getLastModified).reversed())
+                .toList();
+    }
+
+    @Override
+    public Optional<PdfFile> find(String name) {
+        Stored stored = documents.get(name);
+        return stored == null ? Optional.empty() : Optional.of(new PdfFile(name, stored.content().length, stored.lastModified()));
+    }
+
+    @Override
+    public void transfer(PdfFile file, long start, long length, OutputStream outputStream) throws IOException {
+        Stored stored = documents.get(file.getName());
+        if (stored == null || start + length > stored.content().length) {
+            throw new IOException(String.format("%s is no longer stored", file.getName()));
+        }
+        outputStream.write(stored.content(), Math.toIntExact(start), Math.toIntExact(length));
+    }
+
+    @Override
+    public void delete(String name) {
+        documents.remove(name);
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps produced documents as files in {@code pdfapi.output_folder}, spread over {@value #SHARDS} subfolders named by
+ * a hash of the document name, so that no folder grows large enough to slow down creating and listing files. Documents
+ * kept directly inside the output folder, as they were before, are still listed, served and deleted. Each document is
+ * written to a hidden temporary file of its subfolder first and then moved into place, so a document being written is
+ * never listed or served.
+ */
+@Component
+@ConditionalOnProperty(prefix = "pdfapi.storage", name = "type", havingValue = "local", matchIfMissing = true)
+public class LocalPdfOutputStorage implements PdfOutputStorage {
+
+    private static final String TEMPORARY_PREFIX = ".";
+    private static final int SHARDS = 256;
+    private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+
+    private final PdfConfig pdfConfig;
+
+    public LocalPdfOutputStorage(PdfConfig pdfConfig) {
+        this.pdfConfig = pdfConfig;
+    }
+
+    @Override
+    public void write(String name, byte[] content) throws IOException {
+        Path folder = outputFolder();
+        if (!isName(folder, name)) {
+            throw new IllegalArgumentException("Invalid file name " + name);
+        }
+        Path shard = Files.createDirectories(folder.resolve(shard(name)));
+        Path path = shard.resolve(name);
+        Path temporary = Files.createTempFile(shard, TEMPORARY_PREFIX, ".tmp");
+        try {
+            Files.write(temporary, content);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Other subfolders, such as the result cache, are not listed.
+     */
+    @Override
+    public List<PdfFile> list() throws IOException {
+        Path folder = outputFolder();
+        List<PdfFile> files = new ArrayList<>(files(folder));
+        try (Stream<Path> paths = Files.list(folder)) {
+            for (Path shard : paths.filter(path -> SHARD.matcher(path.getFileName().toString()).matches()).toList()) {
+                files.addAll(files(shard));
+            }
+        }
+        files.sort(Comparator.comparing(PdfFile::getLastModified).reversed());
+        return files;
+    }
+
+    /**
+     * Looks {@code name} up in its subfolder, then directly inside the output folder. Names that resolve anywhere else
+     * are not found.
+     */
+    @Override
+    public Optional<PdfFile> find(String name) {
+        return paths(name).stream().map(this::file).flatMap(Optional::stream).findFirst();
+    }
+
+    /**
+     * Copies with {@link FileChannel#transferTo}, which avoids staging the content on the heap whatever the size of
+     * the file or the range.
+     */
+    @Override
+    public void transfer(PdfFile file, long start, long length, OutputStream outputStream) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.getPath())) {
+            WritableByteChannel target = Channels.newChannel(outputStream);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new PdfErrorException(String.format("%s was truncated while being served", file.getName()));
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        for (Path path : paths(name)) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Where a document named {@code name} may be kept: in its subfolder, or directly inside the output folder.
+     */
+    private List<Path> paths(String name) {
+        Path folder = outputFolder();
+        if (!isName(folder, name)) {
+            return List.of();
+        }
+        return List.of(folder.resolve(shard(name)).resolve(name), folder.resolve(name));
+    }
+
+    private static boolean isName(Path folder, String name) {
+        return folder.equals(folder.resolve(name).normalize().getParent()) && !name.startsWith(TEMPORARY_PREFIX);
+    }
+
+    /**
+     * The subfolder of {@code name}: the low byte of its hash in hex, which is stable across JVMs.
+     */
+    private static String shard(String name) {
+        return HexFormat.of().toHexDigits((byte) Math.floorMod(name.hashCode(), SHARDS));
+    }
+
+    private List<PdfFile> files(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.list(folder)) {
+            return paths.filter(path -> !path.getFileName().toString().startsWith(TEMPORARY_PREFIX))
+                    .map(this::file)
+                    .flatMap(Optional::stream)
+                    .toList();
+        }
+    }
+
+    private Optional<PdfFile> file(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return Optional.empty();
+            }
+            return Optional.of(new PdfFile(path, attributes.size(), attributes.lastModifiedTime().toInstant()));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path outputFolder() {
+        return Path.of(pdfConfig.getOutputFolder()).toAbsolutePath().normalize();
+    }
+
+}
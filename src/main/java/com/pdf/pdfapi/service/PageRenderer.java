@@ -0,0 +1,521 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.colors.Color;
+import com.itextpdf.kernel.colors.DeviceCmyk;
+import com.itextpdf.kernel.colors.DeviceN;
+import com.itextpdf.kernel.colors.PatternColor;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.geom.BezierCurve;
+import com.itextpdf.kernel.geom.IShape;
+import com.itextpdf.kernel.geom.LineSegment;
+import com.itextpdf.kernel.geom.Matrix;
+import com.itextpdf.kernel.geom.Path;
+import com.itextpdf.kernel.geom.Point;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.geom.Subpath;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvasConstants;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ClippingPathInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.data.PathRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.pdf.pdfapi.exception.PdfErrorException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders pages to PNG for previews, on several virtual threads.
+ * <p>
+ * iText has no rasteriser of its own, so pages are drawn with Java2D from the events of iText's content stream parser:
+ * filled and stroked paths with their clipping, images with their soft masks, and text set in the closest AWT logical font, stretched to the
+ * width the PDF font gives it. Shadings, patterns, blend modes and annotations are not drawn, which is good enough to
+ * recognise a page but is no substitute for a full renderer. Workers are scheduled like {@link ParallelSplitter}:
+ * worker {@code w} of {@code n} opens its own {@link PdfDocument} and renders pages {@code w, w + n, ...}, handing each
+ * one over through a single-slot queue, so pages reach the sink in the order given.
+ */
+class PageRenderer {
+
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final java.awt.Color MISSING_IMAGE = new java.awt.Color(0xd0d0d0);
+    private static final long DECODED_IMAGE_PIXELS = 8_000_000;
+
+    private final PdfInput input;
+    private final int parallelism;
+    private final int dpi;
+    private final long maxPixels;
+
+    /**
+     * Receives rendered pages in the order they were asked for.
+     */
+    interface PageSink {
+
+        void write(int page, byte[] png) throws IOException;
+
+    }
+
+    PageRenderer(PdfInput input, int parallelism, int dpi, long maxPixels) {
+        this.input = input;
+        this.parallelism = parallelism;
+        this.dpi = dpi;
+        this.maxPixels = maxPixels;
+    }
+
+    void render(List<Integer> pages, PageSink sink) throws IOException {
+
+        int workers = Math.max(1, Math.min(parallelism, pages.size()));
+
+        List<BlockingQueue<Rendered>> queues = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            queues.add(new ArrayBlockingQueue<>(1));
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+
+            for (int w = 0; w < workers; w++) {
+                int worker = w;
+                executor.execute(() -> render(pages, worker, workers, queues.get(worker)));
+            }
+
+            for (int i = 0; i < pages.size(); i++) {
+                Rendered rendered = queues.get(i % workers).take();
+                if (rendered.error() != null) {
+                    throw new PdfErrorException("Failed to render page " + pages.get(i), rendered.error());
+                }
+                sink.write(pages.get(i), rendered.png());
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while rendering pages", e);
+        } finally {
+            executor.shutdownNow();
+            executor.close();
+        }
+
+    }
+
+    private void render(List<Integer> pages, int worker, int workers, BlockingQueue<Rendered> queue) {
+        try (PdfDocument pdfDocument = new PdfDocument(input.newReader())) {
+            DecodedImages decodedImages = new DecodedImages();
+            for (int i = worker; i < pages.size(); i += workers) {
+                queue.put(new Rendered(png(render(pdfDocument.getPage(pages.get(i)), dpi, maxPixels, decodedImages)), null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                queue.put(new Rendered(null, e));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Draws the crop box of {@code page}, turned by its rotation, at {@code dpi}, or at the highest resolution that
+     * stays within {@code maxPixels} for pages that would be larger.
+     */
+    static BufferedImage render(PdfPage page, int dpi, long maxPixels) {
+        return render(page, dpi, maxPixels, new DecodedImages());
+    }
+
+    private static BufferedImage render(PdfPage page, int dpi, long maxPixels, DecodedImages decodedImages) {
+
+        Rectangle cropBox = page.getCropBox();
+        double scale = dpi / 72.0;
+        double area = (double) cropBox.getWidth() * cropBox.getHeight();
+        if (area * scale * scale > maxPixels) {
+            scale = Math.sqrt(maxPixels / area);
+        }
+        double width = Math.max(1, cropBox.getWidth() * scale);
+        double height = Math.max(1, cropBox.getHeight() * scale);
+
+        int rotation = Math.floorMod(page.getRotation(), 360);
+        AffineTransform device = switch (rotation) {
+            case 90 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case 180 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 270 -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> new AffineTransform();
+        };
+        device.concatenate(new AffineTransform(scale, 0, 0, -scale, -cropBox.getLeft() * scale, cropBox.getTop() * scale));
+
+        boolean quarterTurn = rotation == 90 || rotation == 270;
+        int imageWidth = (int) Math.ceil(quarterTurn ? height : width);
+        int imageHeight = (int) Math.ceil(quarterTurn ? width : height);
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(java.awt.Color.WHITE);
+            graphics.fillRect(0, 0, imageWidth, imageHeight);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            new PdfCanvasProcessor(new Painter(graphics, device, decodedImages)).processPageContent(page);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+
+    }
+
+    static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        // ImageIO.write would buffer through a temporary file unless ImageIO's cache is turned off for the whole JVM
+        try (ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(image);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Images decoded by one worker, kept for the following pages up to {@value #DECODED_IMAGE_PIXELS} pixels, least
+     * recently used first out. They are looked up by their encoded content, as documents generated from a template
+     * often embed the same logo once per page.
+     */
+    private static final class DecodedImages {
+
+        private final LinkedHashMap<List<ByteBuffer>, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+        private long pixels;
+
+        BufferedImage get(PdfImageXObject xObject) throws IOException {
+
+            PdfStream softMask = xObject.getPdfObject().getAsStream(PdfName.SMask);
+            List<ByteBuffer> key = List.of(ByteBuffer.wrap(xObject.getPdfObject().getBytes(false)),
+                    ByteBuffer.wrap(softMask == null ? new byte[0] : softMask.getBytes(false)));
+            BufferedImage image = images.get(key);
+            if (image != null) {
+                return image;
+            }
+
+            image = masked(xObject);
+            long size = (long) image.getWidth() * image.getHeight();
+            if (size <= DECODED_IMAGE_PIXELS) {
+                images.put(key, image);
+                pixels += size;
+                Iterator<BufferedImage> eldest = images.values().iterator();
+                while (pixels > DECODED_IMAGE_PIXELS) {
+                    BufferedImage evicted = eldest.next();
+                    pixels -= (long) evicted.getWidth() * evicted.getHeight();
+                    eldest.remove();
+                }
+            }
+            return image;
+
+        }
+
+        /**
+         * The image with its soft mask, if it has one of the same size, applied as alpha.
+         */
+        private static BufferedImage masked(PdfImageXObject xObject) throws IOException {
+
+            BufferedImage image = xObject.getBufferedImage();
+            PdfStream softMask = xObject.getPdfObject().getAsStream(PdfName.SMask);
+            if (softMask == null) {
+                return image;
+            }
+            BufferedImage mask = new PdfImageXObject(softMask).getBufferedImage();
+            if (mask == null || mask.getWidth() != image.getWidth() || mask.getHeight() != image.getHeight()) {
+                return image;
+            }
+
+            BufferedImage masked = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    masked.setRGB(x, y, (mask.getRGB(x, y) & 0xff) << 24 | image.getRGB(x, y) & 0xffffff);
+                }
+            }
+            return masked;
+
+        }
+
+    }
+
+    private record Rendered(byte[] png, Exception error) {
+    }
+
+    /**
+     * Draws the parser's events onto a page image. Paths and images come in their own user space, the clipping path in
+     * the page's; {@code device} maps the page onto the image.
+     */
+    private static final class Painter implements IEventListener {
+
+        private final Graphics2D graphics;
+        private final AffineTransform device;
+        private final DecodedImages decodedImages;
+        private final Map<PdfFont, Font> fonts = new IdentityHashMap<>();
+
+        private Painter(Graphics2D graphics, AffineTransform device, DecodedImages decodedImages) {
+            this.graphics = graphics;
+            this.device = device;
+            this.decodedImages = decodedImages;
+        }
+
+        @Override
+        public void eventOccurred(IEventData data, EventType type) {
+            switch (type) {
+                case RENDER_PATH -> path((PathRenderInfo) data);
+                case RENDER_TEXT -> text((TextRenderInfo) data);
+                case RENDER_IMAGE -> image((ImageRenderInfo) data);
+                case CLIP_PATH_CHANGED -> clip((ClippingPathInfo) data);
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public Set<EventType> getSupportedEvents() {
+            return null;
+        }
+
+        private void path(PathRenderInfo info) {
+
+            if (info.getOperation() == PathRenderInfo.NO_OP || info.getPath().isEmpty()) {
+                return;
+            }
+
+            Path2D shape = shape(info.getPath(), info.getRule() == PdfCanvasConstants.FillingRule.EVEN_ODD ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+            graphics.setTransform(transform(info.getCtm()));
+            if ((info.getOperation() & PathRenderInfo.FILL) != 0) {
+                paint(info.getFillColor(), info.getGraphicsState().getFillOpacity());
+                graphics.fill(shape);
+            }
+            if ((info.getOperation() & PathRenderInfo.STROKE) != 0) {
+                paint(info.getStrokeColor(), info.getGraphicsState().getStrokeOpacity());
+                graphics.setStroke(stroke(info));
+                graphics.draw(shape);
+            }
+
+        }
+
+        private void text(TextRenderInfo info) {
+
+            int mode = info.getTextRenderMode();
+            String text = info.getText();
+            if (mode == PdfCanvasConstants.TextRenderingMode.INVISIBLE || mode == PdfCanvasConstants.TextRenderingMode.CLIP || text.isBlank()) {
+                return;
+            }
+
+            // the baseline is in user space; its length in text space units is the width the PDF font gives the text
+            Matrix textToUser = info.getTextMatrix().multiply(info.getGraphicsState().getCtm());
+            double unit = Math.hypot(textToUser.get(Matrix.I11), textToUser.get(Matrix.I12));
+            LineSegment baseline = info.getBaseline();
+            double width = baseline.getLength() / unit;
+            Font font = font(info.getFont()).deriveFont(info.getFontSize());
+            double awtWidth = font.getStringBounds(text, FONT_RENDER_CONTEXT).getWidth();
+            if (!(unit > 0) || !(width > 0) || !(awtWidth > 0)) {
+                return;
+            }
+
+            AffineTransform transform = transform(textToUser);
+            transform.translate(0, info.getRise());
+            transform.scale(width / awtWidth, -1);
+            graphics.setTransform(transform);
+            boolean stroked = mode == PdfCanvasConstants.TextRenderingMode.STROKE || mode == PdfCanvasConstants.TextRenderingMode.STROKE_CLIP;
+            paint(stroked ? info.getStrokeColor() : info.getFillColor(),
+                    stroked ? info.getGraphicsState().getStrokeOpacity() : info.getGraphicsState().getFillOpacity());
+            graphics.setFont(font);
+            graphics.drawString(text, 0f, 0f);
+
+        }
+
+        private void image(ImageRenderInfo info) {
+
+            BufferedImage image;
+            try {
+                image = decodedImages.get(info.getImage());
+            } catch (IOException | RuntimeException e) {
+                // e.g. JBIG2 or JPEG 2000, which ImageIO cannot decode
+                image = null;
+            }
+
+            graphics.setTransform(transform(info.getImageCtm()));
+            graphics.setComposite(composite(info.getGraphicsState().getFillOpacity()));
+            if (image == null) {
+                graphics.setColor(MISSING_IMAGE);
+                graphics.fill(new Rectangle2D.Double(0, 0, 1, 1));
+                return;
+            }
+            // images fill the unit square with their first row at the top
+            graphics.drawImage(image, new AffineTransform(1.0 / image.getWidth(), 0, 0, -1.0 / image.getHeight(), 0, 1), null);
+
+        }
+
+        private void clip(ClippingPathInfo info) {
+            graphics.setTransform(device);
+            graphics.setClip(info.getClippingPath() == null ? null : shape(info.getClippingPath(), Path2D.WIND_NON_ZERO));
+        }
+
+        private AffineTransform transform(Matrix matrix) {
+            AffineTransform transform = new AffineTransform(device);
+            transform.concatenate(new AffineTransform(matrix.get(Matrix.I11), matrix.get(Matrix.I12), matrix.get(Matrix.I21),
+                    matrix.get(Matrix.I22), matrix.get(Matrix.I31), matrix.get(Matrix.I32)));
+            return transform;
+        }
+
+        private void paint(Color color, float opacity) {
+            graphics.setColor(awtColor(color));
+            graphics.setComposite(composite(opacity));
+        }
+
+        /**
+         * The closest logical font, chosen by the name of {@code pdfFont}, as embedded fonts cannot be handed to AWT.
+         */
+        private Font font(PdfFont pdfFont) {
+            return fonts.computeIfAbsent(pdfFont, key -> {
+                String name = Objects.toString(key.getFontProgram().getFontNames().getFontName(), "").toLowerCase(Locale.ROOT);
+                String family = name.contains("courier") || name.contains("mono") || name.contains("consol") ? Font.MONOSPACED
+                        : (name.contains("times") || name.contains("serif") || name.contains("georgia") || name.contains("garamond"))
+                        && !name.contains("sans") ? Font.SERIF : Font.SANS_SERIF;
+                int style = (name.contains("bold") || name.contains("black") || name.contains("heavy") ? Font.BOLD : Font.PLAIN)
+                        | (name.contains("italic") || name.contains("oblique") ? Font.ITALIC : Font.PLAIN);
+                return new Font(family, style, 1);
+            });
+        }
+
+        private static Path2D shape(Path path, int windingRule) {
+            Path2D.Double shape = new Path2D.Double(windingRule);
+            for (Subpath subpath : path.getSubpaths()) {
+                Point start = subpath.getStartPoint();
+                shape.moveTo(start.getX(), start.getY());
+                for (IShape segment : subpath.getSegments()) {
+                    List<Point> points = segment.getBasePoints();
+                    if (segment instanceof BezierCurve) {
+                        shape.curveTo(points.get(1).getX(), points.get(1).getY(), points.get(2).getX(), points.get(2).getY(),
+                                points.get(3).getX(), points.get(3).getY());
+                    } else {
+                        shape.lineTo(points.get(points.size() - 1).getX(), points.get(points.size() - 1).getY());
+                    }
+                }
+                if (subpath.isClosed()) {
+                    shape.closePath();
+                }
+            }
+            return shape;
+        }
+
+        private static BasicStroke stroke(PathRenderInfo info) {
+
+            int cap = switch (info.getLineCapStyle()) {
+                case PdfCanvasConstants.LineCapStyle.ROUND -> BasicStroke.CAP_ROUND;
+                case PdfCanvasConstants.LineCapStyle.PROJECTING_SQUARE -> BasicStroke.CAP_SQUARE;
+                default -> BasicStroke.CAP_BUTT;
+            };
+            int join = switch (info.getLineJoinStyle()) {
+                case PdfCanvasConstants.LineJoinStyle.ROUND -> BasicStroke.JOIN_ROUND;
+                case PdfCanvasConstants.LineJoinStyle.BEVEL -> BasicStroke.JOIN_BEVEL;
+                default -> BasicStroke.JOIN_MITER;
+            };
+
+            float[] dash = null;
+            float phase = 0;
+            PdfArray pattern = info.getLineDashPattern();
+            if (pattern != null && pattern.size() == 2 && pattern.get(0) instanceof PdfArray lengths && !lengths.isEmpty()) {
+                dash = new float[lengths.size()];
+                float total = 0;
+                for (int i = 0; i < dash.length; i++) {
+                    dash[i] = lengths.get(i) instanceof PdfNumber number ? Math.max(0, number.floatValue()) : 0;
+                    total += dash[i];
+                }
+                phase = pattern.get(1) instanceof PdfNumber number ? Math.max(0, number.floatValue()) : 0;
+                if (total == 0) {
+                    dash = null;
+                }
+            }
+
+            return new BasicStroke(Math.max(0, info.getLineWidth()), cap, join, Math.max(1, info.getMiterLimit()), dash, phase);
+
+        }
+
+        private static AlphaComposite composite(float opacity) {
+            return opacity < 1 ? AlphaComposite.getInstance(AlphaComposite.SRC_OVER, Math.max(0, opacity)) : AlphaComposite.SrcOver;
+        }
+
+        /**
+         * Device colours as they are; tints of separations count as darkness, and everything else is drawn as a
+         * neutral grey or by its number of components.
+         */
+        private static java.awt.Color awtColor(Color color) {
+
+            if (color == null) {
+                return java.awt.Color.BLACK;
+            }
+            if (color instanceof PatternColor) {
+                return java.awt.Color.LIGHT_GRAY;
+            }
+
+            float[] value = color.getColorValue();
+            if (color instanceof com.itextpdf.kernel.colors.Separation || color instanceof DeviceN) {
+                float tint = 0;
+                for (float component : value) {
+                    tint = Math.max(tint, component);
+                }
+                return gray(1 - tint);
+            }
+            if (color instanceof DeviceCmyk || value.length == 4) {
+                return new java.awt.Color(clamp((1 - value[0]) * (1 - value[3])), clamp((1 - value[1]) * (1 - value[3])),
+                        clamp((1 - value[2]) * (1 - value[3])));
+            }
+            if (value.length == 3) {
+                return new java.awt.Color(clamp(value[0]), clamp(value[1]), clamp(value[2]));
+            }
+            return value.length == 1 ? gray(value[0]) : java.awt.Color.GRAY;
+
+        }
+
+        private static java.awt.Color gray(float value) {
+            return new java.awt.Color(clamp(value), clamp(value), clamp(value));
+        }
+
+        private static float clamp(float value) {
+            return Math.min(1, Math.max(0, value));
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.utils.PageRange;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.EqualsAndHashCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * A set of page numbers, written as a range expression such as {@code 1-3,7,10-}: single pages, closed ranges and
+ * ranges running to the last page, in any order and possibly overlapping. It is only checked against a document,
+ * either normalised into sorted unique pages by {@link #resolve(int)} or kept as ordered ranges by
+ * {@link #pageRanges(int)}.
+ */
+@EqualsAndHashCode
+public final class PageSet {
+
+    /**
+     * Pages {@code start} to {@code end}, or to the last page when {@code end} is {@code null}.
+     */
+    private record Range(int start, Integer end) {
+
+        @Override
+        public String toString() {
+            if (end == null) {
+                return start + "-";
+            }
+            return start == end ? String.valueOf(start) : start + "-" + end;
+        }
+
+    }
+
+    private final List<Range> ranges;
+
+    private PageSet(List<Range> ranges) {
+        this.ranges = ranges;
+    }
+
+    public static PageSet of(Integer... page) {
+        return new PageSet(Arrays.stream(page).map(number -> new Range(number == null ? 0 : number, number == null ? 0 : number)).toList());
+    }
+
+    public static PageSet parse(String expression) {
+
+        List<Range> ranges = new ArrayList<>();
+        for (String part : expression.split(",")) {
+            String range = part.strip();
+            if (range.isEmpty()) {
+                continue;
+            }
+            try {
+                int dash = range.indexOf('-');
+                if (dash < 0) {
+                    int page = Integer.parseInt(range);
+                    ranges.add(new Range(page, page));
+                } else {
+                    String end = range.substring(dash + 1).strip();
+                    ranges.add(new Range(Integer.parseInt(range.substring(0, dash).strip()), end.isEmpty() ? null : Integer.valueOf(end)));
+                }
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Invalid page range '%s': expected a page such as 7, a range such as 1-3 or an open range such as 10-", range));
+            }
+        }
+        return new PageSet(ranges);
+
+    }
+
+    public static PageSet range(int startPage, int endPage) {
+        return new PageSet(List.of(new Range(startPage, endPage)));
+    }
+
+    /**
+     * The ranges of {@code expression} followed by {@code startPage} to {@code endPage}; either may be {@code null}.
+     */
+    public static PageSet ranges(String expression, Integer startPage, Integer endPage) {
+        List<Range> ranges = new ArrayList<>();
+        if (expression != null) {
+            ranges.addAll(parse(expression).ranges);
+        }
+        if (startPage != null || endPage != null) {
+            if (startPage == null || endPage == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "startPage and endPage go together");
+            }
+            ranges.add(new Range(startPage, endPage));
+        }
+        if (ranges.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No pages given");
+        }
+        return new PageSet(ranges);
+    }
+
+    /**
+     * The pages listed individually in {@code page} together with those of {@code expression}; either may be {@code null}.
+     */
+    public static PageSet of(String expression, Integer... page) {
+        List<Range> ranges = new ArrayList<>();
+        if (page != null) {
+            ranges.addAll(of(page).ranges);
+        }
+        if (expression != null) {
+            ranges.addAll(parse(expression).ranges);
+        }
+        if (ranges.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No pages given");
+        }
+        return new PageSet(ranges);
+    }
+
+    /**
+     * The pages of a document with {@code numberOfPages} pages that are in this set, sorted and without duplicates.
+     *
+     * @throws PdfErrorException if a page is not in the document
+     */
+    public BitSet resolve(int numberOfPages) {
+        BitSet pages = new BitSet(numberOfPages + 1);
+        for (Range range : ranges) {
+            pages.set(range.start(), end(range, numberOfPages) + 1);
+        }
+        return pages;
+    }
+
+    /**
+     * Every range of this set in the order it was given, duplicates included.
+     *
+     * @throws PdfErrorException if a page is not in the document
+     */
+    public List<PageRange> pageRanges(int numberOfPages) {
+        return ranges.stream().map(range -> new PageRange().addPageSequence(range.start(), end(range, numberOfPages))).toList();
+    }
+
+    /**
+     * A single range with every page of this set in the order it was given, duplicates included.
+     *
+     * @throws PdfErrorException if a page is not in the document
+     */
+    public PageRange pageRange(int numberOfPages) {
+        PageRange pageRange = new PageRange();
+        for (Range range : ranges) {
+            pageRange.addPageSequence(range.start(), end(range, numberOfPages));
+        }
+        return pageRange;
+    }
+
+    private static int end(Range range, int numberOfPages) {
+        int end = Objects.requireNonNullElse(range.end(), numberOfPages);
+        if (range.start() < 1 || range.start() > numberOfPages || end > numberOfPages) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("Page %s is outside the %d pages of the document", range, numberOfPages));
+        }
+        if (end < range.start()) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("Page range %s ends before it starts", range));
+        }
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return ranges.stream().map(Range::toString).collect(Collectors.joining(","));
+    }
+
+}
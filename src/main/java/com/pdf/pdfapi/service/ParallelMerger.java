@@ -0,0 +1,196 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfDocumentInfo;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.utils.PdfMerger;
+import com.pdf.pdfapi.exception.PdfErrorException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Merges many documents by tree reduction.
+ * <p>
+ * The inputs are cut into consecutive chunks of {@code chunkSize} documents which are merged concurrently,
+ * at most {@code parallelism} at a time, into temporary files. The intermediates are reduced the same way until
+ * at most {@code chunkSize} remain, and those are merged into the final writer. Chunks are contiguous and kept in
+ * order, so the page order is the same as merging sequentially, and at most {@code parallelism * chunkSize}
+ * documents are open at once. The temporary files are deleted once merged, or once the merge has failed.
+ */
+class ParallelMerger {
+
+    /**
+     * Opens one merge input; the merger closes it once its pages have been copied.
+     */
+    @FunctionalInterface
+    interface Source {
+        PdfInput open() throws IOException;
+    }
+
+    private final int parallelism;
+    private final int chunkSize;
+
+    ParallelMerger(int parallelism, int chunkSize) {
+        this.parallelism = parallelism;
+        this.chunkSize = Math.max(2, chunkSize);
+    }
+
+    /**
+     * Merges {@code sources} one after another into {@code pdfWriter}. The first source is opened in stamping
+     * mode, so its document-level information is kept, and every other source is appended to it.
+     * <p>
+     * With {@code deduplicate} every source, the first one included, is copied into a new document instead, so that
+     * a writer in smart mode can share resources between all of them. Only the first source's title, author,
+     * subject, keywords and creator are carried over in that case.
+     *
+     * @return the number of pages of the merged document
+     */
+    static int merge(PdfWriter pdfWriter, List<Source> sources, boolean deduplicate) throws IOException {
+        return merge(pdfWriter, sources.iterator(), deduplicate);
+    }
+
+    /**
+     * Like {@link #merge(PdfWriter, List, boolean)}, taking each source only once the previous one is merged, so the
+     * sources may still be arriving.
+     */
+    static int merge(PdfWriter pdfWriter, Iterator<Source> sources, boolean deduplicate) throws IOException {
+
+        if (deduplicate) {
+            return copy(pdfWriter, sources);
+        }
+
+        try (PdfInput input = sources.next().open()) {
+
+            PdfDocument pdfDocument = new PdfDocument(input.newReader(), pdfWriter);
+            PdfMerger merger = new PdfMerger(pdfDocument);
+
+            while (sources.hasNext()) {
+                try (PdfInput input2 = sources.next().open()) {
+                    PdfDocument pdfDocument2 = new PdfDocument(input2.newReader());
+                    merger.merge(pdfDocument2, 1, pdfDocument2.getNumberOfPages());
+                    pdfDocument2.close();
+                }
+            }
+
+            int pages = pdfDocument.getNumberOfPages();
+            pdfDocument.close();
+            return pages;
+
+        }
+
+    }
+
+    private static int copy(PdfWriter pdfWriter, Iterator<Source> sources) throws IOException {
+
+        PdfDocument pdfDocument = new PdfDocument(pdfWriter);
+        PdfMerger merger = new PdfMerger(pdfDocument);
+
+        for (boolean first = true; sources.hasNext(); first = false) {
+            try (PdfInput input = sources.next().open()) {
+                PdfDocument pdfDocument2 = new PdfDocument(input.newReader());
+                if (first) {
+                    copyDocumentInfo(pdfDocument2, pdfDocument);
+                }
+                merger.merge(pdfDocument2, 1, pdfDocument2.getNumberOfPages());
+                pdfDocument2.close();
+            }
+        }
+
+        int pages = pdfDocument.getNumberOfPages();
+        pdfDocument.close();
+        return pages;
+
+    }
+
+    /**
+     * Carries title, author, subject, keywords and creator over to a document that pages are copied into.
+     */
+    static void copyDocumentInfo(PdfDocument from, PdfDocument to) {
+        PdfDocumentInfo info = from.getDocumentInfo();
+        for (String key : List.of("Title", "Author", "Subject", "Keywords", "Creator")) {
+            to.getDocumentInfo().setMoreInfo(key, info.getMoreInfo(key));
+        }
+    }
+
+    int mergeTree(PdfWriter pdfWriter, List<Source> sources, boolean deduplicate) throws IOException {
+
+        List<PdfInput> intermediates = Collections.synchronizedList(new ArrayList<>());
+        List<Source> level = sources;
+
+        try {
+            try (ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("pdf-merge-", 0).factory())) {
+                while (level.size() > chunkSize) {
+                    level = reduce(executor, level, intermediates);
+                }
+            }
+            return merge(pdfWriter, level, deduplicate);
+        } finally {
+            // merged intermediates are closed already, but a failure leaves the ones not merged yet open; closing the
+            // executor above waited for every chunk, so all of them are in the list
+            intermediates.forEach(ParallelMerger::closeQuietly);
+        }
+
+    }
+
+    /**
+     * Merges each chunk of {@code level} into a temporary file, adding every one produced to {@code intermediates}.
+     */
+    private List<Source> reduce(ExecutorService executor, List<Source> level, List<PdfInput> intermediates) throws IOException {
+
+        List<Future<PdfInput>> futures = new ArrayList<>();
+        for (int i = 0; i < level.size(); i += chunkSize) {
+            List<Source> chunk = level.subList(i, Math.min(i + chunkSize, level.size()));
+            futures.add(executor.submit(() -> mergeToTemporaryFile(chunk, intermediates)));
+        }
+
+        List<Source> next = new ArrayList<>(futures.size());
+        try {
+            for (Future<PdfInput> future : futures) {
+                PdfInput intermediate = future.get();
+                next.add(() -> intermediate);
+            }
+            return next;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while merging files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new PdfErrorException("Failed while merging files", e.getCause());
+        }
+
+    }
+
+    private PdfInput mergeToTemporaryFile(List<Source> chunk, List<PdfInput> intermediates) throws IOException {
+        Path file = Files.createTempFile("pdfapi-merge-", ".pdf");
+        try {
+            merge(new PdfWriter(file.toString()), chunk, false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        PdfInput intermediate = PdfInput.mapped(file);
+        intermediates.add(intermediate);
+        return intermediate;
+    }
+
+    private static void closeQuietly(PdfInput intermediate) {
+        try {
+            intermediate.close();
+        } catch (IOException ignored) {
+            // a temporary file that cannot be deleted is not worth hiding the outcome of the merge for
+        }
+    }
+
+}
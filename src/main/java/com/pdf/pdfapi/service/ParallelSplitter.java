@@ -0,0 +1,163 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.utils.PageRange;
+import com.itextpdf.kernel.utils.PdfSplitter;
+import com.pdf.pdfapi.exception.PdfErrorException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Splits a document into parts, by {@link SplitStrategy} or by page ranges, on several virtual threads.
+ * <p>
+ * Worker {@code w} of {@code n} opens its own {@link PdfDocument} over the shared {@link PdfInput} and renders
+ * parts {@code w, w + n, w + 2n, ...}, handing each one over through a single-slot queue. The calling thread
+ * drains the queues round-robin, so parts reach the sink in the same order and with the same names as the
+ * sequential split, and at most {@code 2n} rendered parts are held in memory at any time.
+ */
+class ParallelSplitter {
+
+    private final PdfInput input;
+    private final int parallelism;
+    private final WriterProperties writerProperties;
+
+    ParallelSplitter(PdfInput input, int parallelism, WriterProperties writerProperties) {
+        this.input = input;
+        this.parallelism = parallelism;
+        this.writerProperties = writerProperties;
+    }
+
+    /**
+     * @return the number of pages of the split document
+     */
+    int split(PdfPartSink sink, String fileNamePrefix, SplitStrategy strategy) throws IOException {
+
+        List<PageRange> ranges;
+        int numberOfPages;
+        try (PdfDocument pdfDocument = new PdfDocument(input.newReader())) {
+            ranges = strategy.pageRanges(pdfDocument);
+            numberOfPages = pdfDocument.getNumberOfPages();
+        }
+        write(sink, fileNamePrefix, ranges, strategy.getMaxSize(), "split file");
+        return numberOfPages;
+
+    }
+
+    /**
+     * Writes one part per range of {@code pages}, in the order the ranges were given.
+     *
+     * @return the number of pages extracted
+     */
+    int extract(PdfPartSink sink, String fileNamePrefix, PageSet pages) throws IOException {
+
+        int numberOfPages;
+        try (PdfDocument pdfDocument = new PdfDocument(input.newReader())) {
+            numberOfPages = pdfDocument.getNumberOfPages();
+        }
+        List<PageRange> ranges = pages.pageRanges(numberOfPages);
+        write(sink, fileNamePrefix, ranges, null, "extract from file");
+        return ranges.stream().mapToInt(range -> range.getQualifyingPageNums(numberOfPages).size()).sum();
+
+    }
+
+    private void write(PdfPartSink sink, String fileNamePrefix, List<PageRange> ranges, Long maxSize, String action) throws IOException {
+
+        int workers = Math.min(parallelism, ranges.size());
+
+        List<BlockingQueue<Part>> queues = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            queues.add(new ArrayBlockingQueue<>(1));
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+
+            for (int w = 0; w < workers; w++) {
+                int worker = w;
+                executor.execute(() -> render(ranges, maxSize, worker, workers, queues.get(worker)));
+            }
+
+            int partNumber = 1;
+            for (int i = 0; i < ranges.size(); i++) {
+                Part part = queues.get(i % workers).take();
+                if (part.error() instanceof Error error) {
+                    throw error;
+                } else if (part.error() != null) {
+                    throw new PdfErrorException("Failed to " + action, part.error());
+                }
+                for (byte[] content : part.contents()) {
+                    sink.write(String.format("%s%d.pdf", fileNamePrefix, partNumber++), content);
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while trying to " + action, e);
+        } finally {
+            executor.shutdownNow();
+            executor.close();
+        }
+
+    }
+
+    private void render(List<PageRange> ranges, Long maxSize, int worker, int workers, BlockingQueue<Part> queue) {
+        try (PdfDocument pdfDocument = new PdfDocument(input.newReader())) {
+            for (int i = worker; i < ranges.size(); i += workers) {
+                queue.put(new Part(render(pdfDocument, ranges.get(i), maxSize, writerProperties), null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // an Error too, or the calling thread would wait for this worker's parts forever
+            fail(queue, e);
+        }
+    }
+
+    /**
+     * Renders {@code pageRange} of {@code pdfDocument} in memory. With a {@code maxSize} budget, a part that turns out
+     * larger than planned is cut in halves until every part fits; a single page over the budget stays a part of its own.
+     */
+    static List<byte[]> render(PdfDocument pdfDocument, PageRange pageRange, Long maxSize, WriterProperties writerProperties) {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PdfSplitter pdfSplitter = new PdfSplitter(pdfDocument) {
+            @Override
+            protected PdfWriter getNextPdfWriter(PageRange documentPageRange) {
+                return new PdfWriter(outputStream, writerProperties);
+            }
+        };
+        pdfSplitter.extractPageRange(pageRange).close();
+
+        List<Integer> pages = pageRange.getQualifyingPageNums(pdfDocument.getNumberOfPages());
+        if (maxSize == null || outputStream.size() <= maxSize || pages.size() == 1) {
+            return List.of(outputStream.toByteArray());
+        }
+
+        int middle = pages.size() / 2;
+        List<byte[]> parts = new ArrayList<>(render(pdfDocument, new PageRange().addPageSequence(pages.get(0), pages.get(middle - 1)), maxSize, writerProperties));
+        parts.addAll(render(pdfDocument, new PageRange().addPageSequence(pages.get(middle), pages.get(pages.size() - 1)), maxSize, writerProperties));
+        return parts;
+
+    }
+
+    private void fail(BlockingQueue<Part> queue, Throwable error) {
+        try {
+            queue.put(new Part(null, error));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Part(List<byte[]> contents, Throwable error) {
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte arrays for uploads read onto the heap and for documents rendered into memory.
+ * <p>
+ * With {@code pdfapi.buffers.pooled} they are reused across operations: buffers are handed out in power-of-two sizes
+ * from {@value #MIN_BUFFER} bytes up to {@code pdfapi.buffers.max-buffer-size}, and released buffers are kept up to
+ * {@code pdfapi.buffers.pool-size} in total. Larger requests, and every request when pooling is off, get a new array of
+ * the exact size. Requests are counted as {@code pdfapi.buffers.requests}, tagged with {@code result}, and the size of
+ * the kept buffers is gauged as {@code pdfapi.buffers.pooled}.
+ */
+@Component
+public class PdfBufferPool {
+
+    static final int MIN_BUFFER = 8 * 1024;
+
+    private final boolean pooled;
+    private final long poolSize;
+    private final long mappedThreshold;
+    private final int maxBuffer;
+
+    // free buffers of MIN_BUFFER << i bytes at index i, most recently released first
+    private final List<Deque<byte[]>> free = new ArrayList<>();
+    private final AtomicLong retained = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PdfBufferPool(PdfConfig pdfConfig, MeterRegistry meterRegistry) {
+        PdfConfig.Buffers config = pdfConfig.getBuffers();
+        this.pooled = config.isPooled();
+        this.poolSize = config.getPoolSize().toBytes();
+        this.mappedThreshold = pdfConfig.getInput().getMappedThreshold().toBytes();
+        this.maxBuffer = Math.max(MIN_BUFFER, Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, config.getMaxBufferSize().toBytes())));
+        for (int size = MIN_BUFFER; size > 0 && size <= maxBuffer; size <<= 1) {
+            free.add(new ConcurrentLinkedDeque<>());
+        }
+        this.hits = Counter.builder("pdfapi.buffers.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("pdfapi.buffers.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("pdfapi.buffers.pooled", retained, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * A buffer of at least {@code length} bytes whose content is undefined.
+     */
+    public byte[] acquire(int length) {
+
+        int sizeClass = sizeClass(length);
+        if (!pooled || sizeClass < 0) {
+            return new byte[length];
+        }
+
+        byte[] buffer = free.get(sizeClass).pollFirst();
+        if (buffer == null) {
+            misses.increment();
+            return new byte[MIN_BUFFER << sizeClass];
+        }
+        retained.addAndGet(-buffer.length);
+        hits.increment();
+        return buffer;
+
+    }
+
+    /**
+     * Hands {@code buffer}, which came from {@link #acquire} or {@link #read}, back for reuse; it must not be used
+     * afterwards, and must not be released twice.
+     */
+    public void release(byte[] buffer) {
+
+        if (!pooled || buffer == null) {
+            return;
+        }
+
+        int sizeClass = sizeClass(buffer.length);
+        if (sizeClass < 0 || MIN_BUFFER << sizeClass != buffer.length) {
+            return;
+        }
+        if (retained.addAndGet(buffer.length) > poolSize) {
+            retained.addAndGet(-buffer.length);
+            return;
+        }
+        free.get(sizeClass).offerFirst(buffer);
+
+    }
+
+    /**
+     * The content of {@code file} in a buffer from {@link #acquire}, or without pooling in the array returned by
+     * {@link MultipartFile#getBytes()}.
+     */
+    public Content read(MultipartFile file) throws IOException {
+
+        if (!pooled) {
+            byte[] content = file.getBytes();
+            return new Content(content, content.length);
+        }
+
+        int length = Math.toIntExact(file.getSize());
+        byte[] buffer = acquire(length);
+        try (InputStream inputStream = file.getInputStream()) {
+            if (inputStream.readNBytes(buffer, 0, length) < length) {
+                throw new EOFException(String.format("%s is shorter than %d bytes", file.getOriginalFilename(), length));
+            }
+        } catch (IOException | RuntimeException e) {
+            release(buffer);
+            throw e;
+        }
+        return new Content(buffer, length);
+
+    }
+
+    /**
+     * Passes the content of {@code file} to {@code consumer} as one chunk if it is below
+     * {@code pdfapi.input.mapped-threshold}, read with {@link #read}, and otherwise in chunks of {@value #MIN_BUFFER}
+     * bytes, so large uploads are not copied onto the heap.
+     */
+    public void forEachChunk(MultipartFile file, ChunkConsumer consumer) throws IOException {
+
+        if (file.getSize() < mappedThreshold) {
+            Content content = read(file);
+            try {
+                consumer.accept(content.buffer(), content.length());
+            } finally {
+                release(content.buffer());
+            }
+            return;
+        }
+
+        byte[] chunk = acquire(MIN_BUFFER);
+        try (InputStream inputStream = file.getInputStream()) {
+            for (int read = inputStream.read(chunk); read >= 0; read = inputStream.read(chunk)) {
+                consumer.accept(chunk, read);
+            }
+        } finally {
+            release(chunk);
+        }
+
+    }
+
+    /**
+     * A new in-memory output whose buffer grows through buffers of this pool.
+     */
+    public Output output() {
+        return new Output();
+    }
+
+    /**
+     * The index of the pooled size holding {@code length} bytes, or -1 if it is larger than the largest.
+     */
+    private int sizeClass(int length) {
+        if (length > maxBuffer) {
+            return -1;
+        }
+        // ceil(log2(length)) - log2(MIN_BUFFER)
+        return Integer.numberOfLeadingZeros(MIN_BUFFER - 1) - Integer.numberOfLeadingZeros(Math.max(length, MIN_BUFFER) - 1);
+    }
+
+    /**
+     * The first {@code length} bytes of {@code buffer}.
+     */
+    public record Content(byte[] buffer, int length) {
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(byte[] chunk, int length) throws IOException;
+    }
+
+    /**
+     * Like {@link java.io.ByteArrayOutputStream}, closing does nothing, since iText closes the streams it writes to
+     * along with the document. The buffer is handed back with {@link #release()} once the content has been copied out.
+     */
+    public final class Output extends OutputStream {
+
+        private byte[] buffer = acquire(MIN_BUFFER);
+        private int count;
+
+        private Output() {
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ensureCapacity(Math.addExact(count, len));
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public void release() {
+            PdfBufferPool.this.release(buffer);
+            buffer = null;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                byte[] grown = acquire((int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, 2L * buffer.length)));
+                System.arraycopy(buffer, 0, grown, 0, count);
+                PdfBufferPool.this.release(buffer);
+                buffer = grown;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Caps how many operations of each kind render at once ({@code pdfapi.concurrency.limits.<operation>}), so that a
+ * burst of CPU-heavy merges cannot take every core from cheap extracts. Each limited operation has a fair semaphore;
+ * a caller waits up to {@code pdfapi.concurrency.acquire-timeout} for a slot and is then rejected with 429. Waiting is
+ * timed as {@code pdfapi.concurrency.wait}, rejections are counted as {@code pdfapi.concurrency.rejected} and free
+ * slots are gauged as {@code pdfapi.concurrency.available}, all tagged with {@code operation}.
+ */
+@Component
+public class PdfConcurrencyLimiter {
+
+    private static final Runnable UNLIMITED = () -> {
+    };
+
+    private final Map<String, Semaphore> semaphores;
+    private final Duration acquireTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public PdfConcurrencyLimiter(PdfConfig pdfConfig, MeterRegistry meterRegistry) {
+        PdfConfig.Concurrency config = pdfConfig.getConcurrency();
+        this.semaphores = config.getLimits().entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> new Semaphore(entry.getValue(), true)));
+        this.acquireTimeout = config.getAcquireTimeout();
+        this.meterRegistry = meterRegistry;
+        semaphores.forEach((operation, semaphore) -> Gauge.builder("pdfapi.concurrency.available", semaphore, Semaphore::availablePermits)
+                .tag("operation", operation)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Waits for a slot of {@code operation}.
+     *
+     * @return releases the slot; running it more than once has no further effect
+     * @throws ResponseStatusException with 429 if no slot frees up in time
+     */
+    public Runnable acquire(String operation) {
+
+        Semaphore semaphore = semaphores.get(operation);
+        if (semaphore == null) {
+            return UNLIMITED;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            boolean acquired = semaphore.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            sample.stop(Timer.builder("pdfapi.concurrency.wait").tag("operation", operation).register(meterRegistry));
+            if (!acquired) {
+                Counter.builder("pdfapi.concurrency.rejected").tag("operation", operation).register(meterRegistry).increment();
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many " + operation + " operations running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while waiting to " + operation, e);
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        };
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.pdf.pdfapi.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A document registered through {@link PdfDocumentService}. The document is parsed once and kept open, so later
+ * operations against the handle reuse its cross-reference table, object streams and page tree.
+ * A {@link PdfDocument} is not thread-safe, so operations on the same handle run one at a time. They are serialized
+ * with a {@link ReentrantLock} rather than a monitor, as a virtual thread blocking inside {@code synchronized} would
+ * pin its carrier thread. Results are rendered into a temporary file while holding it and sent to the client only
+ * after it is released, so a slow download does not hold up other operations on the handle.
+ */
+@Getter
+public class PdfDocumentHandle {
+
+    /**
+     * An operation reading the parsed document.
+     */
+    @FunctionalInterface
+    interface Work<T> {
+        T apply(PdfDocument pdfDocument) throws IOException;
+    }
+
+    private final String id;
+    private final int pages;
+    private final long size;
+    private final Instant registeredAt;
+    private volatile Instant lastAccessedAt;
+
+    @Getter(AccessLevel.NONE)
+    private final PdfInput input;
+    @Getter(AccessLevel.NONE)
+    private final PdfDocument pdfDocument;
+    @Getter(AccessLevel.NONE)
+    private final ReentrantLock lock = new ReentrantLock();
+    @Getter(AccessLevel.NONE)
+    private boolean closed;
+
+    PdfDocumentHandle(String id, long size, PdfInput input, PdfDocument pdfDocument) {
+        this.id = id;
+        this.size = size;
+        this.input = input;
+        this.pdfDocument = pdfDocument;
+        this.pages = pdfDocument.getNumberOfPages();
+        this.registeredAt = Instant.now();
+        this.lastAccessedAt = registeredAt;
+    }
+
+    <T> T read(Work<T> work) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new PdfErrorException(String.format("Document %s has been evicted", id));
+            }
+            lastAccessedAt = Instant.now();
+            return work.apply(pdfDocument);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonIgnore
+    boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() throws IOException {
+        lock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                pdfDocument.close();
+                input.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
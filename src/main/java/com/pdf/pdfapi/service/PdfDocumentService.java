@@ -0,0 +1,193 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.commons.exceptions.ITextException;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps uploaded documents parsed between requests, so that several operations on one upload parse it only once.
+ * <p>
+ * Registered documents are dropped once unused for {@code pdfapi.documents.ttl}, checked on every lookup and every
+ * {@code pdfapi.documents.purge-interval}. Dropped documents are closed on the purge thread, since closing waits for an
+ * operation running on the document. Their upload sizes are kept within {@code pdfapi.documents.memory-size} by
+ * evicting the least recently used documents first; this is not a bound on the heap, which a parsed document can take
+ * several times its compressed upload size of.
+ */
+@Service
+@Log4j2
+public class PdfDocumentService {
+
+    private final PdfConfig pdfConfig;
+    private final PdfInputFactory pdfInputFactory;
+    private final Map<String, PdfDocumentHandle> documents = new ConcurrentHashMap<>();
+    private final Counter expired;
+    private final Counter evicted;
+    private final ScheduledExecutorService purger;
+
+    public PdfDocumentService(PdfConfig pdfConfig, PdfInputFactory pdfInputFactory, MeterRegistry meterRegistry) {
+        this.pdfConfig = pdfConfig;
+        this.pdfInputFactory = pdfInputFactory;
+        this.expired = Counter.builder("pdfapi.documents.evictions").tag("reason", "ttl").register(meterRegistry);
+        this.evicted = Counter.builder("pdfapi.documents.evictions").tag("reason", "memory").register(meterRegistry);
+        Gauge.builder("pdfapi.documents.count", documents, Map::size).register(meterRegistry);
+        Gauge.builder("pdfapi.documents.size", this, PdfDocumentService::size).baseUnit("bytes").register(meterRegistry);
+
+        long interval = pdfConfig.getDocuments().getPurgeInterval().toMillis();
+        this.purger = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("pdf-document-purge").daemon().priority(Thread.MIN_PRIORITY).factory());
+        purger.scheduleWithFixedDelay(this::purgeExpiredQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Parses {@code file}, including its whole page tree, and keeps it open behind a new handle.
+     */
+    public PdfDocumentHandle register(MultipartFile file) {
+
+        if (file.getSize() > pdfConfig.getDocuments().getMemorySize().toBytes()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Document is larger than pdfapi.documents.memory-size");
+        }
+
+        PdfInput input = null;
+        PdfDocumentHandle handle;
+        try {
+            input = pdfInputFactory.open(file);
+            PdfDocument pdfDocument = new PdfDocument(input.newReader());
+            for (int page = 1; page <= pdfDocument.getNumberOfPages(); page++) {
+                pdfDocument.getPage(page);
+            }
+            handle = new PdfDocumentHandle(UUID.randomUUID().toString(), file.getSize(), input, pdfDocument);
+        } catch (IOException | ITextException e) {
+            closeQuietly(input);
+            throw new PdfErrorException("Failed to register document", e);
+        }
+
+        documents.put(handle.getId(), handle);
+        evict(handle);
+        return handle;
+
+    }
+
+    /**
+     * The handle registered as {@code id}, unless it has expired. Expired and evicted handles are closed on the purge
+     * thread, so a lookup never waits for an operation running on another handle.
+     */
+    public Optional<PdfDocumentHandle> find(String id) {
+        PdfDocumentHandle handle = documents.get(id);
+        if (handle != null && isExpired(handle, Instant.now().minus(pdfConfig.getDocuments().getTtl()))) {
+            if (documents.remove(id, handle)) {
+                expired.increment();
+                purger.execute(() -> close(handle));
+            }
+            return Optional.empty();
+        }
+        return Optional.ofNullable(handle);
+    }
+
+    public void delete(String id) {
+        PdfDocumentHandle handle = documents.remove(id);
+        if (handle != null) {
+            close(handle);
+        }
+    }
+
+    private void purgeExpiredQuietly() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            // an exception escaping a scheduled task would cancel all later purges
+            log.error("Purging idle documents failed", e);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant expiry = Instant.now().minus(pdfConfig.getDocuments().getTtl());
+        documents.values().removeIf(handle -> {
+            boolean isExpired = isExpired(handle, expiry);
+            if (isExpired) {
+                expired.increment();
+                close(handle);
+            }
+            return isExpired;
+        });
+    }
+
+    private static boolean isExpired(PdfDocumentHandle handle, Instant expiry) {
+        return handle.getLastAccessedAt().isBefore(expiry);
+    }
+
+    private synchronized void evict(PdfDocumentHandle registered) {
+
+        long budget = pdfConfig.getDocuments().getMemorySize().toBytes();
+        if (size() <= budget) {
+            return;
+        }
+
+        List<PdfDocumentHandle> leastRecentlyUsed = documents.values().stream()
+                .filter(handle -> handle != registered)
+                .sorted(Comparator.comparing(PdfDocumentHandle::getLastAccessedAt))
+                .toList();
+        for (PdfDocumentHandle handle : leastRecentlyUsed) {
+            if (size() <= budget) {
+                break;
+            }
+            if (documents.remove(handle.getId(), handle)) {
+                evicted.increment();
+                purger.execute(() -> close(handle));
+            }
+        }
+
+    }
+
+    private long size() {
+        return documents.values().stream().mapToLong(PdfDocumentHandle::getSize).sum();
+    }
+
+    private void close(PdfDocumentHandle handle) {
+        try {
+            handle.close();
+        } catch (IOException | ITextException e) {
+            log.warn("Failed to close document {}", handle.getId(), e);
+        }
+    }
+
+    private void closeQuietly(PdfInput input) {
+        if (input != null) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                log.warn("Failed to delete spooled document", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // closes the handles evicted but not closed yet, and runs one last purge
+        purger.shutdownNow().forEach(Runnable::run);
+        documents.values().forEach(this::close);
+        documents.clear();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.pdf.pdfapi.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A document produced by one of the operations, as kept by the {@link PdfOutputStorage} and served by {@link PdfFileService}.
+ */
+@Getter
+public class PdfFile {
+
+    private final String name;
+    private final long size;
+    private final Instant lastModified;
+
+    /**
+     * The local file holding the content, or {@code null} when the storage is not the local file system.
+     */
+    @JsonIgnore
+    private final Path path;
+
+    PdfFile(Path path, long size, Instant lastModified) {
+        this(path.getFileName().toString(), size, lastModified, path);
+    }
+
+    PdfFile(String name, long size, Instant lastModified) {
+        this(name, size, lastModified, null);
+    }
+
+    private PdfFile(String name, long size, Instant lastModified, Path path) {
+        this.name = name;
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Strong entity tag derived from size and modification time. Produced files are never rewritten in place, so
+     * this changes whenever the content does without hashing the file.
+     */
+    @JsonIgnore
+    public String getETag() {
+        return String.format("\"%x-%x\"", size, lastModified.toEpochMilli());
+    }
+
+}
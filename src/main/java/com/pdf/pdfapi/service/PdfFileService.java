@@ -0,0 +1,51 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves the documents that the operations keep in the {@link PdfOutputStorage}.
+ */
+@Service
+@RequiredArgsConstructor
+public class PdfFileService {
+
+    private final PdfOutputStorage pdfOutputStorage;
+
+    /**
+     * Produced documents, most recent first. Documents still being stored are not listed yet.
+     */
+    public List<PdfFile> list() {
+        try {
+            return pdfOutputStorage.list();
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to list output files", e);
+        }
+    }
+
+    /**
+     * Looks {@code name} up among the produced documents. Names that denote anything else are not found.
+     */
+    public Optional<PdfFile> find(String name) {
+        try {
+            return pdfOutputStorage.find(name);
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to look up " + name, e);
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes of {@code file} from {@code start}, without staging the content on the heap when it
+     * is a local file.
+     */
+    public void transfer(PdfFile file, long start, long length, OutputStream outputStream) throws IOException {
+        pdfOutputStorage.transfer(file, start, length, outputStream);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.io.source.IRandomAccessSource;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
+import com.itextpdf.io.source.WindowRandomAccessSource;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An uploaded PDF that can be opened by one or more {@link PdfReader}s.
+ * The content either lives on the heap, possibly in the first bytes of a pooled buffer, or in a spooled temporary file
+ * that is memory-mapped on read; closing the input hands the buffer back to its pool or deletes the spooled file.
+ */
+public final class PdfInput implements Closeable {
+
+    private final byte[] content;
+    private final int length;
+    private final PdfBufferPool pool;
+    private final Path spooledFile;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private PdfInput(byte[] content, int length, PdfBufferPool pool, Path spooledFile) {
+        this.content = content;
+        this.length = length;
+        this.pool = pool;
+        this.spooledFile = spooledFile;
+    }
+
+    static PdfInput heap(byte[] content) {
+        return new PdfInput(content, content.length, null, null);
+    }
+
+    /**
+     * The first {@code length} bytes of {@code buffer}, which is released to {@code pool} on close.
+     */
+    static PdfInput heap(byte[] buffer, int length, PdfBufferPool pool) {
+        return new PdfInput(buffer, length, pool, null);
+    }
+
+    static PdfInput mapped(Path spooledFile) {
+        return new PdfInput(null, 0, null, spooledFile);
+    }
+
+    /**
+     * A source over the first {@code length} bytes of {@code content}.
+     */
+    static IRandomAccessSource source(byte[] content, int length) {
+        IRandomAccessSource source = new RandomAccessSourceFactory().createSource(content);
+        return length == content.length ? source : new WindowRandomAccessSource(source, 0, length);
+    }
+
+    public boolean isMapped() {
+        return spooledFile != null;
+    }
+
+    public PdfReader newReader() throws IOException {
+        IRandomAccessSource source = isMapped()
+                ? new RandomAccessSourceFactory().setForceRead(false).createBestSource(spooledFile.toString())
+                : source(content, length);
+        return new PdfReader(source, new ReaderProperties());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (isMapped()) {
+            Files.deleteIfExists(spooledFile);
+        } else if (pool != null) {
+            pool.release(content);
+        }
+    }
+
+}
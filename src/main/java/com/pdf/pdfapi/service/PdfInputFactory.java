@@ -0,0 +1,43 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Component
+@RequiredArgsConstructor
+public class PdfInputFactory {
+
+    private final PdfConfig pdfConfig;
+    private final PdfBufferPool pdfBufferPool;
+
+    /**
+     * Opens {@code file} for reading. Uploads below {@code pdfapi.input.mapped-threshold} are read onto the heap, into
+     * a buffer of the {@link PdfBufferPool} that closing the input releases; larger ones are moved to a temporary file
+     * (without copying when the container already spooled them to disk) and memory-mapped, so their content never
+     * becomes a heap array.
+     */
+    public PdfInput open(MultipartFile file) throws IOException {
+
+        if (file.getSize() < pdfConfig.getInput().getMappedThreshold().toBytes()) {
+            PdfBufferPool.Content content = pdfBufferPool.read(file);
+            return PdfInput.heap(content.buffer(), content.length(), pdfBufferPool);
+        }
+
+        Path spooledFile = Files.createTempFile("pdfapi-", ".pdf");
+        try {
+            file.transferTo(spooledFile.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooledFile);
+            throw e;
+        }
+        return PdfInput.mapped(spooledFile);
+
+    }
+
+}
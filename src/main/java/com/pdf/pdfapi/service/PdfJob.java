@@ -0,0 +1,64 @@
+package com.pdf.pdfapi.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * State of an asynchronous operation submitted through {@link PdfJobService}.
+ */
+@Getter
+public class PdfJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String id;
+    private final String operation;
+    private final Instant submittedAt;
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    @JsonIgnore
+    private final String fileName;
+    @JsonIgnore
+    private final String contentType;
+    @JsonIgnore
+    private volatile Path result;
+
+    PdfJob(String id, String operation, String fileName, String contentType) {
+        this.id = id;
+        this.operation = operation;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.submittedAt = Instant.now();
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void succeeded(Path result) {
+        this.result = result;
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+}
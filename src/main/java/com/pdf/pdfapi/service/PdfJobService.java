@@ -0,0 +1,215 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Runs PDF operations in the background on a bounded pool so that large requests do not hold Tomcat workers.
+ * <p>
+ * Uploads are spooled to temporary files before {@link #submit} returns, the job then waits in a queue of
+ * {@code pdfapi.jobs.queue-capacity} entries for one of {@code pdfapi.jobs.workers} threads. When the queue is
+ * full the submission is rejected with 429, before anything is spooled. Finished jobs and their results are kept for
+ * {@code pdfapi.jobs.result-ttl} or until they are deleted, and purged every {@code pdfapi.jobs.purge-interval}.
+ */
+@Service
+@Log4j2
+public class PdfJobService {
+
+    /**
+     * Writes the result of a job, reading the spooled copies of its uploads.
+     */
+    @FunctionalInterface
+    public interface Work {
+        void writeTo(OutputStream outputStream, MultipartFile[] file) throws IOException;
+    }
+
+    private final PdfConfig pdfConfig;
+    private final ThreadPoolExecutor executor;
+    // one permit per job running or queued, taken before the uploads are spooled
+    private final Semaphore slots;
+    private final ScheduledExecutorService purger;
+    private final Map<String, PdfJob> jobs = new ConcurrentHashMap<>();
+    private final Timer queueWait;
+    private final MeterRegistry meterRegistry;
+
+    public PdfJobService(PdfConfig pdfConfig, MeterRegistry meterRegistry) {
+        this.pdfConfig = pdfConfig;
+        this.meterRegistry = meterRegistry;
+        PdfConfig.Jobs config = pdfConfig.getJobs();
+        this.executor = new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getQueueCapacity()), Thread.ofPlatform().name("pdf-job-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueWait = Timer.builder("pdfapi.jobs.queue.wait").description("Time jobs spend queued").register(meterRegistry);
+        Gauge.builder("pdfapi.jobs.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("pdfapi.jobs.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        this.slots = new Semaphore(config.getWorkers() + config.getQueueCapacity());
+
+        long interval = config.getPurgeInterval().toMillis();
+        this.purger = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("pdf-job-purge").daemon().priority(Thread.MIN_PRIORITY).factory());
+        purger.scheduleWithFixedDelay(this::purgeExpiredQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public PdfJob submit(String operation, String fileName, String contentType, MultipartFile[] file, Work work) {
+
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "PDF job queue is full");
+        }
+
+        SpooledMultipartFile[] spooled;
+        try {
+            spooled = spool(file);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        PdfJob job = new PdfJob(UUID.randomUUID().toString(), operation, fileName, contentType);
+
+        try {
+            jobs.put(job.getId(), job);
+            executor.execute(() -> run(job, spooled, work));
+        } catch (RejectedExecutionException e) {
+            // a worker that just released its slot may not have taken the next job from the queue yet
+            slots.release();
+            jobs.remove(job.getId());
+            delete(spooled);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "PDF job queue is full", e);
+        }
+
+        return job;
+
+    }
+
+    public Optional<PdfJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public void delete(String id) {
+        PdfJob job = jobs.get(id);
+        if (job != null && job.isFinished()) {
+            jobs.remove(id);
+            deleteResult(job);
+        }
+    }
+
+    private void run(PdfJob job, SpooledMultipartFile[] file, Work work) {
+
+        job.started();
+        queueWait.record(Duration.between(job.getSubmittedAt(), job.getStartedAt()));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+
+        Path result = null;
+        String error = null;
+        try {
+            result = Files.createTempFile("pdfapi-job-", ".result");
+            try (OutputStream outputStream = Files.newOutputStream(result)) {
+                work.writeTo(outputStream, file);
+            }
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("PDF job {} ({}) failed", job.getId(), job.getOperation(), e);
+            deleteQuietly(result);
+            error = e.getMessage();
+        } finally {
+            delete(file);
+            slots.release();
+            sample.stop(Timer.builder("pdfapi.jobs.run").description("Time jobs spend running")
+                    .tag("operation", job.getOperation()).tag("outcome", outcome).register(meterRegistry));
+        }
+
+        // only once it is accounted for, so that whoever sees the job finished also sees its run time and its slot free
+        if (outcome.equals("success")) {
+            job.succeeded(result);
+        } else {
+            job.failed(error);
+        }
+
+    }
+
+    private SpooledMultipartFile[] spool(MultipartFile[] file) {
+        SpooledMultipartFile[] spooled = new SpooledMultipartFile[file.length];
+        try {
+            for (int i = 0; i < file.length; i++) {
+                spooled[i] = SpooledMultipartFile.spool(file[i]);
+            }
+            return spooled;
+        } catch (IOException e) {
+            delete(spooled);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to store uploads for the job", e);
+        }
+    }
+
+    private void purgeExpiredQuietly() {
+        try {
+            purgeExpired();
+        } catch (RuntimeException e) {
+            // an exception escaping a scheduled task would cancel all later purges
+            log.error("Purging expired jobs failed", e);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant expiry = Instant.now().minus(pdfConfig.getJobs().getResultTtl());
+        jobs.values().removeIf(job -> {
+            boolean expired = job.isFinished() && job.getFinishedAt().isBefore(expiry);
+            if (expired) {
+                deleteResult(job);
+            }
+            return expired;
+        });
+    }
+
+    private void deleteResult(PdfJob job) {
+        deleteQuietly(job.getResult());
+    }
+
+    private void delete(SpooledMultipartFile[] file) {
+        for (SpooledMultipartFile spooled : file) {
+            if (spooled != null) {
+                try {
+                    spooled.delete();
+                } catch (IOException e) {
+                    log.warn("Failed to delete spooled upload", e);
+                }
+            }
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete {}", path, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        executor.shutdownNow();
+        jobs.values().forEach(this::deleteResult);
+    }
+
+}
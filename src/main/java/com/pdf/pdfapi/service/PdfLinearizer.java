@@ -0,0 +1,122 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Linearizes ("fast web view") written PDFs so that viewers can show the first page before the rest has downloaded.
+ * <p>
+ * iText cannot write linearized files, so when {@code pdfapi.output.linearize} is set the document is rendered to a
+ * temporary file and rewritten by qpdf, which adds the hint tables and moves the first page's objects to the front.
+ * Linearization needs the whole file, so the result only starts streaming once qpdf is done. Runs are timed as
+ * {@code pdfapi.output.linearize}.
+ */
+@Component
+@Log4j2
+public class PdfLinearizer {
+
+    /**
+     * qpdf exits with 3 when it wrote the file but had warnings, typically about a damaged input it recovered.
+     */
+    private static final int QPDF_WARNINGS = 3;
+
+    private final PdfConfig.Output config;
+    private final Timer timer;
+
+    public PdfLinearizer(PdfConfig pdfConfig, MeterRegistry meterRegistry) {
+        this.config = pdfConfig.getOutput();
+        this.timer = Timer.builder("pdfapi.output.linearize").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isLinearize();
+    }
+
+    /**
+     * Has {@code render} write a PDF and copies it to {@code outputStream}, linearized when enabled.
+     */
+    public void write(OutputStream outputStream, Consumer<OutputStream> render) {
+
+        if (!isEnabled()) {
+            render.accept(outputStream);
+            return;
+        }
+
+        Path directory = null;
+        try {
+
+            directory = Files.createTempDirectory("pdfapi-linearize-");
+            Path original = directory.resolve("original.pdf");
+            Path linearized = directory.resolve("linearized.pdf");
+
+            try (OutputStream originalStream = Files.newOutputStream(original)) {
+                render.accept(originalStream);
+            }
+            timer.record(() -> linearize(original, linearized));
+            Files.copy(linearized, outputStream);
+
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to linearize document", e);
+        } finally {
+            delete(directory);
+        }
+
+    }
+
+    private void linearize(Path original, Path linearized) {
+
+        Path messages = original.resolveSibling("qpdf.log");
+        try {
+
+            Process process = new ProcessBuilder(config.getQpdf(), "--linearize", original.toString(), linearized.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(messages.toFile())
+                    .start();
+
+            if (!process.waitFor(config.getLinearizeTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new PdfErrorException(String.format("qpdf did not finish within %s", config.getLinearizeTimeout()));
+            }
+
+            int exitCode = process.exitValue();
+            if (exitCode == QPDF_WARNINGS) {
+                log.warn("qpdf linearized with warnings: {}", Files.readString(messages).strip());
+            } else if (exitCode != 0) {
+                throw new PdfErrorException(String.format("qpdf failed with exit code %d: %s", exitCode, Files.readString(messages).strip()));
+            }
+
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to run " + config.getQpdf(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while linearizing document", e);
+        }
+
+    }
+
+    private void delete(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (var paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", directory, e);
+        }
+    }
+
+}
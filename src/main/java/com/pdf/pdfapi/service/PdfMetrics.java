@@ -0,0 +1,176 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters for {@link PdfService} operations, all tagged with {@code operation}:
+ * <ul>
+ *     <li>{@code pdfapi.operation} - latency timer with percentiles, also tagged with {@code outcome}</li>
+ *     <li>{@code pdfapi.operation.input.bytes} / {@code pdfapi.operation.output.bytes} - payload sizes</li>
+ *     <li>{@code pdfapi.operation.documents} - input documents per call (files per merge)</li>
+ *     <li>{@code pdfapi.operation.pages} - pages produced per call</li>
+ *     <li>{@code pdfapi.operation.errors} - failures, also tagged with the {@code exception} type</li>
+ *     <li>{@code pdfapi.operation.in.flight} - operations currently running</li>
+ * </ul>
+ */
+@Component
+public class PdfMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public PdfMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Operation start(String operation, MultipartFile... file) {
+
+        long inputBytes = 0;
+        for (MultipartFile currentFile : file) {
+            inputBytes += currentFile.getSize();
+        }
+        return start(operation, inputBytes, file.length);
+
+    }
+
+    public Operation start(String operation, PdfDocumentHandle handle) {
+        return start(operation, handle.getSize(), 1);
+    }
+
+    /**
+     * Starts an operation whose input is still arriving; its size is recorded with {@link Operation#received}.
+     */
+    public Operation startReceiving(String operation) {
+        return new Operation(operation);
+    }
+
+    private Operation start(String operation, long inputBytes, int documents) {
+        return new Operation(operation).received(inputBytes, documents);
+    }
+
+    private DistributionSummary summary(String name, String operation, String baseUnit) {
+        return DistributionSummary.builder(name)
+                .baseUnit(baseUnit)
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private AtomicInteger inFlight(String operation) {
+        return inFlight.computeIfAbsent(operation, key -> meterRegistry.gauge("pdfapi.operation.in.flight",
+                Tags.of("operation", key), new AtomicInteger()));
+    }
+
+    /**
+     * One running operation. Exactly one of {@link #succeeded} or {@link #failed} must be called.
+     */
+    public final class Operation {
+
+        private final String name;
+        private final Timer.Sample sample;
+        private long outputBytes;
+        private Runnable whenStopped = () -> {
+        };
+
+        private Operation(String name) {
+            this.name = name;
+            this.sample = Timer.start(meterRegistry);
+            inFlight(name).incrementAndGet();
+        }
+
+        /**
+         * Runs {@code action} once the operation has succeeded or failed, e.g. to hand back a concurrency slot.
+         */
+        Operation whenStopped(Runnable action) {
+            this.whenStopped = action;
+            return this;
+        }
+
+        /**
+         * Records the size of the input, for operations started with {@link #startReceiving}.
+         */
+        Operation received(long inputBytes, int documents) {
+            summary("pdfapi.operation.input.bytes", name, "bytes").record(inputBytes);
+            summary("pdfapi.operation.documents", name, null).record(documents);
+            return this;
+        }
+
+        /**
+         * Wraps {@code sink} so that the size of every part it receives counts as output.
+         */
+        PdfPartSink track(PdfPartSink sink) {
+            return new PdfPartSink() {
+                private PdfWriter current;
+
+                @Override
+                public PdfWriter open(String fileName) throws IOException {
+                    current = sink.open(fileName);
+                    return current;
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    sink.finish();
+                    outputBytes += current.getCurrentPos();
+                }
+
+                @Override
+                public void write(String fileName, byte[] content) throws IOException {
+                    sink.write(fileName, content);
+                    outputBytes += content.length;
+                }
+            };
+        }
+
+        /**
+         * Counts {@code bytes} of output that did not go through a {@link PdfWriter} or a tracked sink.
+         */
+        Operation wrote(long bytes) {
+            outputBytes += bytes;
+            return this;
+        }
+
+        public void succeeded(int pages, PdfWriter pdfWriter) {
+            outputBytes += pdfWriter.getCurrentPos();
+            succeeded(pages);
+        }
+
+        public void succeeded(int pages) {
+            summary("pdfapi.operation.output.bytes", name, "bytes").record(outputBytes);
+            summary("pdfapi.operation.pages", name, null).record(pages);
+            stop("success");
+        }
+
+        public void failed(Exception e) {
+            Throwable cause = e instanceof PdfErrorException && e.getCause() != null ? e.getCause() : e;
+            Counter.builder("pdfapi.operation.errors")
+                    .tag("operation", name)
+                    .tag("exception", cause.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            stop("failure");
+        }
+
+        private void stop(String outcome) {
+            whenStopped.run();
+            inFlight(name).decrementAndGet();
+            sample.stop(Timer.builder("pdfapi.operation")
+                    .tag("operation", name)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes documents from the {@link PdfOutputStorage} once they are older than {@code pdfapi.retention.ttl}, or than
+ * the {@code pdfapi.retention.operation-ttl} of the operation that produced them, and then the oldest ones while the
+ * rest exceed {@code pdfapi.retention.max-size}.
+ * <p>
+ * Sweeps run every {@code pdfapi.retention.sweep-interval} on a single background thread of minimum priority. Deleted
+ * documents and their bytes are counted as {@code pdfapi.retention.deleted} and {@code pdfapi.retention.reclaimed},
+ * tagged with {@code reason} ({@code ttl} or {@code size}), sweep times are published as
+ * {@code pdfapi.retention.sweep} and the size of the documents kept by the last sweep as
+ * {@code pdfapi.retention.stored}.
+ */
+@Component
+@Log4j2
+public class PdfOutputRetention {
+
+    // the name prefixes PdfService gives the documents of each operation
+    private static final Map<String, String> OPERATIONS = Map.of(
+            "merged_", "merge",
+            "splitDocument_", "split",
+            "extractedPages_", "extract",
+            "removedPages_", "remove",
+            "ImageToPdf_", "convertImageToPDF");
+
+    private final PdfConfig.Retention config;
+    private final PdfOutputStorage pdfOutputStorage;
+    private final ScheduledExecutorService scheduler;
+    private final Timer sweeps;
+    private final Counter expired;
+    private final Counter evicted;
+    private final Counter expiredBytes;
+    private final Counter evictedBytes;
+    private final AtomicLong stored = new AtomicLong();
+
+    public PdfOutputRetention(PdfConfig pdfConfig, PdfOutputStorage pdfOutputStorage, MeterRegistry meterRegistry) {
+        this.config = pdfConfig.getRetention();
+        this.pdfOutputStorage = pdfOutputStorage;
+        this.sweeps = Timer.builder("pdfapi.retention.sweep").description("Time taken by retention sweeps").register(meterRegistry);
+        this.expired = Counter.builder("pdfapi.retention.deleted").tag("reason", "ttl").register(meterRegistry);
+        this.evicted = Counter.builder("pdfapi.retention.deleted").tag("reason", "size").register(meterRegistry);
+        this.expiredBytes = Counter.builder("pdfapi.retention.reclaimed").tag("reason", "ttl").baseUnit("bytes").register(meterRegistry);
+        this.evictedBytes = Counter.builder("pdfapi.retention.reclaimed").tag("reason", "size").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("pdfapi.retention.stored", stored, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+
+        if (config.isEnabled()) {
+            long interval = config.getSweepInterval().toMillis();
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("pdf-retention").daemon().priority(Thread.MIN_PRIORITY).factory());
+            scheduler.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Deletes the expired documents and, going from the most recent to the oldest, every document that no longer fits
+     * into {@code pdfapi.retention.max-size} along with all older ones. Documents that fail to be deleted are logged
+     * and left for the next sweep.
+     */
+    public void sweep() {
+
+        Timer.Sample sample = Timer.start();
+        try {
+            List<PdfFile> files = pdfOutputStorage.list();
+            Instant now = Instant.now();
+            long maxSize = config.getMaxSize().toBytes();
+            long kept = 0;
+            boolean full = false;
+            for (PdfFile file : files) {
+                if (file.getLastModified().isBefore(now.minus(ttl(file.getName())))) {
+                    delete(file, expired, expiredBytes);
+                } else if (full || kept + file.getSize() > maxSize) {
+                    full = true;
+                    delete(file, evicted, evictedBytes);
+                } else {
+                    kept += file.getSize();
+                }
+            }
+            stored.set(kept);
+        } catch (IOException e) {
+            log.warn("Failed to list stored documents for retention", e);
+        } finally {
+            sample.stop(sweeps);
+        }
+
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            // an exception escaping a scheduled task would cancel all later sweeps
+            log.error("Retention sweep failed", e);
+        }
+    }
+
+    private Duration ttl(String name) {
+        return OPERATIONS.entrySet().stream()
+                .filter(operation -> name.startsWith(operation.getKey()))
+                .map(operation -> config.getOperationTtl().get(operation.getValue()))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(config.getTtl());
+    }
+
+    private void delete(PdfFile file, Counter deleted, Counter reclaimed) {
+        try {
+            pdfOutputStorage.delete(file.getName());
+            deleted.increment();
+            reclaimed.increment(file.getSize());
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", file.getName(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+}
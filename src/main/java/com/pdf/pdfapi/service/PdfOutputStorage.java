@@ -0,0 +1,41 @@
+package com.pdf.pdfapi.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Where the documents produced by {@code merge}, {@code split}, {@code extract}, {@code remove} and
+ * {@code convertImageToPDF} are kept, chosen with {@code pdfapi.storage.type}. Operations never call a storage
+ * directly but hand their results to {@link PdfOutputWriter}, which stores them in the background.
+ */
+public interface PdfOutputStorage {
+
+    /**
+     * Stores {@code content} under {@code name}. A document becomes visible to {@link #list} and {@link #find} only
+     * once it is stored completely.
+     */
+    void write(String name, byte[] content) throws IOException;
+
+    /**
+     * Stored documents, most recent first.
+     */
+    List<PdfFile> list() throws IOException;
+
+    /**
+     * Looks {@code name} up among the stored documents; names that do not denote one, such as paths, are not found.
+     */
+    Optional<PdfFile> find(String name) throws IOException;
+
+    /**
+     * Copies {@code length} bytes of {@code file} from {@code start} to {@code outputStream}.
+     */
+    void transfer(PdfFile file, long start, long length, OutputStream outputStream) throws IOException;
+
+    /**
+     * Removes the document stored as {@code name}; names that do not denote one are ignored.
+     */
+    void delete(String name) throws IOException;
+
+}
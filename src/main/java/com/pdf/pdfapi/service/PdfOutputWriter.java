@@ -0,0 +1,131 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores produced documents in the {@link PdfOutputStorage} on {@code pdfapi.storage.writers} background threads, so
+ * that the latency of the storage is not part of the operations. Operations render into memory and hand the whole
+ * document over, which is stored in one call. At most {@code pdfapi.storage.max-pending-writes} documents, of at most
+ * {@code pdfapi.storage.max-pending-size} in total, wait to be stored on the heap; further operations wait for some of
+ * them to be stored.
+ * <p>
+ * The operation has already succeeded when its document is stored, so a failed write cannot be reported to the caller:
+ * it is logged and counted. Store times are published as {@code pdfapi.storage.write}, tagged with {@code outcome}
+ * ({@code success} or {@code failure}), and the documents waiting as {@code pdfapi.storage.pending} and their size as
+ * {@code pdfapi.storage.pending.size}.
+ */
+@Component
+@Log4j2
+public class PdfOutputWriter {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    private final PdfOutputStorage pdfOutputStorage;
+    private final ExecutorService executor;
+    private final Semaphore pending;
+    private final int maxPendingWrites;
+    // in KiB, so that sizes beyond 2 GiB fit into the permits
+    private final Semaphore pendingSize;
+    private final int maxPendingKilobytes;
+    private final MeterRegistry meterRegistry;
+
+    public PdfOutputWriter(PdfConfig pdfConfig, PdfOutputStorage pdfOutputStorage, MeterRegistry meterRegistry) {
+        PdfConfig.Storage config = pdfConfig.getStorage();
+        this.pdfOutputStorage = pdfOutputStorage;
+        this.maxPendingWrites = config.getMaxPendingWrites();
+        this.pending = new Semaphore(maxPendingWrites);
+        this.maxPendingKilobytes = (int) Math.clamp(config.getMaxPendingSize().toKilobytes(), 1, Integer.MAX_VALUE);
+        // fair, so that a large document is not overtaken by small ones indefinitely
+        this.pendingSize = new Semaphore(maxPendingKilobytes, true);
+        this.executor = Executors.newFixedThreadPool(config.getWriters(), Thread.ofPlatform().name("pdf-storage-", 0).daemon().factory());
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("pdfapi.storage.pending", pending, semaphore -> maxPendingWrites - semaphore.availablePermits()).register(meterRegistry);
+        Gauge.builder("pdfapi.storage.pending.size", pendingSize, semaphore -> (maxPendingKilobytes - semaphore.availablePermits()) * 1024.0)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * A name for a new document, {@code <prefix><timestamp>_<random UUID><suffix>}: sortable by creation time and
+     * unique even for documents produced in the same millisecond or by several instances sharing a storage.
+     */
+    public static String uniqueName(String prefix, String suffix) {
+        return String.format("%s%s_%s%s", prefix, LocalDateTime.now().format(TIMESTAMP), UUID.randomUUID(), suffix);
+    }
+
+    /**
+     * Queues {@code content} to be stored as {@code name} and returns without waiting for the storage, unless
+     * {@code pdfapi.storage.max-pending-writes} or {@code pdfapi.storage.max-pending-size} is reached. Fails if the
+     * writer is already shut down.
+     */
+    public void write(String name, byte[] content) {
+
+        int kilobytes = (int) Math.clamp((content.length + 1023L) / 1024, 1, maxPendingKilobytes);
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while waiting to store " + name, e);
+        }
+        try {
+            pendingSize.acquire(kilobytes);
+        } catch (InterruptedException e) {
+            pending.release();
+            Thread.currentThread().interrupt();
+            throw new PdfErrorException("Interrupted while waiting to store " + name, e);
+        }
+
+        try {
+            executor.execute(() -> store(name, content, kilobytes));
+        } catch (RejectedExecutionException e) {
+            pendingSize.release(kilobytes);
+            pending.release();
+            throw new PdfErrorException("Failed to store " + name + ", the storage writers are shut down", e);
+        }
+
+    }
+
+    private void store(String name, byte[] content, int kilobytes) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            pdfOutputStorage.write(name, content);
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("Failed to store {}", name, e);
+        } finally {
+            sample.stop(Timer.builder("pdfapi.storage.write").tag("outcome", outcome).register(meterRegistry));
+            pendingSize.release(kilobytes);
+            pending.release();
+        }
+    }
+
+    /**
+     * Waits until every document queued so far is stored.
+     */
+    public void flush() {
+        pending.acquireUninterruptibly(maxPendingWrites);
+        pending.release(maxPendingWrites);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Destination for operations that produce several documents (split, image conversion).
+ * Each part is opened, written through the returned {@link PdfWriter}, closed by its
+ * {@code PdfDocument} and then finished before the next part is opened.
+ */
+interface PdfPartSink {
+
+    PdfWriter open(String fileName) throws IOException;
+
+    void finish() throws IOException;
+
+    /**
+     * Stores an already rendered part in one step.
+     */
+    void write(String fileName, byte[] content) throws IOException;
+
+    /**
+     * Renders each part into a buffer of {@code pdfBufferPool} and queues a copy on {@code pdfOutputWriter} once finished.
+     */
+    static PdfPartSink storage(PdfOutputWriter pdfOutputWriter, PdfBufferPool pdfBufferPool, WriterProperties writerProperties) {
+        return new PdfPartSink() {
+            private String fileName;
+            private PdfBufferPool.Output content;
+
+            @Override
+            public PdfWriter open(String fileName) {
+                this.fileName = fileName;
+                this.content = pdfBufferPool.output();
+                return new PdfWriter(content, writerProperties);
+            }
+
+            @Override
+            public void finish() {
+                try {
+                    pdfOutputWriter.write(fileName, content.toByteArray());
+                } finally {
+                    content.release();
+                    content = null;
+                }
+            }
+
+            @Override
+            public void write(String fileName, byte[] content) {
+                pdfOutputWriter.write(fileName, content);
+            }
+        };
+    }
+
+    static PdfPartSink zip(ZipOutputStream zipOutputStream, WriterProperties writerProperties) {
+        return new PdfPartSink() {
+            @Override
+            public PdfWriter open(String fileName) throws IOException {
+                zipOutputStream.putNextEntry(new ZipEntry(fileName));
+                PdfWriter pdfWriter = new PdfWriter(zipOutputStream, writerProperties);
+                pdfWriter.setCloseStream(false);
+                return pdfWriter;
+            }
+
+            @Override
+            public void finish() throws IOException {
+                zipOutputStream.closeEntry();
+            }
+
+            @Override
+            public void write(String fileName, byte[] content) throws IOException {
+                zipOutputStream.putNextEntry(new ZipEntry(fileName));
+                zipOutputStream.write(content);
+                zipOutputStream.closeEntry();
+            }
+        };
+    }
+
+}
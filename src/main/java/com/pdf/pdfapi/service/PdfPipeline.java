@@ -0,0 +1,187 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Runs a list of {@link PdfPipelineStep}s over the uploads in a single pass.
+ * <p>
+ * The steps never produce intermediate documents. Merge, remove and extract only narrow down which pages of which
+ * upload make up the result, and split cuts that list into parts. Every upload is then parsed once, and its pages are
+ * copied once straight into the final documents.
+ */
+class PdfPipeline implements Closeable {
+
+    /**
+     * Page {@code number} of upload {@code source}.
+     */
+    private record Page(int source, int number) {
+    }
+
+    private final List<PdfInput> inputs = new ArrayList<>();
+    private final List<PdfDocument> sources = new ArrayList<>();
+    private final List<List<Page>> outputs;
+
+    /**
+     * Checks that the steps can run on {@code fileCount} uploads: merge has to come first and is required with more
+     * than one upload, split can only be last.
+     */
+    static void validate(List<PdfPipelineStep> steps, int fileCount) {
+
+        if (steps.isEmpty()) {
+            throw badRequest("A pipeline needs at least one step");
+        }
+        if (fileCount == 0) {
+            throw badRequest("A pipeline needs at least one document");
+        }
+
+        boolean merge = steps.get(0).getOperation() == PdfPipelineStep.Operation.MERGE;
+        if (merge && fileCount < 2) {
+            throw badRequest("Merge needs at least 2 documents");
+        }
+        if (!merge && fileCount > 1) {
+            throw badRequest("A pipeline over several documents has to start with merge");
+        }
+
+        for (int i = 0; i < steps.size(); i++) {
+            PdfPipelineStep.Operation operation = steps.get(i).getOperation();
+            if (operation == PdfPipelineStep.Operation.MERGE && i > 0) {
+                throw badRequest("merge can only be the first step of a pipeline");
+            }
+            if (operation == PdfPipelineStep.Operation.SPLIT && i < steps.size() - 1) {
+                throw badRequest("split can only be the last step of a pipeline");
+            }
+        }
+
+    }
+
+    /**
+     * Also checks the page arguments of the steps against uploads of {@code numberOfPages} pages each, so that a
+     * pipeline that cannot run is rejected before any upload is parsed in full.
+     */
+    static void validate(List<PdfPipelineStep> steps, int... numberOfPages) {
+        validate(steps, numberOfPages.length);
+        List<Page> pages = new ArrayList<>();
+        for (int source = 0; source < numberOfPages.length; source++) {
+            for (int number = 1; number <= numberOfPages[source]; number++) {
+                pages.add(new Page(source, number));
+            }
+        }
+        plan(steps, pages);
+    }
+
+    PdfPipeline(List<PdfPipelineStep> steps, PdfInputFactory pdfInputFactory, MultipartFile... file) throws IOException {
+
+        try {
+            List<Page> pages = new ArrayList<>();
+            for (MultipartFile currentFile : file) {
+                PdfInput input = pdfInputFactory.open(currentFile);
+                inputs.add(input);
+                PdfDocument source = new PdfDocument(input.newReader());
+                sources.add(source);
+                for (int number = 1; number <= source.getNumberOfPages(); number++) {
+                    pages.add(new Page(sources.size() - 1, number));
+                }
+            }
+            outputs = plan(steps, pages);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+    }
+
+    private static List<List<Page>> plan(List<PdfPipelineStep> steps, List<Page> pages) {
+
+        for (PdfPipelineStep step : steps) {
+            List<Integer> arguments = step.getArguments();
+            switch (step.getOperation()) {
+                case MERGE -> {
+                    // the uploads are already laid out one after the other
+                }
+                case REMOVE -> {
+                    BitSet removed = step.getPages().resolve(pages.size());
+                    if (removed.cardinality() == pages.size()) {
+                        throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("Step '%s' removes every page", step));
+                    }
+                    List<Page> kept = new ArrayList<>(pages.size() - removed.cardinality());
+                    for (int number = 1; number <= pages.size(); number++) {
+                        if (!removed.get(number)) {
+                            kept.add(pages.get(number - 1));
+                        }
+                    }
+                    pages = kept;
+                }
+                case EXTRACT -> {
+                    int startPage = arguments.get(0);
+                    int endPage = arguments.get(1);
+                    if (startPage > endPage || endPage > pages.size()) {
+                        throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("Pages %d to %d are not in the document at step '%s'", startPage, endPage, step));
+                    }
+                    pages = pages.subList(startPage - 1, endPage);
+                }
+                case SPLIT -> {
+                    int maxPageCount = arguments.get(0);
+                    List<List<Page>> parts = new ArrayList<>();
+                    for (int start = 0; start < pages.size(); start += maxPageCount) {
+                        parts.add(pages.subList(start, Math.min(start + maxPageCount, pages.size())));
+                    }
+                    return parts;
+                }
+            }
+        }
+
+        return List.of(pages);
+
+    }
+
+    int size() {
+        return outputs.size();
+    }
+
+    /**
+     * Copies the pages of output {@code index} into {@code target}, one run of consecutive pages of the same upload
+     * at a time, and returns how many were copied.
+     */
+    int write(int index, PdfDocument target) {
+
+        List<Page> pages = outputs.get(index);
+        List<Integer> run = new ArrayList<>();
+        int runSource = -1;
+        for (Page page : pages) {
+            if (page.source() != runSource && !run.isEmpty()) {
+                sources.get(runSource).copyPagesTo(run, target);
+                run = new ArrayList<>();
+            }
+            runSource = page.source();
+            run.add(page.number());
+        }
+        if (!run.isEmpty()) {
+            sources.get(runSource).copyPagesTo(run, target);
+        }
+        return pages.size();
+
+    }
+
+    private static ResponseStatusException badRequest(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (PdfDocument source : sources) {
+            source.close();
+        }
+        for (PdfInput input : inputs) {
+            input.close();
+        }
+    }
+
+}
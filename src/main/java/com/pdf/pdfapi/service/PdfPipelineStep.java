@@ -0,0 +1,101 @@
+package com.pdf.pdfapi.service;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One operation of a pipeline run by {@link PdfService#pipelineTo}. Pipelines are written as steps separated by
+ * {@code ;}, each an operation name followed by its arguments after a {@code :}, e.g.
+ * {@code merge;remove:3,7;extract:1-50;split:10}. Remove takes a {@link PageSet} expression, so {@code remove:1-3,10-}
+ * works as well.
+ */
+@Getter
+public class PdfPipelineStep {
+
+    public enum Operation {
+        MERGE, REMOVE, EXTRACT, SPLIT
+    }
+
+    private final Operation operation;
+    private final List<Integer> arguments;
+    private final PageSet pages;
+
+    private PdfPipelineStep(Operation operation, List<Integer> arguments) {
+        this(operation, arguments, null);
+    }
+
+    private PdfPipelineStep(Operation operation, List<Integer> arguments, PageSet pages) {
+        this.operation = operation;
+        this.arguments = arguments;
+        this.pages = pages;
+    }
+
+    public static List<PdfPipelineStep> parse(String steps) {
+        return Arrays.stream(steps.split(";"))
+                .map(String::strip)
+                .filter(step -> !step.isEmpty())
+                .map(PdfPipelineStep::parseStep)
+                .toList();
+    }
+
+    /**
+     * Whether a pipeline ends with a split, and so produces a zip archive of parts instead of a single PDF.
+     */
+    public static boolean endsWithSplit(List<PdfPipelineStep> steps) {
+        return !steps.isEmpty() && steps.get(steps.size() - 1).getOperation() == Operation.SPLIT;
+    }
+
+    private static PdfPipelineStep parseStep(String step) {
+
+        String[] nameAndArguments = step.split(":", 2);
+        String arguments = nameAndArguments.length > 1 ? nameAndArguments[1].strip() : "";
+
+        try {
+            Operation operation = Operation.valueOf(nameAndArguments[0].strip().toUpperCase(Locale.ROOT));
+            return switch (operation) {
+                case MERGE -> arguments.isEmpty() ? new PdfPipelineStep(operation, List.of()) : invalid(step, "merge takes no arguments");
+                case REMOVE -> new PdfPipelineStep(operation, List.of(), PageSet.of(arguments, (Integer[]) null));
+                case EXTRACT -> new PdfPipelineStep(operation, numbers(arguments.split("-", 2)))
+                        .expect(2, step, "extract takes a page range such as extract:1-50");
+                case SPLIT -> new PdfPipelineStep(operation, numbers(arguments))
+                        .expect(1, step, "split takes the maximum page count such as split:10");
+            };
+        } catch (IllegalArgumentException e) {
+            return invalid(step, "expected merge, remove:<pages>, extract:<start>-<end> or split:<maxPageCount>");
+        }
+
+    }
+
+    private static List<Integer> numbers(String... numbers) {
+        List<Integer> parsed = Arrays.stream(numbers).map(String::strip).map(Integer::valueOf).toList();
+        if (parsed.stream().anyMatch(number -> number < 1)) {
+            throw new IllegalArgumentException("Page numbers and counts start at 1");
+        }
+        return parsed;
+    }
+
+    private PdfPipelineStep expect(int argumentCount, String step, String usage) {
+        return arguments.size() == argumentCount ? this : invalid(step, usage);
+    }
+
+    private static PdfPipelineStep invalid(String step, String reason) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Invalid pipeline step '%s': %s", step, reason));
+    }
+
+    @Override
+    public String toString() {
+        String name = operation.name().toLowerCase(Locale.ROOT);
+        return switch (operation) {
+            case MERGE -> name;
+            case REMOVE -> name + ":" + pages;
+            case EXTRACT -> String.format("%s:%d-%d", name, arguments.get(0), arguments.get(1));
+            case SPLIT -> name + ":" + arguments.get(0);
+        };
+    }
+
+}
@@ -0,0 +1,356 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.commons.exceptions.ITextException;
+import com.itextpdf.io.source.IRandomAccessSource;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the pages of an upload without parsing it in full, so that requests which cannot succeed are rejected with
+ * 400 before an operation starts. Only the header, the trailer, the cross-reference table and the root of the page
+ * tree are read. With a classic cross-reference table the catalog and the page tree root are located by offset
+ * arithmetic over the table, so the cost does not grow with the document; anything else, such as cross-reference
+ * streams or damaged tables, is opened with iText, which parses the whole table. Uploads of at least
+ * {@code pdfapi.input.mapped-threshold} are read through a window of {@value #WINDOW} bytes that is refilled from the
+ * upload on a miss, so only the regions visited are read: by positional reads when the upload is in a local file, and
+ * otherwise from one stream that is reopened only to go back. Smaller uploads are on the heap anyway, read into a buffer
+ * of the {@link PdfBufferPool}. Checks are timed as {@code pdfapi.preflight}, tagged with {@code outcome}.
+ */
+@Component
+public class PdfPreflight {
+
+    static final int WINDOW = 64 * 1024;
+
+    private static final int TAIL = 1024;
+    private static final int OBJECT = 4096;
+    private static final int XREF_ENTRY = 20;
+    private static final int MAX_XREF_SECTIONS = 32;
+
+    private static final Pattern STARTXREF = Pattern.compile("startxref\\s+(\\d+)");
+    private static final Pattern SUBSECTION = Pattern.compile("\\s*(\\d+)[ \\t]+(\\d+)[ \\t]*(\\r\\n|\\r|\\n)");
+    private static final Pattern TRAILER = Pattern.compile("\\s*trailer");
+    private static final Pattern ENTRY = Pattern.compile("(\\d{10}) \\d{5} ([nf])");
+    private static final Pattern PREV = Pattern.compile("/Prev\\s+(\\d+)");
+    private static final Pattern ROOT = Pattern.compile("/Root\\s+(\\d+)\\s+\\d+\\s+R");
+    private static final Pattern PAGES = Pattern.compile("/Pages\\s+(\\d+)\\s+\\d+\\s+R");
+    private static final Pattern COUNT = Pattern.compile("/Count\\s+(\\d+)");
+    private static final Pattern CATALOG = Pattern.compile("/Type\\s*/Catalog\\b");
+    private static final Pattern PAGE_TREE = Pattern.compile("/Type\\s*/Pages\\b");
+    private static final Pattern OBJECT_HEADER = Pattern.compile("\\s*(\\d+)\\s+\\d+\\s+obj");
+
+    private final long mappedThreshold;
+    private final PdfBufferPool pdfBufferPool;
+    private final MeterRegistry meterRegistry;
+
+    public PdfPreflight(PdfConfig pdfConfig, PdfBufferPool pdfBufferPool, MeterRegistry meterRegistry) {
+        this.mappedThreshold = pdfConfig.getInput().getMappedThreshold().toBytes();
+        this.pdfBufferPool = pdfBufferPool;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @throws PdfErrorException with 400 if {@code file} is not a readable PDF
+     */
+    public int numberOfPages(MultipartFile file) {
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
+        PdfBufferPool.Content content = null;
+        WindowedSource windowedSource = null;
+        try {
+            IRandomAccessSource source;
+            if (file.getSize() < mappedThreshold) {
+                content = pdfBufferPool.read(file);
+                source = PdfInput.source(content.buffer(), content.length());
+            } else {
+                windowedSource = new WindowedSource(file);
+                source = windowedSource;
+            }
+            OptionalInt quickNumberOfPages = quickNumberOfPages(source);
+            if (quickNumberOfPages.isPresent()) {
+                outcome = "accepted";
+                return quickNumberOfPages.getAsInt();
+            }
+            try (PdfDocument pdfDocument = new PdfDocument(new PdfReader(source, new ReaderProperties()))) {
+                int numberOfPages = pdfDocument.getNumberOfPages();
+                outcome = "accepted";
+                return numberOfPages;
+            }
+        } catch (IOException | ITextException e) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("%s is not a readable PDF", file.getOriginalFilename()), e);
+        } finally {
+            if (content != null) {
+                pdfBufferPool.release(content.buffer());
+            }
+            if (windowedSource != null) {
+                windowedSource.close();
+            }
+            sample.stop(Timer.builder("pdfapi.preflight").tag("outcome", outcome).register(meterRegistry));
+        }
+
+    }
+
+    /**
+     * The page count found through the classic cross-reference tables of {@code source}, newest first, or empty when
+     * the document is laid out in any other way.
+     */
+    static OptionalInt quickNumberOfPages(IRandomAccessSource source) throws IOException {
+
+        if (!text(source, 0, 5).equals("%PDF-")) {
+            return OptionalInt.empty();
+        }
+        String tail = text(source, Math.max(0, source.length() - TAIL), TAIL);
+        Matcher startxref = STARTXREF.matcher(tail);
+        long xrefOffset = -1;
+        while (startxref.find()) {
+            xrefOffset = Long.parseLong(startxref.group(1));
+        }
+
+        List<XrefSection> sections = new ArrayList<>();
+        for (long offset = xrefOffset; offset >= 0 && sections.size() < MAX_XREF_SECTIONS; ) {
+            Optional<XrefSection> section = XrefSection.read(source, offset);
+            if (section.isEmpty() || section.get().trailer().contains("/XRefStm")) {
+                return OptionalInt.empty();
+            }
+            sections.add(section.get());
+            Matcher prev = PREV.matcher(section.get().trailer());
+            offset = prev.find() ? Long.parseLong(prev.group(1)) : -1;
+        }
+        if (sections.isEmpty()) {
+            return OptionalInt.empty();
+        }
+
+        Optional<String> catalog = reference(ROOT, sections.get(0).trailer()).flatMap(number -> object(source, sections, number))
+                .filter(dictionary -> CATALOG.matcher(dictionary).find());
+        Optional<String> pageTree = catalog.flatMap(dictionary -> reference(PAGES, dictionary)).flatMap(number -> object(source, sections, number))
+                .filter(dictionary -> PAGE_TREE.matcher(dictionary).find());
+        Optional<Matcher> count = pageTree.map(COUNT::matcher).filter(Matcher::find);
+        return count.map(matcher -> OptionalInt.of(Integer.parseInt(matcher.group(1)))).orElseGet(OptionalInt::empty);
+
+    }
+
+    /**
+     * One classic cross-reference table: its subsections and the text of the trailer that follows them.
+     */
+    private record XrefSection(List<long[]> subsections, String trailer) {
+
+        static Optional<XrefSection> read(IRandomAccessSource source, long offset) throws IOException {
+            if (!text(source, offset, 4).equals("xref")) {
+                return Optional.empty();
+            }
+            List<long[]> subsections = new ArrayList<>();
+            long position = offset + 4;
+            while (subsections.size() < MAX_XREF_SECTIONS * 64) {
+                String header = text(source, position, 64);
+                Matcher subsection = SUBSECTION.matcher(header);
+                if (subsection.lookingAt()) {
+                    long first = Long.parseLong(subsection.group(1));
+                    long count = Long.parseLong(subsection.group(2));
+                    long entries = position + subsection.end();
+                    subsections.add(new long[]{first, count, entries});
+                    position = entries + count * XREF_ENTRY;
+                } else {
+                    Matcher trailer = TRAILER.matcher(header);
+                    if (!trailer.lookingAt()) {
+                        return Optional.empty();
+                    }
+                    String dictionary = text(source, position + trailer.end(), TAIL);
+                    int end = dictionary.indexOf("startxref");
+                    return Optional.of(new XrefSection(subsections, end < 0 ? dictionary : dictionary.substring(0, end)));
+                }
+            }
+            return Optional.empty();
+        }
+
+        /**
+         * The offset of object {@code number} if this table has an entry in use for it, {@code -1} if the entry is free,
+         * or empty if this table does not mention the object or the entry is malformed.
+         */
+        Optional<Long> offset(IRandomAccessSource source, long number) throws IOException {
+            for (long[] subsection : subsections) {
+                if (number >= subsection[0] && number < subsection[0] + subsection[1]) {
+                    Matcher entry = ENTRY.matcher(text(source, subsection[2] + (number - subsection[0]) * XREF_ENTRY, XREF_ENTRY));
+                    if (!entry.lookingAt()) {
+                        return Optional.of(-1L);
+                    }
+                    return Optional.of(entry.group(2).equals("n") ? Long.parseLong(entry.group(1)) : -1L);
+                }
+            }
+            return Optional.empty();
+        }
+
+    }
+
+    /**
+     * The dictionary text of object {@code number}, up to {@code endobj}, from the newest table that mentions it.
+     */
+    private static Optional<String> object(IRandomAccessSource source, List<XrefSection> sections, long number) {
+        try {
+            for (XrefSection section : sections) {
+                Optional<Long> offset = section.offset(source, number);
+                if (offset.isPresent()) {
+                    if (offset.get() < 0) {
+                        return Optional.empty();
+                    }
+                    String object = text(source, offset.get(), OBJECT);
+                    Matcher header = OBJECT_HEADER.matcher(object);
+                    int end = object.indexOf("endobj");
+                    if (!header.lookingAt() || Long.parseLong(header.group(1)) != number || end < 0) {
+                        return Optional.empty();
+                    }
+                    return Optional.of(object.substring(header.end(), end));
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Long> reference(Pattern key, String dictionary) {
+        Matcher matcher = key.matcher(dictionary);
+        return matcher.find() ? Optional.of(Long.parseLong(matcher.group(1))) : Optional.empty();
+    }
+
+    private static String text(IRandomAccessSource source, long position, int length) throws IOException {
+        int available = (int) Math.max(0, Math.min(length, source.length() - position));
+        if (position < 0 || available == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[available];
+        int read = source.get(position, bytes, 0, available);
+        return new String(bytes, 0, Math.max(read, 0), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A read-only view of an upload that keeps one aligned window of it in memory.
+     */
+    private static final class WindowedSource implements IRandomAccessSource {
+
+        private final MultipartFile file;
+        private final long length;
+        private final byte[] window = new byte[WINDOW];
+        private long windowStart = -1;
+        private int windowLength;
+        private FileChannel channel;
+        private InputStream inputStream;
+        private long streamPosition;
+
+        private WindowedSource(MultipartFile file) throws IOException {
+            this.file = file;
+            this.length = file.getSize();
+            Optional<Path> localFile = file instanceof FileBackedUpload upload ? upload.localFile() : Optional.empty();
+            if (localFile.isPresent()) {
+                this.channel = FileChannel.open(localFile.get(), StandardOpenOption.READ);
+            }
+        }
+
+        @Override
+        public int get(long position) throws IOException {
+            if (position >= length) {
+                return -1;
+            }
+            load(position);
+            return window[(int) (position - windowStart)] & 0xff;
+        }
+
+        @Override
+        public int get(long position, byte[] bytes, int off, int len) throws IOException {
+            if (position >= length) {
+                return -1;
+            }
+            int read = 0;
+            while (read < len && position < length) {
+                load(position);
+                int count = (int) Math.min(len - read, windowStart + windowLength - position);
+                System.arraycopy(window, (int) (position - windowStart), bytes, off + read, count);
+                read += count;
+                position += count;
+            }
+            return read;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException ignored) {
+                // only read from, so nothing is lost if closing fails
+            }
+            channel = null;
+            inputStream = null;
+        }
+
+        private void load(long position) throws IOException {
+            if (position >= windowStart && position < windowStart + windowLength) {
+                return;
+            }
+            long start = position - position % WINDOW;
+            windowLength = channel != null ? readAt(start) : readForward(start);
+            windowStart = start;
+            if (windowLength == 0) {
+                throw new IOException("Upload is shorter than its declared size");
+            }
+        }
+
+        private int readAt(long start) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(window);
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+                // a positional read may return fewer bytes than asked for
+            }
+            return buffer.position();
+        }
+
+        /**
+         * Reads from the stream already open, skipping only the bytes since its last read, unless {@code start} is
+         * behind it.
+         */
+        private int readForward(long start) throws IOException {
+            if (inputStream == null || start < streamPosition) {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+                inputStream = file.getInputStream();
+                streamPosition = 0;
+            }
+            inputStream.skipNBytes(start - streamPosition);
+            int read = inputStream.readNBytes(window, 0, WINDOW);
+            streamPosition = start + read;
+            return read;
+        }
+
+    }
+
+}
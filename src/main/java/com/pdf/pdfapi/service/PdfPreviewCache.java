@@ -0,0 +1,98 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Rendered preview pages, keyed by the SHA-256 of the document, the page and the DPI, so that looking at the same pages
+ * again costs a hash of the upload instead of a render. The PNGs are kept on the heap up to
+ * {@code pdfapi.preview.cache-size}, evicting the least recently used first. Lookups are counted as
+ * {@code pdfapi.preview.cache.requests}, tagged with {@code result}, and the size is gauged as
+ * {@code pdfapi.preview.cache.size}.
+ */
+@Component
+public class PdfPreviewCache {
+
+    private final long maxSize;
+
+    private final LinkedHashMap<Key, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PdfPreviewCache(PdfConfig pdfConfig, MeterRegistry meterRegistry) {
+        this.maxSize = pdfConfig.getPreview().getCacheSize().toBytes();
+        this.hits = Counter.builder("pdfapi.preview.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("pdfapi.preview.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("pdfapi.preview.cache.size", this, PdfPreviewCache::size).baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * The SHA-256 of the content of {@code file}, which identifies the document in the keys of this cache.
+     */
+    public String hash(MultipartFile file) throws IOException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // streamed, so that no upload is copied onto the heap just to be hashed
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+
+    }
+
+    /**
+     * @return the PNG of {@code page} of {@code document} at {@code dpi}, or {@code null} if it is not cached
+     */
+    public synchronized byte[] get(String document, int page, int dpi) {
+        byte[] png = pages.get(new Key(document, page, dpi));
+        (png == null ? misses : hits).increment();
+        return png;
+    }
+
+    public synchronized void put(String document, int page, int dpi, byte[] png) {
+
+        if (png.length > maxSize) {
+            return;
+        }
+
+        byte[] previous = pages.put(new Key(document, page, dpi), png);
+        size += png.length - (previous == null ? 0 : previous.length);
+
+        Iterator<byte[]> eldest = pages.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().length;
+            eldest.remove();
+        }
+
+    }
+
+    private synchronized long size() {
+        return size;
+    }
+
+    private record Key(String document, int page, int dpi) {
+    }
+
+}
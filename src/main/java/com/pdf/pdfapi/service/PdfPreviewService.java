@@ -0,0 +1,153 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.commons.exceptions.ITextException;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders page previews as PNG. Pages found in {@link PdfPreviewCache} are served from it; the others are rendered by
+ * {@link PageRenderer} on up to {@code pdfapi.preview.parallelism} threads and then cached. Only renders are timed as
+ * the {@code preview} operation and take one of its {@code pdfapi.concurrency} slots.
+ */
+@Service
+@RequiredArgsConstructor
+public class PdfPreviewService {
+
+    private final PdfConfig pdfConfig;
+    private final PdfInputFactory pdfInputFactory;
+    private final PdfMetrics pdfMetrics;
+    private final PdfConcurrencyLimiter pdfConcurrencyLimiter;
+    private final PdfPreflight pdfPreflight;
+    private final PdfPreviewCache pdfPreviewCache;
+
+    /**
+     * Rejects with 400 a resolution outside 1 to {@code pdfapi.preview.max-dpi} or pages outside {@code file}.
+     *
+     * @return the number of pages the preview will have, i.e. the distinct pages of {@code pages}
+     */
+    public int validatePreview(MultipartFile file, PageSet pages, int dpi) {
+        checkDpi(dpi);
+        return pages.resolve(pdfPreflight.numberOfPages(file)).cardinality();
+    }
+
+    /**
+     * Writes the distinct {@code pages} of {@code file} at {@code dpi} in ascending order: a single page as a PNG, several
+     * as a zip archive with one {@code page_<n>.png} per page.
+     */
+    public void previewTo(OutputStream outputStream, MultipartFile file, PageSet pages, int dpi) {
+
+        checkDpi(dpi);
+        try {
+
+            String document = pdfPreviewCache.hash(file);
+            List<Integer> selected = pages.resolve(pdfPreflight.numberOfPages(file)).stream().boxed().toList();
+            List<byte[]> cached = new ArrayList<>(selected.size());
+            List<Integer> missing = new ArrayList<>();
+            for (int page : selected) {
+                byte[] png = pdfPreviewCache.get(document, page, dpi);
+                cached.add(png);
+                if (png == null) {
+                    missing.add(page);
+                }
+            }
+
+            if (selected.size() == 1) {
+                outputStream.write(missing.isEmpty() ? cached.get(0) : render(file, document, missing, dpi).get(0));
+                return;
+            }
+
+            try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+                // PNG is deflated already
+                zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+                if (missing.isEmpty()) {
+                    for (int i = 0; i < selected.size(); i++) {
+                        writeEntry(zipOutputStream, selected.get(i), cached.get(i));
+                    }
+                } else {
+                    renderZip(zipOutputStream, file, document, selected, cached, missing, dpi);
+                }
+            }
+
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to write preview", e);
+        }
+
+    }
+
+    /**
+     * Renders {@code missing} and writes every selected page as soon as it and the pages before it are available.
+     */
+    private void renderZip(ZipOutputStream zipOutputStream, MultipartFile file, String document, List<Integer> selected, List<byte[]> cached,
+                           List<Integer> missing, int dpi) throws IOException {
+
+        int[] next = {0};
+        render(file, document, missing, dpi, (page, png) -> {
+            while (selected.get(next[0]) != page) {
+                writeEntry(zipOutputStream, selected.get(next[0]), cached.get(next[0]));
+                next[0]++;
+            }
+            writeEntry(zipOutputStream, page, png);
+            next[0]++;
+        });
+        for (int i = next[0]; i < selected.size(); i++) {
+            writeEntry(zipOutputStream, selected.get(i), cached.get(i));
+        }
+
+    }
+
+    private List<byte[]> render(MultipartFile file, String document, List<Integer> pages, int dpi) {
+        List<byte[]> rendered = new ArrayList<>(pages.size());
+        render(file, document, pages, dpi, (page, png) -> rendered.add(png));
+        return rendered;
+    }
+
+    private void render(MultipartFile file, String document, List<Integer> pages, int dpi, PageRenderer.PageSink sink) {
+
+        Runnable release = pdfConcurrencyLimiter.acquire("preview");
+        PdfMetrics.Operation operation = pdfMetrics.start("preview", file).whenStopped(release);
+        try (PdfInput input = pdfInputFactory.open(file)) {
+
+            PdfConfig.Preview preview = pdfConfig.getPreview();
+            new PageRenderer(input, preview.getParallelism(), dpi, preview.getMaxPixels()).render(pages, (page, png) -> {
+                pdfPreviewCache.put(document, page, dpi, png);
+                operation.wrote(png.length);
+                sink.write(page, png);
+            });
+            operation.succeeded(pages.size());
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to render preview", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void writeEntry(ZipOutputStream zipOutputStream, int page, byte[] png) throws IOException {
+        zipOutputStream.putNextEntry(new ZipEntry(String.format("page_%d.png", page)));
+        zipOutputStream.write(png);
+        zipOutputStream.closeEntry();
+    }
+
+    private void checkDpi(int dpi) {
+        int maxDpi = pdfConfig.getPreview().getMaxDpi();
+        if (dpi < 1 || dpi > maxDpi) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, String.format("dpi must be between 1 and %d", maxDpi));
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of operation results.
+ * <p>
+ * Results are keyed by the SHA-256 of the operation, its parameters and the content of every input, so resubmitting
+ * the same uploads is served from the cache without opening them. Every result is stored on disk under
+ * {@code <output folder>/cache}, and small ones are also kept on the heap. Both tiers evict the least recently used
+ * results once they exceed their size. Lookups are counted as {@code pdfapi.cache.requests}, tagged with
+ * {@code result} (hit or miss) and the {@code tier} that served the hit.
+ */
+@Component
+@Log4j2
+public class PdfResultCache {
+
+    private final PdfConfig.Cache config;
+    private final PdfBufferPool pdfBufferPool;
+    private final Path directory;
+
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public PdfResultCache(PdfConfig pdfConfig, PdfBufferPool pdfBufferPool, MeterRegistry meterRegistry) throws IOException {
+
+        this.config = pdfConfig.getCache();
+        this.pdfBufferPool = pdfBufferPool;
+        this.directory = Path.of(pdfConfig.getOutputFolder(), "cache");
+
+        this.memoryHits = requests(meterRegistry, "hit", "memory");
+        this.diskHits = requests(meterRegistry, "hit", "disk");
+        this.misses = requests(meterRegistry, "miss", "none");
+        Gauge.builder("pdfapi.cache.size", this, cache -> cache.size(false)).tag("tier", "memory").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("pdfapi.cache.size", this, cache -> cache.size(true)).tag("tier", "disk").baseUnit("bytes").register(meterRegistry);
+
+        if (config.isEnabled()) {
+            Files.createDirectories(directory);
+            load();
+        }
+
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Hashes {@code operation}, {@code parameters} and the content of {@code file}, in that order.
+     */
+    public String key(String operation, List<?> parameters, MultipartFile... file) throws IOException {
+
+        MessageDigest digest = sha256();
+        digest.update((operation + parameters).getBytes());
+
+        for (MultipartFile currentFile : file) {
+            MessageDigest fileDigest = sha256();
+            pdfBufferPool.forEachChunk(currentFile, (chunk, length) -> fileDigest.update(chunk, 0, length));
+            digest.update(fileDigest.digest());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+
+    }
+
+    /**
+     * Copies the result stored under {@code key} to {@code outputStream}.
+     *
+     * @return whether the result was cached
+     */
+    public boolean serve(String key, OutputStream outputStream) throws IOException {
+
+        byte[] content;
+        synchronized (this) {
+            content = memory.get(key);
+            if (content == null && disk.get(key) == null) {
+                misses.increment();
+                return false;
+            }
+        }
+
+        if (content != null) {
+            memoryHits.increment();
+            outputStream.write(content);
+            return true;
+        }
+
+        try {
+            content = Files.size(path(key)) <= config.getMemoryEntrySize().toBytes() ? Files.readAllBytes(path(key)) : null;
+            if (content == null) {
+                Files.copy(path(key), outputStream);
+            } else {
+                outputStream.write(content);
+                remember(key, content);
+            }
+        } catch (NoSuchFileException e) {
+            // evicted since the lookup
+            misses.increment();
+            return false;
+        }
+        diskHits.increment();
+        return true;
+
+    }
+
+    /**
+     * Starts storing a result under {@code key}. Whatever is written to {@link Entry#outputStream()} also reaches
+     * {@code outputStream}; the result is only cached once {@link Entry#commit()} is called.
+     */
+    public Entry store(String key, OutputStream outputStream) throws IOException {
+        Path temporaryFile = Files.createTempFile(directory, key, ".tmp");
+        return new Entry(key, temporaryFile, outputStream);
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key);
+    }
+
+    private void load() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.filter(Files::isRegularFile).sorted(Comparator.comparing(this::lastModified)).toList();
+            for (Path entry : entries) {
+                if (entry.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(entry);
+                } else {
+                    added(entry.getFileName().toString(), Files.size(entry));
+                }
+            }
+        }
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private synchronized void added(String key, long size) {
+
+        Long previous = disk.put(key, size);
+        diskBytes += size - (previous == null ? 0 : previous);
+
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > config.getDiskSize().toBytes() && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            diskBytes -= entry.getValue();
+            try {
+                Files.deleteIfExists(path(entry.getKey()));
+            } catch (IOException e) {
+                log.warn("Failed to evict cached result {}", entry.getKey(), e);
+            }
+        }
+
+    }
+
+    private synchronized void remember(String key, byte[] content) {
+
+        byte[] previous = memory.put(key, content);
+        memoryBytes += content.length - (previous == null ? 0 : previous.length);
+
+        Iterator<byte[]> eldest = memory.values().iterator();
+        while (memoryBytes > config.getMemorySize().toBytes() && eldest.hasNext()) {
+            memoryBytes -= eldest.next().length;
+            eldest.remove();
+        }
+
+    }
+
+    private synchronized long size(boolean onDisk) {
+        return onDisk ? diskBytes : memoryBytes;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result, String tier) {
+        return Counter.builder("pdfapi.cache.requests")
+                .tag("result", result)
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A result being written. Closing an entry that was not committed discards it.
+     */
+    public final class Entry implements Closeable {
+
+        private final String key;
+        private final Path temporaryFile;
+        private final OutputStream fileOutputStream;
+        private final OutputStream outputStream;
+        private boolean committed;
+
+        private Entry(String key, Path temporaryFile, OutputStream target) throws IOException {
+            this.key = key;
+            this.temporaryFile = temporaryFile;
+            this.fileOutputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFile));
+            this.outputStream = new FilterOutputStream(target) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    fileOutputStream.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    fileOutputStream.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                    fileOutputStream.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try (fileOutputStream) {
+                        out.close();
+                    }
+                }
+            };
+        }
+
+        public OutputStream outputStream() {
+            return outputStream;
+        }
+
+        public void commit() throws IOException {
+
+            fileOutputStream.close();
+            long size = Files.size(temporaryFile);
+            if (size > config.getDiskSize().toBytes()) {
+                return;
+            }
+
+            Files.move(temporaryFile, path(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            added(key, size);
+            if (size <= config.getMemoryEntrySize().toBytes()) {
+                try {
+                    remember(key, Files.readAllBytes(path(key)));
+                } catch (NoSuchFileException e) {
+                    // already evicted from disk by a concurrent result
+                }
+            }
+
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                fileOutputStream.close();
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+
+    }
+
+}
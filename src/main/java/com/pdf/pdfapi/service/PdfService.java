@@ -1,170 +1,1046 @@
-package com.pdf.pdfapi.service;
-
-import com.itextpdf.io.image.ImageData;
-import com.itextpdf.io.image.ImageDataFactory;
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfReader;
-import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.kernel.utils.PageRange;
-import com.itextpdf.kernel.utils.PdfMerger;
-import com.itextpdf.kernel.utils.PdfSplitter;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Image;
-import com.pdf.pdfapi.config.PdfConfig;
-import com.pdf.pdfapi.exception.PdfErrorException;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.log4j.Log4j2;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
-@Service
-@RequiredArgsConstructor
-@Log4j2
-public class PdfService {
-
-    private final PdfConfig pdfConfig;
-
-    public void merge(MultipartFile... file) {
-
-        if (file.length < 2) {
-            String errorMsg = "Merge needs at least 2 documents";
-            log.error(errorMsg);
-            throw new PdfErrorException(errorMsg);
-        }
-
-        try {
-
-            PdfDocument pdfDocument = new PdfDocument(
-                    new PdfReader(new ByteArrayInputStream(file[0].getBytes())),
-                    new PdfWriter(String.format("%smerged_%s.pdf", pdfConfig.getOutputFolder(), timestamp()))
-            );
-            PdfMerger merger = new PdfMerger(pdfDocument);
-
-            for (int i = 1; i < file.length; i++) {
-                PdfDocument pdfDocument2 = new PdfDocument(new PdfReader(new ByteArrayInputStream(file[i].getBytes())));
-                merger.merge(pdfDocument2, 1, pdfDocument2.getNumberOfPages());
-                pdfDocument2.close();
-            }
-
-            pdfDocument.close();
-
-        } catch (Exception e) {
-            log.error("Failed while merging files", e);
-        }
-
-    }
-
-    public void split(MultipartFile file, Integer maxPageCount) {
-
-        try {
-
-            PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(file.getBytes())));
-            String fileName = String.format("splitDocument_%s_", timestamp());
-            PdfSplitter pdfSplitter = new PdfSplitter(pdfDocument) {
-                int partNumber = 1;
-
-                @Override
-                protected PdfWriter getNextPdfWriter(PageRange documentPageRange) {
-                    try {
-                        return new PdfWriter(String.format("%s%s%d.pdf",pdfConfig.getOutputFolder(), fileName, partNumber++));
-                    } catch (final IOException ex) {
-                        throw new PdfErrorException(ex.getMessage(), ex);
-                    }
-                }
-            };
-
-            pdfSplitter.splitByPageCount(maxPageCount, (pdfDoc, pageRange) -> pdfDoc.close());
-            pdfDocument.close();
-
-        } catch (Exception e) {
-            log.error("Failed to split file", e);
-        }
-
-    }
-
-    public void extract(MultipartFile file, Integer startPage, Integer endPage) {
-
-        try {
-
-            PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(file.getBytes())));
-
-            PdfSplitter pdfSplitter = new PdfSplitter(pdfDocument) {
-                @Override
-                protected PdfWriter getNextPdfWriter(PageRange documentPageRange) {
-                    try {
-                        return new PdfWriter(String.format("%sextractedPages_%s.pdf", pdfConfig.getOutputFolder(), timestamp()));
-                    } catch (final IOException ex) {
-                        throw new PdfErrorException(ex.getMessage(), ex);
-                    }
-                }
-            };
-
-            PdfDocument newPdfDocument = pdfSplitter.extractPageRange(new PageRange().addPageSequence(startPage, endPage));
-
-            newPdfDocument.close();
-            pdfDocument.close();
-
-        } catch (Exception e) {
-            log.error("Failed to extract from file", e);
-        }
-
-    }
-
-    public void remove(MultipartFile file, Integer... page) {
-
-        try {
-
-            PdfDocument pdfDocument = new PdfDocument(
-                    new PdfReader(new ByteArrayInputStream(file.getBytes())),
-                    new PdfWriter(String.format("%sremovedPages_%s.pdf", pdfConfig.getOutputFolder(), timestamp()))
-            );
-
-            int removeCount = 0;
-            for (Integer pageNumber : page) {
-                pdfDocument.removePage(pageNumber - removeCount++);
-            }
-
-            pdfDocument.close();
-
-        } catch (Exception e) {
-            log.error("Failed to remove from file", e);
-        }
-
-    }
-
-    public void convertImageToPDF(MultipartFile... file) {
-
-        try {
-
-            for (MultipartFile currentFile : file) {
-
-                PdfDocument pdfDocument = new PdfDocument(new PdfWriter(String.format("%sImageToPdf_%s.pdf",pdfConfig.getOutputFolder(), timestamp())));
-                Document document = new Document(pdfDocument);
-
-                ImageData imageData = ImageDataFactory.create(currentFile.getBytes());
-                Image image = new Image(imageData);
-                image.setWidth(pdfDocument.getDefaultPageSize().getWidth() - 50); // 50-point margin on each side
-                image.setAutoScaleHeight(true);
-
-                document.add(image);
-                pdfDocument.close();
-
-            }
-
-        } catch (Exception e) {
-            log.error("Failed while converting image to PDF", e);
-        }
-
-    }
-
-    private String timestamp() {
-        LocalDateTime time = LocalDateTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
-        return time.format(formatter);
-    }
-
-}
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.commons.exceptions.ITextException;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.utils.PageRange;
+import com.itextpdf.kernel.utils.PdfSplitter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Image;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipOutputStream;
+
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class PdfService {
+
+    private final PdfConfig pdfConfig;
+    private final PdfInputFactory pdfInputFactory;
+    private final PdfMetrics pdfMetrics;
+    private final PdfResultCache pdfResultCache;
+    private final PdfLinearizer pdfLinearizer;
+    private final PdfConcurrencyLimiter pdfConcurrencyLimiter;
+    private final PdfOutputWriter pdfOutputWriter;
+    private final PdfPreflight pdfPreflight;
+    private final PdfBufferPool pdfBufferPool;
+
+    /**
+     * Merges the given files into a new document in the output folder. As with every operation writing there, requests
+     * that cannot succeed are rejected with 400 and, without a free slot, with 429, while a failed render is only
+     * logged and leaves nothing behind.
+     */
+    public void merge(MultipartFile... file) {
+
+        validateMerge(file);
+
+        try {
+            store(PdfOutputWriter.uniqueName("merged_", ".pdf"), out -> cached(out, "merge", List.of(), file, linearized(o -> renderMerged(o, file))));
+        } catch (Exception e) {
+            rethrowIfRejected(e);
+            log.error("Failed while merging files", e);
+        }
+
+    }
+
+    /**
+     * Merges the given files straight into {@code outputStream}. Unlike {@link #merge(MultipartFile...)},
+     * nothing is written to the output folder and failures are rethrown as {@link PdfErrorException}.
+     */
+    public void mergeTo(OutputStream outputStream, MultipartFile... file) {
+        checkFileCount(file);
+        cached(outputStream, "merge", List.of(), file, linearized(out -> renderMerged(out, file)));
+    }
+
+    private void renderMerged(OutputStream outputStream, MultipartFile... file) {
+
+        PdfMetrics.Operation operation = start("merge", file);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(writeMerged(pdfWriter, file), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while merging files", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    /**
+     * Prepares to receive the files of a {@code multipart/form-data} request {@code body} while they arrive, for
+     * {@link #mergeTo(OutputStream, StreamedUpload)} and {@link #convertImageToPDFTo(OutputStream, boolean, StreamedUpload)}.
+     *
+     * @throws PdfErrorException with 400 if {@code contentType} is not {@code multipart/form-data}
+     */
+    public StreamedUpload receive(InputStream body, String contentType) {
+        return StreamedUpload.of(body, contentType, pdfConfig.getInput());
+    }
+
+    /**
+     * Merges the files of {@code upload} into {@code outputStream}, each one as soon as it has arrived, while the next
+     * is still uploading. Merging starts once two files are there, so a single file is answered with 400 before
+     * anything is written. Files cannot be pre-flighted before they arrive and their hash is only known at the end, so
+     * an unreadable file fails the response midway, results are not cached and the merge is always sequential.
+     */
+    public void mergeTo(OutputStream outputStream, StreamedUpload upload) {
+        try (upload) {
+            upload.start();
+            MultipartFile first = upload.hasNext() ? upload.next() : null;
+            if (first == null || !upload.hasNext()) {
+                checkFileCount(first == null ? new MultipartFile[0] : new MultipartFile[]{first});
+            }
+            linearized(out -> renderMerged(out, first, upload)).accept(outputStream);
+        }
+    }
+
+    private void renderMerged(OutputStream outputStream, MultipartFile first, StreamedUpload upload) {
+
+        PdfMetrics.Operation operation = startReceiving("merge");
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            Iterator<ParallelMerger.Source> sources = Stream.concat(Stream.of(first), StreamSupport.stream(Spliterators.spliteratorUnknownSize(upload, Spliterator.ORDERED), false))
+                    .<ParallelMerger.Source>map(currentFile -> () -> pdfInputFactory.open(currentFile))
+                    .iterator();
+            boolean deduplicate = pdfConfig.getOutput().getOptimization() == PdfConfig.Output.Optimization.SMART;
+            int pages = ParallelMerger.merge(pdfWriter, sources, deduplicate);
+            operation.received(upload.getReceivedBytes(), upload.getReceivedFiles()).succeeded(pages, pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while merging files", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void split(MultipartFile file, Integer maxPageCount) {
+        split(file, SplitStrategy.pageCount(maxPageCount));
+    }
+
+    public void split(MultipartFile file, SplitStrategy strategy) {
+
+        validateSplit(file);
+
+        PdfMetrics.Operation operation = start("split", file);
+        try {
+
+            PdfPartSink sink = operation.track(PdfPartSink.storage(pdfOutputWriter, pdfBufferPool, writerProperties()));
+            operation.succeeded(writeSplit(file, strategy, sink, PdfOutputWriter.uniqueName("splitDocument_", "_")));
+
+        } catch (Exception e) {
+            operation.failed(e);
+            log.error("Failed to split file", e);
+        }
+
+    }
+
+    /**
+     * Splits the given file and writes every part as an entry of a zip archive streamed to {@code outputStream}.
+     */
+    public void splitTo(OutputStream outputStream, MultipartFile file, Integer maxPageCount) {
+        splitTo(outputStream, file, SplitStrategy.pageCount(maxPageCount));
+    }
+
+    public void splitTo(OutputStream outputStream, MultipartFile file, SplitStrategy strategy) {
+        cached(outputStream, "split", List.of(strategy), new MultipartFile[]{file}, out -> renderSplit(out, file, strategy));
+    }
+
+    private void renderSplit(OutputStream outputStream, MultipartFile file, SplitStrategy strategy) {
+
+        PdfMetrics.Operation operation = start("split", file);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            operation.succeeded(writeSplit(file, strategy, operation.track(PdfPartSink.zip(zipOutputStream, writerProperties())), "splitDocument_"));
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to split file", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void extract(MultipartFile file, Integer startPage, Integer endPage) {
+        extract(file, PageSet.range(startPage, endPage), false);
+    }
+
+    /**
+     * Extracts the ranges of {@code pages}, in the order given, into one document or, with {@code separate}, into one
+     * document per range.
+     */
+    public void extract(MultipartFile file, PageSet pages, boolean separate) {
+
+        validateExtract(file, pages);
+
+        if (separate) {
+            PdfMetrics.Operation operation = start("extract", file);
+            try {
+                PdfPartSink sink = operation.track(PdfPartSink.storage(pdfOutputWriter, pdfBufferPool, writerProperties()));
+                operation.succeeded(writeExtractedRanges(file, pages, sink, PdfOutputWriter.uniqueName("extractedPages_", "_")));
+            } catch (Exception e) {
+                operation.failed(e);
+                log.error("Failed to extract from file", e);
+            }
+            return;
+        }
+
+        try {
+            store(PdfOutputWriter.uniqueName("extractedPages_", ".pdf"), out -> extractTo(out, file, pages, false));
+        } catch (Exception e) {
+            rethrowIfRejected(e);
+            log.error("Failed to extract from file", e);
+        }
+
+    }
+
+    public void extractTo(OutputStream outputStream, MultipartFile file, Integer startPage, Integer endPage) {
+        extractTo(outputStream, file, PageSet.range(startPage, endPage), false);
+    }
+
+    /**
+     * Streams the ranges of {@code pages} as one PDF or, with {@code separate}, as a zip archive with one PDF per
+     * range. The file is parsed once either way.
+     */
+    public void extractTo(OutputStream outputStream, MultipartFile file, PageSet pages, boolean separate) {
+        if (separate) {
+            cached(outputStream, "extract", List.of(pages, true), new MultipartFile[]{file}, out -> renderExtractedRanges(out, file, pages));
+        } else {
+            cached(outputStream, "extract", List.of(pages), new MultipartFile[]{file}, linearized(out -> renderExtracted(out, file, pages)));
+        }
+    }
+
+    private void renderExtracted(OutputStream outputStream, MultipartFile file, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("extract", file);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(writeExtracted(pdfWriter, file, pages), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to extract from file", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void renderExtractedRanges(OutputStream outputStream, MultipartFile file, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("extract", file);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+            operation.succeeded(writeExtractedRanges(file, pages, sink, "extractedPages_"));
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to extract from file", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void remove(MultipartFile file, Integer... page) {
+        remove(file, PageSet.of(page));
+    }
+
+    public void remove(MultipartFile file, PageSet pages) {
+
+        validateRemove(file, pages);
+
+        try {
+            store(PdfOutputWriter.uniqueName("removedPages_", ".pdf"), out -> removeTo(out, file, pages));
+        } catch (Exception e) {
+            rethrowIfRejected(e);
+            log.error("Failed to remove from file", e);
+        }
+
+    }
+
+    public void removeTo(OutputStream outputStream, MultipartFile file, Integer... page) {
+        removeTo(outputStream, file, PageSet.of(page));
+    }
+
+    /**
+     * Writes {@code file} without {@code pages}, which may be unsorted and overlapping, to {@code outputStream}.
+     */
+    public void removeTo(OutputStream outputStream, MultipartFile file, PageSet pages) {
+        cached(outputStream, "remove", List.of(pages), new MultipartFile[]{file}, linearized(out -> renderRemoved(out, file, pages)));
+    }
+
+    private void renderRemoved(OutputStream outputStream, MultipartFile file, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("remove", file);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(writeRemoved(pdfWriter, file, pages), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to remove from file", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void convertImageToPDF(MultipartFile... file) {
+        convertImageToPDF(false, file);
+    }
+
+    /**
+     * Converts the given images into one PDF per image or, with {@code singleDocument}, into a single PDF with one
+     * page per image. Either way every file gets a name of its own in the output folder.
+     */
+    public void convertImageToPDF(boolean singleDocument, MultipartFile... file) {
+
+        PdfMetrics.Operation operation = start("convertImageToPDF", file);
+        try {
+
+            String name = PdfOutputWriter.uniqueName("ImageToPdf_", "");
+            if (singleDocument) {
+                PdfBufferPool.Output outputStream = pdfBufferPool.output();
+                try {
+                    PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+                    operation.succeeded(writeImageDocument(pdfWriter, file), pdfWriter);
+                    pdfOutputWriter.write(name + ".pdf", outputStream.toByteArray());
+                } finally {
+                    outputStream.release();
+                }
+            } else {
+                PdfPartSink sink = operation.track(PdfPartSink.storage(pdfOutputWriter, pdfBufferPool, writerProperties()));
+                operation.succeeded(writeImages(sink, imageNumber -> String.format("%s_%d.pdf", name, imageNumber), file));
+            }
+
+        } catch (Exception e) {
+            operation.failed(e);
+            log.error("Failed while converting image to PDF", e);
+        }
+
+    }
+
+    /**
+     * Converts each image into its own PDF and streams them to {@code outputStream} as entries of a zip archive.
+     */
+    public void convertImageToPDFTo(OutputStream outputStream, MultipartFile... file) {
+        convertImageToPDFTo(outputStream, false, file);
+    }
+
+    /**
+     * Streams either a zip archive with one PDF per image or, with {@code singleDocument}, a single PDF with one page
+     * per image to {@code outputStream}.
+     */
+    public void convertImageToPDFTo(OutputStream outputStream, boolean singleDocument, MultipartFile... file) {
+        if (singleDocument) {
+            cached(outputStream, "convertImageToPDF", List.of(true), file, out -> renderImageDocument(out, file));
+        } else {
+            cached(outputStream, "convertImageToPDF", List.of(false), file, out -> renderImages(out, file));
+        }
+    }
+
+    /**
+     * Like {@link #convertImageToPDFTo(OutputStream, boolean, MultipartFile...)}, converting each image of
+     * {@code upload} as soon as it has arrived while the next is still uploading. Results are not cached.
+     */
+    public void convertImageToPDFTo(OutputStream outputStream, boolean singleDocument, StreamedUpload upload) {
+        try (upload) {
+            upload.start();
+            if (!upload.hasNext()) {
+                throw new PdfErrorException(HttpStatus.BAD_REQUEST, "Expected at least one file");
+            }
+            if (singleDocument) {
+                renderImageDocument(outputStream, upload);
+            } else {
+                renderImages(outputStream, upload);
+            }
+        }
+    }
+
+    private void renderImages(OutputStream outputStream, StreamedUpload upload) {
+
+        PdfMetrics.Operation operation = startReceiving("convertImageToPDF");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+            int images = writeImages(sink, imageNumber -> String.format("ImageToPdf_%d.pdf", imageNumber), upload);
+            operation.received(upload.getReceivedBytes(), upload.getReceivedFiles()).succeeded(images);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while converting image to PDF", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void renderImageDocument(OutputStream outputStream, StreamedUpload upload) {
+
+        PdfMetrics.Operation operation = startReceiving("convertImageToPDF");
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            int pages = writeImageDocument(pdfWriter, upload);
+            operation.received(upload.getReceivedBytes(), upload.getReceivedFiles()).succeeded(pages, pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while converting image to PDF", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void renderImages(OutputStream outputStream, MultipartFile... file) {
+
+        PdfMetrics.Operation operation = start("convertImageToPDF", file);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+            operation.succeeded(writeImages(sink, imageNumber -> String.format("ImageToPdf_%d.pdf", imageNumber), file));
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while converting image to PDF", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void renderImageDocument(OutputStream outputStream, MultipartFile... file) {
+
+        PdfMetrics.Operation operation = start("convertImageToPDF", file);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(writeImageDocument(pdfWriter, file), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed while converting image to PDF", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    /**
+     * Rejects pipelines that cannot run on the given uploads, so that callers can answer before streaming a result.
+     * The uploads are only opened by {@link PdfPreflight} to check the page arguments of every step.
+     */
+    public void validatePipeline(List<PdfPipelineStep> steps, MultipartFile... file) {
+        PdfPipeline.validate(steps, file.length);
+        PdfPipeline.validate(steps, Arrays.stream(file).mapToInt(pdfPreflight::numberOfPages).toArray());
+    }
+
+    /**
+     * Rejects a merge with 400 unless it has at least two uploads that are all readable PDFs. Like the other
+     * {@code validate} methods, this reads no more of the uploads than {@link PdfPreflight} does, so that callers can
+     * answer before streaming a result or queuing a job and bad requests never cost a full parse.
+     */
+    public void validateMerge(MultipartFile... file) {
+        checkFileCount(file);
+        for (MultipartFile currentFile : file) {
+            pdfPreflight.numberOfPages(currentFile);
+        }
+    }
+
+    public void validateSplit(MultipartFile file) {
+        pdfPreflight.numberOfPages(file);
+    }
+
+    public void validateExtract(MultipartFile file, PageSet pages) {
+        pages.pageRanges(pdfPreflight.numberOfPages(file));
+    }
+
+    public void validateExtract(PdfDocumentHandle handle, PageSet pages) {
+        pages.pageRanges(handle.getPages());
+    }
+
+    public void validateRemove(MultipartFile file, PageSet pages) {
+        removedPages(pdfPreflight.numberOfPages(file), pages);
+    }
+
+    public void validateRemove(PdfDocumentHandle handle, PageSet pages) {
+        removedPages(handle.getPages(), pages);
+    }
+
+    /**
+     * Runs {@code steps} over the given files in a single pass and streams only the final result: a PDF, or a zip
+     * archive with one entry per part when the last step is a split. No intermediate document is written anywhere.
+     */
+    public void pipelineTo(OutputStream outputStream, List<PdfPipelineStep> steps, MultipartFile... file) {
+        PdfPipeline.validate(steps, file.length);
+        List<String> parameters = steps.stream().map(PdfPipelineStep::toString).toList();
+        if (PdfPipelineStep.endsWithSplit(steps)) {
+            cached(outputStream, "pipeline", parameters, file, out -> renderPipeline(out, steps, file));
+        } else {
+            cached(outputStream, "pipeline", parameters, file, linearized(out -> renderPipeline(out, steps, file)));
+        }
+    }
+
+    private void renderPipeline(OutputStream outputStream, List<PdfPipelineStep> steps, MultipartFile... file) {
+
+        PdfMetrics.Operation operation = start("pipeline", file);
+        try (PdfPipeline pipeline = new PdfPipeline(steps, pdfInputFactory, file)) {
+
+            if (PdfPipelineStep.endsWithSplit(steps)) {
+                try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+                    PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+                    int pages = 0;
+                    for (int part = 0; part < pipeline.size(); part++) {
+                        PdfDocument pdfDocument = new PdfDocument(sink.open(String.format("splitDocument_%d.pdf", part + 1)));
+                        pages += pipeline.write(part, pdfDocument);
+                        pdfDocument.close();
+                        sink.finish();
+                    }
+                    operation.succeeded(pages);
+                }
+            } else {
+                PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+                PdfDocument pdfDocument = new PdfDocument(pdfWriter);
+                int pages = pipeline.write(0, pdfDocument);
+                pdfDocument.close();
+                operation.succeeded(pages, pdfWriter);
+            }
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to run pipeline", e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void extractTo(OutputStream outputStream, PdfDocumentHandle handle, Integer startPage, Integer endPage) {
+        extractTo(outputStream, handle, PageSet.range(startPage, endPage), false);
+    }
+
+    public void extractTo(OutputStream outputStream, PdfDocumentHandle handle, PageSet pages, boolean separate) {
+        if (separate) {
+            spooled(outputStream, out -> renderExtractedRanges(out, handle, pages));
+        } else {
+            spooledLinearized(outputStream, out -> renderExtracted(out, handle, pages));
+        }
+    }
+
+    private void renderExtracted(OutputStream outputStream, PdfDocumentHandle handle, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("extract", handle);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(handle.read(pdfDocument -> extractPages(pdfWriter, pdfDocument, pages.pageRange(pdfDocument.getNumberOfPages()))), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to extract from document " + handle.getId(), e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void renderExtractedRanges(OutputStream outputStream, PdfDocumentHandle handle, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("extract", handle);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+            operation.succeeded(handle.read(pdfDocument -> extractRanges(pdfDocument, pages, sink, "extractedPages_")));
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to extract from document " + handle.getId(), e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void removeTo(OutputStream outputStream, PdfDocumentHandle handle, Integer... page) {
+        removeTo(outputStream, handle, PageSet.of(page));
+    }
+
+    public void removeTo(OutputStream outputStream, PdfDocumentHandle handle, PageSet pages) {
+        spooledLinearized(outputStream, out -> renderRemoved(out, handle, pages));
+    }
+
+    private void renderRemoved(OutputStream outputStream, PdfDocumentHandle handle, PageSet pages) {
+
+        PdfMetrics.Operation operation = start("remove", handle);
+        try {
+
+            PdfWriter pdfWriter = new PdfWriter(outputStream, writerProperties());
+            operation.succeeded(handle.read(pdfDocument -> copyKeptPages(pdfWriter, pdfDocument, pages)), pdfWriter);
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to remove from document " + handle.getId(), e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    public void splitTo(OutputStream outputStream, PdfDocumentHandle handle, Integer maxPageCount) {
+        splitTo(outputStream, handle, SplitStrategy.pageCount(maxPageCount));
+    }
+
+    public void splitTo(OutputStream outputStream, PdfDocumentHandle handle, SplitStrategy strategy) {
+        spooled(outputStream, out -> renderSplit(out, handle, strategy));
+    }
+
+    private void renderSplit(OutputStream outputStream, PdfDocumentHandle handle, SplitStrategy strategy) {
+
+        PdfMetrics.Operation operation = start("split", handle);
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+
+            PdfPartSink sink = operation.track(PdfPartSink.zip(zipOutputStream, writerProperties()));
+            operation.succeeded(handle.read(pdfDocument -> splitPages(pdfDocument, strategy, sink, "splitDocument_")));
+
+        } catch (IOException | ITextException e) {
+            operation.failed(e);
+            throw new PdfErrorException("Failed to split document " + handle.getId(), e);
+        } catch (RuntimeException e) {
+            operation.failed(e);
+            throw e;
+        }
+
+    }
+
+    private void checkFileCount(MultipartFile... file) {
+        if (file.length < 2) {
+            String errorMsg = "Merge needs at least 2 documents";
+            log.error(errorMsg);
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, errorMsg);
+        }
+    }
+
+    /**
+     * Starts timing {@code operation} once one of its {@code pdfapi.concurrency} slots is free. The slot is handed back
+     * when the operation succeeds or fails, so cache hits never take one.
+     */
+    private PdfMetrics.Operation start(String operation, MultipartFile... file) {
+        Runnable release = pdfConcurrencyLimiter.acquire(operation);
+        return pdfMetrics.start(operation, file).whenStopped(release);
+    }
+
+    private PdfMetrics.Operation start(String operation, PdfDocumentHandle handle) {
+        Runnable release = pdfConcurrencyLimiter.acquire(operation);
+        return pdfMetrics.start(operation, handle).whenStopped(release);
+    }
+
+    private PdfMetrics.Operation startReceiving(String operation) {
+        Runnable release = pdfConcurrencyLimiter.acquire(operation);
+        return pdfMetrics.startReceiving(operation).whenStopped(release);
+    }
+
+    /**
+     * Serves the result of {@code operation} from {@link PdfResultCache} when the same inputs and parameters were
+     * seen before; otherwise renders it to {@code outputStream} and stores a copy.
+     */
+    private void cached(OutputStream outputStream, String operation, List<?> parameters, MultipartFile[] file, Consumer<OutputStream> render) {
+
+        if (!pdfResultCache.isEnabled()) {
+            render.accept(outputStream);
+            return;
+        }
+
+        try {
+
+            // the optimization level and linearization change the bytes written, so their results must not be shared
+            PdfConfig.Output output = pdfConfig.getOutput();
+            String key = pdfResultCache.key(operation, Arrays.asList(parameters, output.getOptimization(), output.isLinearize()), file);
+            if (pdfResultCache.serve(key, outputStream)) {
+                return;
+            }
+
+            try (PdfResultCache.Entry entry = pdfResultCache.store(key, outputStream)) {
+                render.accept(entry.outputStream());
+                entry.commit();
+            }
+
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to access the result cache", e);
+        }
+
+    }
+
+    /**
+     * Wraps {@code render} so that its document is linearized for fast web view when {@code pdfapi.output.linearize} is set.
+     */
+    private Consumer<OutputStream> linearized(Consumer<OutputStream> render) {
+        return outputStream -> pdfLinearizer.write(outputStream, render);
+    }
+
+    /**
+     * Renders a result of a document handle into a temporary file and copies it to {@code outputStream} afterwards, so
+     * that the lock of the handle, held while rendering, is not held while a slow client downloads the result.
+     */
+    private void spooled(OutputStream outputStream, Consumer<OutputStream> render) {
+
+        Path spool = null;
+        try {
+
+            spool = Files.createTempFile("pdfapi-handle-", ".tmp");
+            try (OutputStream spoolStream = new BufferedOutputStream(Files.newOutputStream(spool))) {
+                render.accept(spoolStream);
+            }
+            Files.copy(spool, outputStream);
+
+        } catch (IOException e) {
+            throw new PdfErrorException("Failed to send document", e);
+        } finally {
+            deleteQuietly(spool);
+        }
+
+    }
+
+    /**
+     * Like {@link #spooled}, but linearized when {@code pdfapi.output.linearize} is set, in which case qpdf already
+     * writes the result to a file that is copied after rendering.
+     */
+    private void spooledLinearized(OutputStream outputStream, Consumer<OutputStream> render) {
+        if (pdfLinearizer.isEnabled()) {
+            pdfLinearizer.write(outputStream, render);
+        } else {
+            spooled(outputStream, render);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private int writeMerged(PdfWriter pdfWriter, MultipartFile... file) throws IOException {
+
+        List<ParallelMerger.Source> sources = Arrays.stream(file)
+                .<ParallelMerger.Source>map(currentFile -> () -> pdfInputFactory.open(currentFile))
+                .toList();
+
+        PdfConfig.Merge merge = pdfConfig.getMerge();
+        boolean deduplicate = pdfConfig.getOutput().getOptimization() == PdfConfig.Output.Optimization.SMART;
+        if (merge.getParallelism() > 1 && file.length >= merge.getParallelThreshold()) {
+            return new ParallelMerger(merge.getParallelism(), merge.getChunkSize()).mergeTree(pdfWriter, sources, deduplicate);
+        }
+        return ParallelMerger.merge(pdfWriter, sources, deduplicate);
+
+    }
+
+    private int writeSplit(MultipartFile file, SplitStrategy strategy, PdfPartSink sink, String fileNamePrefix) throws IOException {
+
+        try (PdfInput input = pdfInputFactory.open(file)) {
+
+            int parallelism = pdfConfig.getSplit().getParallelism();
+            if (parallelism > 1) {
+                return new ParallelSplitter(input, parallelism, writerProperties()).split(sink, fileNamePrefix, strategy);
+            }
+
+            PdfDocument pdfDocument = new PdfDocument(input.newReader());
+            int pages = splitPages(pdfDocument, strategy, sink, fileNamePrefix);
+            pdfDocument.close();
+            return pages;
+
+        }
+
+    }
+
+    /**
+     * Plans the parts with {@code strategy} and copies them one after the other. Parts cut by size are rendered in
+     * memory first, so one that comes out larger than planned can be cut again before it reaches the sink.
+     */
+    private int splitPages(PdfDocument pdfDocument, SplitStrategy strategy, PdfPartSink sink, String fileNamePrefix) throws IOException {
+
+        int partNumber = 1;
+        for (PageRange pageRange : strategy.pageRanges(pdfDocument)) {
+            if (strategy.getMaxSize() == null) {
+                extractPages(sink.open(String.format("%s%d.pdf", fileNamePrefix, partNumber++)), pdfDocument, pageRange);
+                sink.finish();
+                continue;
+            }
+            for (byte[] part : ParallelSplitter.render(pdfDocument, pageRange, strategy.getMaxSize(), writerProperties())) {
+                sink.write(String.format("%s%d.pdf", fileNamePrefix, partNumber++), part);
+            }
+        }
+        return pdfDocument.getNumberOfPages();
+
+    }
+
+    private int writeExtracted(PdfWriter pdfWriter, MultipartFile file, PageSet pages) throws IOException {
+
+        try (PdfInput input = pdfInputFactory.open(file)) {
+
+            PdfDocument pdfDocument = new PdfDocument(input.newReader());
+            int numberOfPages = extractPages(pdfWriter, pdfDocument, pages.pageRange(pdfDocument.getNumberOfPages()));
+            pdfDocument.close();
+            return numberOfPages;
+
+        }
+
+    }
+
+    /**
+     * Writes one part per range of {@code pages}. With {@code pdfapi.split.parallelism} above 1 the parts are
+     * rendered concurrently, each worker reading the file on its own; otherwise the file is parsed once.
+     */
+    private int writeExtractedRanges(MultipartFile file, PageSet pages, PdfPartSink sink, String fileNamePrefix) throws IOException {
+
+        try (PdfInput input = pdfInputFactory.open(file)) {
+
+            int parallelism = pdfConfig.getSplit().getParallelism();
+            if (parallelism > 1) {
+                return new ParallelSplitter(input, parallelism, writerProperties()).extract(sink, fileNamePrefix, pages);
+            }
+
+            PdfDocument pdfDocument = new PdfDocument(input.newReader());
+            int numberOfPages = extractRanges(pdfDocument, pages, sink, fileNamePrefix);
+            pdfDocument.close();
+            return numberOfPages;
+
+        }
+
+    }
+
+    private int extractRanges(PdfDocument pdfDocument, PageSet pages, PdfPartSink sink, String fileNamePrefix) throws IOException {
+
+        int numberOfPages = 0;
+        int partNumber = 1;
+        for (PageRange pageRange : pages.pageRanges(pdfDocument.getNumberOfPages())) {
+            numberOfPages += extractPages(sink.open(String.format("%s%d.pdf", fileNamePrefix, partNumber++)), pdfDocument, pageRange);
+            sink.finish();
+        }
+        return numberOfPages;
+
+    }
+
+    private int extractPages(PdfWriter pdfWriter, PdfDocument pdfDocument, PageRange pageRange) {
+
+        PdfSplitter pdfSplitter = new PdfSplitter(pdfDocument) {
+            @Override
+            protected PdfWriter getNextPdfWriter(PageRange documentPageRange) {
+                return pdfWriter;
+            }
+        };
+
+        PdfDocument newPdfDocument = pdfSplitter.extractPageRange(pageRange);
+
+        int pages = newPdfDocument.getNumberOfPages();
+        newPdfDocument.close();
+        return pages;
+
+    }
+
+    /**
+     * Removes {@code pages} in stamping mode, so that everything else in the document is kept as it is. The pages are
+     * normalised first and removed from the last one down, so no page number has to be adjusted for earlier removals.
+     */
+    private int writeRemoved(PdfWriter pdfWriter, MultipartFile file, PageSet pages) throws IOException {
+
+        try (PdfInput input = pdfInputFactory.open(file)) {
+
+            PdfDocument pdfDocument = new PdfDocument(input.newReader(), pdfWriter);
+            BitSet removed = removedPages(pdfDocument.getNumberOfPages(), pages);
+            for (int pageNumber = removed.length() - 1; pageNumber > 0; pageNumber = removed.previousSetBit(pageNumber - 1)) {
+                pdfDocument.removePage(pageNumber);
+            }
+
+            int numberOfPages = pdfDocument.getNumberOfPages();
+            pdfDocument.close();
+            return numberOfPages;
+
+        }
+
+    }
+
+    private BitSet removedPages(int numberOfPages, PageSet pages) {
+        BitSet removed = pages.resolve(numberOfPages);
+        if (removed.cardinality() == numberOfPages) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, "Cannot remove every page of the document");
+        }
+        return removed;
+    }
+
+    /**
+     * Copies every page not in {@code pages} into a new document with a single {@link PdfDocument#copyPagesTo} call.
+     * Used for registered documents, which are open for reading only and so cannot have pages removed in place.
+     */
+    private int copyKeptPages(PdfWriter pdfWriter, PdfDocument pdfDocument, PageSet pages) {
+
+        int numberOfPages = pdfDocument.getNumberOfPages();
+        BitSet removed = removedPages(pdfDocument.getNumberOfPages(), pages);
+
+        List<Integer> kept = IntStream.rangeClosed(1, numberOfPages).filter(pageNumber -> !removed.get(pageNumber)).boxed().toList();
+        try (PdfDocument newPdfDocument = new PdfDocument(pdfWriter)) {
+            ParallelMerger.copyDocumentInfo(pdfDocument, newPdfDocument);
+            pdfDocument.copyPagesTo(kept, newPdfDocument);
+            return newPdfDocument.getNumberOfPages();
+        }
+
+    }
+
+    private int writeImages(PdfPartSink sink, IntFunction<String> fileName, MultipartFile... file) throws IOException {
+        return writeImages(sink, fileName, Arrays.asList(file).iterator());
+    }
+
+    private int writeImages(PdfPartSink sink, IntFunction<String> fileName, Iterator<MultipartFile> file) throws IOException {
+
+        try (ImageDecoder images = imageDecoder(file)) {
+
+            int imageNumber = 1;
+            while (images.hasNext()) {
+
+                ImageData imageData = images.next();
+                PdfDocument pdfDocument = new PdfDocument(sink.open(fileName.apply(imageNumber++)));
+                Document document = new Document(pdfDocument);
+
+                document.add(image(imageData, pdfDocument));
+                pdfDocument.close();
+                sink.finish();
+
+            }
+
+            return imageNumber - 1;
+
+        }
+
+    }
+
+    private int writeImageDocument(PdfWriter pdfWriter, MultipartFile... file) throws IOException {
+        return writeImageDocument(pdfWriter, Arrays.asList(file).iterator());
+    }
+
+    private int writeImageDocument(PdfWriter pdfWriter, Iterator<MultipartFile> file) throws IOException {
+
+        try (ImageDecoder images = imageDecoder(file)) {
+
+            PdfDocument pdfDocument = new PdfDocument(pdfWriter);
+            Document document = new Document(pdfDocument);
+
+            while (images.hasNext()) {
+                ImageData imageData = images.next();
+                if (pdfDocument.getNumberOfPages() > 0) {
+                    document.add(new AreaBreak());
+                }
+                document.add(image(imageData, pdfDocument));
+            }
+
+            int pages = pdfDocument.getNumberOfPages();
+            document.close();
+            return pages;
+
+        }
+
+    }
+
+    private ImageDecoder imageDecoder(Iterator<MultipartFile> file) {
+        PdfConfig.Images images = pdfConfig.getImages();
+        return new ImageDecoder(file, images.getParallelism(), images.getMaxDecodedImages());
+    }
+
+    private Image image(ImageData imageData, PdfDocument pdfDocument) {
+        Image image = new Image(imageData);
+        image.setWidth(pdfDocument.getDefaultPageSize().getWidth() - 50); // 50-point margin on each side
+        image.setAutoScaleHeight(true);
+        return image;
+    }
+
+    /**
+     * Writer settings for {@code pdfapi.output.optimization}: {@code COMPRESSED} packs the cross-reference table and
+     * objects into compressed streams at the best compression level, {@code SMART} additionally writes resources that
+     * are identical across inputs, such as fonts and images shared by merged documents, only once.
+     */
+    private WriterProperties writerProperties() {
+        WriterProperties writerProperties = new WriterProperties();
+        switch (pdfConfig.getOutput().getOptimization()) {
+            case SMART -> writerProperties.useSmartMode()
+                    .setFullCompressionMode(true)
+                    .setCompressionLevel(CompressionConstants.BEST_COMPRESSION);
+            case COMPRESSED -> writerProperties.setFullCompressionMode(true)
+                    .setCompressionLevel(CompressionConstants.BEST_COMPRESSION);
+            case NONE -> {
+            }
+        }
+        return writerProperties;
+    }
+
+    /**
+     * Renders into memory and queues the result on the {@link PdfOutputWriter}, so the operation does not wait for the
+     * storage. The result is copied out of a buffer of the {@link PdfBufferPool}, which is then released.
+     */
+    /**
+     * Like split and convertImageToPDF, the file-mode operations only log a failed render, but a request rejected for
+     * lack of a slot is answered with 429 in every mode.
+     */
+    private static void rethrowIfRejected(Exception e) {
+        if (e instanceof ResponseStatusException rejected && rejected.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+            throw rejected;
+        }
+    }
+
+    private void store(String name, Consumer<OutputStream> render) {
+        PdfBufferPool.Output outputStream = pdfBufferPool.output();
+        try {
+            render.accept(outputStream);
+            pdfOutputWriter.write(name, outputStream.toByteArray());
+        } finally {
+            outputStream.release();
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps produced documents as objects of an S3-compatible store (AWS S3, MinIO, Ceph, ...) under
+ * {@code pdfapi.storage.s3.prefix}. Requests are addressed path-style and signed with AWS Signature Version 4 over the
+ * JDK's HTTP client, so no SDK is needed. Objects only become visible once uploaded completely, which S3 guarantees
+ * for single-request uploads.
+ */
+@Component
+@ConditionalOnProperty(prefix = "pdfapi.storage", name = "type", havingValue = "s3")
+public class S3PdfOutputStorage implements PdfOutputStorage {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final PdfConfig.Storage.S3 config;
+    private final HttpClient httpClient;
+
+    public S3PdfOutputStorage(PdfConfig pdfConfig) {
+        this.config = pdfConfig.getStorage().getS3();
+        this.httpClient = HttpClient.newBuilder().connectTimeout(config.getTimeout()).build();
+    }
+
+    @Override
+    public void write(String name, byte[] content) throws IOException {
+        if (!isName(name)) {
+            throw new IllegalArgumentException("Invalid file name " + name);
+        }
+        HttpResponse<InputStream> response = send("PUT", key(name), Map.of(), Map.of(), content);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException(String.format("Storing %s answered %d", name, response.statusCode()));
+            }
+        }
+    }
+
+    /**
+     * Objects below a further {@code /} of the prefix are not listed.
+     */
+    @Override
+    public List<PdfFile> list() throws IOException {
+        List<PdfFile> files = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Map<String, String> query = new HashMap<>(Map.of("list-type", "2", "prefix", config.getPrefix()));
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            Element result = listObjects(query);
+            files.addAll(files(result));
+            continuationToken = "true".equals(text(result, "IsTruncated")) ? text(result, "NextContinuationToken") : null;
+        } while (continuationToken != null);
+        files.sort(Comparator.comparing(PdfFile::getLastModified).reversed());
+        return files;
+    }
+
+    /**
+     * Lists a single object starting with the key of {@code name}, which is that object itself if it exists, as keys
+     * are listed in lexicographic order.
+     */
+    @Override
+    public Optional<PdfFile> find(String name) throws IOException {
+        if (!isName(name)) {
+            return Optional.empty();
+        }
+        Element result = listObjects(Map.of("list-type", "2", "prefix", key(name), "max-keys", "1"));
+        return files(result).stream().filter(file -> file.getName().equals(name)).findFirst();
+    }
+
+    @Override
+    public void transfer(PdfFile file, long start, long length, OutputStream outputStream) throws IOException {
+        Map<String, String> headers = Map.of("range", String.format("bytes=%d-%d", start, start + length - 1));
+        HttpResponse<InputStream> response = send("GET", key(file.getName()), Map.of(), headers, new byte[0]);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 200) {
+                body.skipNBytes(start);
+            } else if (response.statusCode() != 206) {
+                throw new IOException(String.format("Reading %s answered %d", file.getName(), response.statusCode()));
+            }
+            byte[] buffer = new byte[8192];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException(String.format("%s was truncated while being served", file.getName()));
+                }
+                outputStream.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * S3 answers deletes of missing objects like those of existing ones.
+     */
+    @Override
+    public void delete(String name) throws IOException {
+        if (!isName(name)) {
+            return;
+        }
+        HttpResponse<InputStream> response = send("DELETE", key(name), Map.of(), Map.of(), new byte[0]);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() / 100 != 2 && response.statusCode() != 404) {
+                throw new IOException(String.format("Deleting %s answered %d", name, response.statusCode()));
+            }
+        }
+    }
+
+    private Element listObjects(Map<String, String> query) throws IOException {
+        HttpResponse<InputStream> response = send("GET", "", query, Map.of(), new byte[0]);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException(String.format("Listing %s answered %d", config.getBucket(), response.statusCode()));
+            }
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            Document document = factory.newDocumentBuilder().parse(body);
+            return document.getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unreadable listing of " + config.getBucket(), e);
+        }
+    }
+
+    private List<PdfFile> files(Element result) {
+        List<PdfFile> files = new ArrayList<>();
+        NodeList contents = result.getElementsByTagName("Contents");
+        for (int i = 0; i < contents.getLength(); i++) {
+            Element object = (Element) contents.item(i);
+            String name = text(object, "Key").substring(config.getPrefix().length());
+            if (isName(name)) {
+                files.add(new PdfFile(name, Long.parseLong(text(object, "Size")), Instant.parse(text(object, "LastModified"))));
+            }
+        }
+        return files;
+    }
+
+    private static String text(Element element, String tagName) {
+        NodeList nodes = element.getElementsByTagName(tagName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+
+    private static boolean isName(String name) {
+        return !name.isBlank() && !name.contains("/") && !name.contains("\\");
+    }
+
+    private String key(String name) {
+        return config.getPrefix() + name;
+    }
+
+    private HttpResponse<InputStream> send(String method, String key, Map<String, String> query, Map<String, String> headers, byte[] payload) throws IOException {
+
+        URI endpoint = config.getEndpoint();
+        String basePath = Objects.requireNonNullElse(endpoint.getRawPath(), "").replaceAll("/+$", "");
+        String canonicalUri = basePath + "/" + encode(config.getBucket()) + (key.isEmpty() ? "" : "/" + encode(key).replace("%2F", "/"));
+        String canonicalQuery = new TreeMap<>(query).entrySet().stream()
+                .map(parameter -> encode(parameter.getKey()) + "=" + encode(parameter.getValue()))
+                .collect(Collectors.joining("&"));
+        String payloadHash = hex(sha256(payload));
+
+        SortedMap<String, String> signedHeaders = new TreeMap<>(headers);
+        signedHeaders.put("host", endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort());
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", AMZ_DATE.format(Instant.now()));
+        String authorization = authorization(method, canonicalUri, canonicalQuery, signedHeaders, payloadHash, config.getRegion(), config.getAccessKey(), config.getSecretKey());
+
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + canonicalUri + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(config.getTimeout())
+                .method(method, payload.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(payload))
+                .header("Authorization", authorization);
+        signedHeaders.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                request.header(name, value);
+            }
+        });
+
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling " + uri, e);
+        }
+
+    }
+
+    /**
+     * The {@code Authorization} header of AWS Signature Version 4 for a request whose signed headers, including
+     * {@code host} and {@code x-amz-date}, are {@code headers} with lower-case names.
+     */
+    static String authorization(String method, String canonicalUri, String canonicalQuery, SortedMap<String, String> headers,
+                                String payloadHash, String region, String accessKey, String secretKey) {
+
+        String amzDate = headers.get("x-amz-date");
+        String date = amzDate.substring(0, 8);
+        String scope = String.format("%s/%s/s3/aws4_request", date, region);
+        String signedHeaders = String.join(";", headers.keySet());
+
+        String canonicalRequest = String.join("\n", method, canonicalUri, canonicalQuery,
+                headers.entrySet().stream().map(header -> header.getKey() + ":" + header.getValue().trim() + "\n").collect(Collectors.joining()),
+                signedHeaders, payloadHash);
+        String stringToSign = String.join("\n", ALGORITHM, amzDate, scope, hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8))));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = hex(hmac(signingKey, stringToSign));
+
+        return String.format("%s Credential=%s/%s, SignedHeaders=%s, Signature=%s", ALGORITHM, accessKey, scope, signedHeaders, signature);
+
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+}
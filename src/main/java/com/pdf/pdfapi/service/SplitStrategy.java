@@ -0,0 +1,237 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNameTree;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfOutline;
+import com.itextpdf.kernel.pdf.PdfOutputStream;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.navigation.PdfDestination;
+import com.itextpdf.kernel.utils.PageRange;
+import com.itextpdf.kernel.utils.PdfSplitter;
+import lombok.EqualsAndHashCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * How a document is cut into parts: every {@code maxPageCount} pages, before each top-level bookmark, or into parts
+ * of at most {@code maxSize} bytes. The parts are planned in one pass over the document by {@link #pageRanges}.
+ */
+@EqualsAndHashCode
+public final class SplitStrategy {
+
+    /**
+     * Estimated bytes of a part besides its pages: header, catalog, page tree, info and trailer.
+     */
+    private static final long PART_OVERHEAD = 1024;
+
+    /**
+     * Estimated bytes each object costs besides its content: the {@code obj}/{@code endobj} wrapper and its
+     * cross-reference entry.
+     */
+    private static final long OBJECT_OVERHEAD = 40;
+
+    /**
+     * Estimated bytes each page costs besides its objects: its {@code /Kids} entry in the page tree and the longer
+     * object numbers of the part referring to it.
+     */
+    private static final long PAGE_OVERHEAD = 24;
+
+    /**
+     * Bytes of the {@code stream}/{@code endstream} keywords around stream data.
+     */
+    private static final long STREAM_OVERHEAD = 20;
+
+    private final Integer maxPageCount;
+    private final Long maxSize;
+
+    private SplitStrategy(Integer maxPageCount, Long maxSize) {
+        this.maxPageCount = maxPageCount;
+        this.maxSize = maxSize;
+    }
+
+    public static SplitStrategy pageCount(int maxPageCount) {
+        if (maxPageCount < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxPageCount must be at least 1");
+        }
+        return new SplitStrategy(maxPageCount, null);
+    }
+
+    public static SplitStrategy size(long maxSize) {
+        if (maxSize < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxSize must be at least 1");
+        }
+        return new SplitStrategy(null, maxSize);
+    }
+
+    public static SplitStrategy bookmarks() {
+        return new SplitStrategy(null, null);
+    }
+
+    /**
+     * The strategy selected by exactly one of {@code maxPageCount}, {@code maxSize} and {@code bookmarks}.
+     */
+    public static SplitStrategy of(Integer maxPageCount, Long maxSize, boolean bookmarks) {
+        int selected = (maxPageCount != null ? 1 : 0) + (maxSize != null ? 1 : 0) + (bookmarks ? 1 : 0);
+        if (selected != 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give exactly one of maxPageCount, maxSize and bookmarks");
+        }
+        if (maxPageCount != null) {
+            return pageCount(maxPageCount);
+        }
+        return maxSize != null ? size(maxSize) : bookmarks();
+    }
+
+    /**
+     * @return the size budget of each part in bytes, or {@code null} if parts are not cut by size
+     */
+    Long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Plans the parts of {@code pdfDocument}. Bookmarks start a part at the page of each top-level outline, with the
+     * pages before the first one as a part of their own; a document without bookmarks is a single part. Sizes are
+     * estimated from the serialized length of the objects each page adds to its part, resources shared by several
+     * pages counted once, much like {@link PdfSplitter#splitBySize(long)} but without reading any stream data.
+     */
+    List<PageRange> pageRanges(PdfDocument pdfDocument) {
+
+        int numberOfPages = pdfDocument.getNumberOfPages();
+        if (maxPageCount != null) {
+            List<Integer> startPages = new ArrayList<>();
+            for (int startPage = 1; startPage <= numberOfPages; startPage += maxPageCount) {
+                startPages.add(startPage);
+            }
+            return pageRanges(startPages, numberOfPages);
+        }
+        return maxSize != null ? sizeRanges(pdfDocument, numberOfPages) : bookmarkRanges(pdfDocument, numberOfPages);
+
+    }
+
+    private List<PageRange> sizeRanges(PdfDocument pdfDocument, int numberOfPages) {
+
+        List<Integer> startPages = new ArrayList<>();
+        Map<Integer, Long> lengths = new HashMap<>();
+        Set<Integer> part = new HashSet<>();
+        long length = 0;
+
+        for (int page = 1; page <= numberOfPages; page++) {
+            PdfDictionary pageObject = pdfDocument.getPage(page).getPdfObject();
+            Set<Integer> added = new HashSet<>();
+            long pageLength = PAGE_OVERHEAD + length(pageObject, pageObject, part, added, lengths);
+            if (startPages.isEmpty() || length + pageLength > maxSize) {
+                startPages.add(page);
+                part.clear();
+                added.clear();
+                length = PART_OVERHEAD;
+                pageLength = PAGE_OVERHEAD + length(pageObject, pageObject, part, added, lengths);
+            }
+            length += pageLength;
+            part.addAll(added);
+        }
+        return pageRanges(startPages, numberOfPages);
+
+    }
+
+    /**
+     * Estimated bytes of the objects reachable from {@code object} that are not in {@code part} yet, collecting their
+     * numbers into {@code added}. Other pages, reached through links or the page tree, are not followed since they are
+     * not copied along with {@code page}.
+     */
+    private static long length(PdfObject object, PdfDictionary page, Set<Integer> part, Set<Integer> added, Map<Integer, Long> lengths) {
+
+        if (object instanceof PdfDictionary dictionary && object != page
+                && (PdfName.Page.equals(dictionary.getAsName(PdfName.Type)) || PdfName.Pages.equals(dictionary.getAsName(PdfName.Type)))) {
+            return 0;
+        }
+
+        long length = 0;
+        PdfIndirectReference reference = object.getIndirectReference();
+        if (reference != null) {
+            if (part.contains(reference.getObjNumber()) || !added.add(reference.getObjNumber())) {
+                return 0;
+            }
+            length += lengths.computeIfAbsent(reference.getObjNumber(), number -> OBJECT_OVERHEAD + serializedLength(object));
+        }
+
+        if (object instanceof PdfDictionary dictionary) {
+            for (Map.Entry<PdfName, PdfObject> entry : dictionary.entrySet()) {
+                if (!PdfName.Parent.equals(entry.getKey())) {
+                    length += length(entry.getValue(), page, part, added, lengths);
+                }
+            }
+        } else if (object instanceof PdfArray array) {
+            for (PdfObject item : array) {
+                length += length(item, page, part, added, lengths);
+            }
+        }
+        return length;
+
+    }
+
+    /**
+     * The length of {@code object} as written, stream data counted by its declared length rather than read.
+     */
+    private static long serializedLength(PdfObject object) {
+        PdfOutputStream outputStream = new PdfOutputStream(OutputStream.nullOutputStream());
+        if (object instanceof PdfStream stream) {
+            outputStream.write(new PdfDictionary(stream));
+            PdfNumber length = stream.getAsNumber(PdfName.Length);
+            return outputStream.getCurrentPos() + (length != null ? length.longValue() : stream.getLength()) + STREAM_OVERHEAD;
+        }
+        outputStream.write(object.clone());
+        return outputStream.getCurrentPos();
+    }
+
+    private static List<PageRange> bookmarkRanges(PdfDocument pdfDocument, int numberOfPages) {
+
+        TreeSet<Integer> startPages = new TreeSet<>(List.of(1));
+        PdfOutline outlines = pdfDocument.getOutlines(false);
+        if (outlines != null) {
+            PdfNameTree destinations = pdfDocument.getCatalog().getNameTree(PdfName.Dests);
+            for (PdfOutline outline : outlines.getAllChildren()) {
+                PdfDestination destination = outline.getDestination();
+                PdfObject page = destination != null ? destination.getDestinationPage(destinations) : null;
+                int pageNumber = page instanceof PdfDictionary pageDictionary ? pdfDocument.getPageNumber(pageDictionary) : -1;
+                if (pageNumber > 0) {
+                    startPages.add(pageNumber);
+                }
+            }
+        }
+        return pageRanges(new ArrayList<>(startPages), numberOfPages);
+
+    }
+
+    private static List<PageRange> pageRanges(List<Integer> startPages, int numberOfPages) {
+        List<PageRange> ranges = new ArrayList<>(startPages.size());
+        for (int i = 0; i < startPages.size(); i++) {
+            int endPage = i + 1 < startPages.size() ? startPages.get(i + 1) - 1 : numberOfPages;
+            ranges.add(new PageRange().addPageSequence(startPages.get(i), endPage));
+        }
+        return ranges;
+    }
+
+    @Override
+    public String toString() {
+        if (maxPageCount != null) {
+            return "pages:" + maxPageCount;
+        }
+        return maxSize != null ? "size:" + maxSize : "bookmarks";
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.pdf.pdfapi.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Copy of an upload in a temporary file, so that it outlives the request it arrived with.
+ */
+class SpooledMultipartFile implements MultipartFile, FileBackedUpload {
+
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final Path path;
+
+    private SpooledMultipartFile(MultipartFile file, Path path) {
+        this.name = file.getName();
+        this.originalFilename = file.getOriginalFilename();
+        this.contentType = file.getContentType();
+        this.path = path;
+    }
+
+    static SpooledMultipartFile spool(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("pdfapi-upload-", ".tmp");
+        try {
+            file.transferTo(path.toFile());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SpooledMultipartFile(file, path);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public Optional<Path> localFile() {
+        return Optional.of(path);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
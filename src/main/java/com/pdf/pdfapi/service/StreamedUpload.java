@@ -0,0 +1,479 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@code file} parts of a {@code multipart/form-data} request body, handed out in order as soon as each one has
+ * fully arrived, so that an operation works on one file while the next is still uploading.
+ * <p>
+ * A virtual thread parses the body ahead of the caller and queues at most {@code pdfapi.input.ingest-read-ahead}
+ * received files; beyond that it stops reading, so a slow operation slows the upload down instead of filling memory.
+ * Like any upload, files below {@code pdfapi.input.mapped-threshold} are kept on the heap and larger ones in a temporary
+ * file. Closing the upload stops the reader and deletes every temporary file, so it is closed once the operation is
+ * done with the files.
+ */
+public class StreamedUpload implements Iterator<MultipartFile>, Closeable {
+
+    private static final int BUFFER = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+    private static final Pattern DISPOSITION_PARAMETER = Pattern.compile(";\\s*([\\w*-]+)=(\"[^\"]*\"|[^;\\s]*)");
+
+    private static final Item END = new Item(null, null);
+
+    private final InputStream body;
+    private final byte[] delimiter;
+    private final long maxSize;
+    private final long mappedThreshold;
+    private final BlockingQueue<Item> received;
+
+    private final byte[] buffer = new byte[BUFFER];
+    private int position;
+    private int limit;
+    private volatile long receivedBytes;
+    private volatile int receivedFiles;
+
+    private final List<ReceivedFile> handedOut = new ArrayList<>();
+    private Thread reader;
+    private volatile boolean closed;
+    private ReceivedFile next;
+    private boolean ended;
+
+    private StreamedUpload(InputStream body, String boundary, PdfConfig.Input config) {
+        this.body = body;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.maxSize = config.getIngestMaxSize().toBytes();
+        this.mappedThreshold = config.getMappedThreshold().toBytes();
+        this.received = new ArrayBlockingQueue<>(Math.max(1, config.getIngestReadAhead()));
+        // the body starts with a delimiter that lacks the leading line break
+        buffer[limit++] = '\r';
+        buffer[limit++] = '\n';
+    }
+
+    /**
+     * @throws PdfErrorException with 400 if {@code contentType} is not {@code multipart/form-data} with a boundary
+     */
+    static StreamedUpload of(InputStream body, String contentType, PdfConfig.Input config) {
+
+        String boundary = null;
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            if (MediaType.MULTIPART_FORM_DATA.includes(mediaType)) {
+                boundary = mediaType.getParameter("boundary");
+            }
+        } catch (InvalidMediaTypeException e) {
+            // answered below like any other content type
+        }
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 72) {
+            throw new PdfErrorException(HttpStatus.BAD_REQUEST, "Expected a multipart/form-data request body");
+        }
+        return new StreamedUpload(body, boundary.replaceAll("^\"|\"$", ""), config);
+
+    }
+
+    /**
+     * Starts reading the body in the background.
+     */
+    void start() {
+        reader = Thread.ofVirtual().name("upload-reader").start(this::read);
+    }
+
+    /**
+     * Waits until the next file has arrived or the body has ended.
+     *
+     * @throws PdfErrorException with 400 if the body is malformed or too large, or when reading it failed
+     */
+    @Override
+    public boolean hasNext() {
+
+        if (next == null && !ended) {
+            Item item;
+            try {
+                item = received.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PdfErrorException("Interrupted while receiving the upload", e);
+            }
+            if (item.failure() != null) {
+                ended = true;
+                throw item.failure();
+            }
+            next = item.file();
+            ended = item == END;
+        }
+        return next != null;
+
+    }
+
+    @Override
+    public MultipartFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ReceivedFile file = next;
+        next = null;
+        handedOut.add(file);
+        return file;
+    }
+
+    /**
+     * Bytes of the request body read so far.
+     */
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * Files that have fully arrived so far.
+     */
+    public int getReceivedFiles() {
+        return receivedFiles;
+    }
+
+    /**
+     * Stops the reader and waits for it, as the body belongs to a request that the container reuses once the operation
+     * has returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        discardReceived();
+        if (reader != null) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (next != null) {
+            handedOut.add(next);
+            next = null;
+        }
+        handedOut.forEach(ReceivedFile::delete);
+        discardReceived();
+    }
+
+    private void read() {
+
+        try {
+
+            skipTo(delimiter, OutputStream.nullOutputStream());
+            while (!closed && !endOfBody()) {
+                String disposition = null;
+                String contentType = null;
+                for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                    int colon = header.indexOf(':');
+                    String name = colon < 0 ? "" : header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                    if (name.equals("content-disposition")) {
+                        disposition = header.substring(colon + 1);
+                    } else if (name.equals("content-type")) {
+                        contentType = header.substring(colon + 1).trim();
+                    }
+                }
+
+                String name = dispositionParameter(disposition, "name");
+                String filename = dispositionParameter(disposition, "filename");
+                if (!"file".equals(name) || filename == null) {
+                    skipTo(delimiter, OutputStream.nullOutputStream());
+                    continue;
+                }
+
+                ReceivedFile file = new ReceivedFile(name, filename, contentType);
+                try (OutputStream outputStream = file.open()) {
+                    skipTo(delimiter, outputStream);
+                } catch (IOException | RuntimeException e) {
+                    file.delete();
+                    throw e;
+                }
+                receivedFiles++;
+                if (!offer(new Item(file, null))) {
+                    return;
+                }
+            }
+            offer(END);
+
+        } catch (PdfErrorException e) {
+            offer(new Item(null, e));
+        } catch (IOException e) {
+            offer(new Item(null, new PdfErrorException(HttpStatus.BAD_REQUEST, "Failed to read the upload", e)));
+        }
+
+    }
+
+    /**
+     * Hands {@code item} to the caller, waiting while the read-ahead is full.
+     *
+     * @return false if the upload was closed in the meantime
+     */
+    private boolean offer(Item item) {
+        try {
+            if (!closed) {
+                received.put(item);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (closed) {
+            if (item.file() != null) {
+                item.file().delete();
+            }
+            discardReceived();
+            return false;
+        }
+        return true;
+    }
+
+    private void discardReceived() {
+        for (Item item = received.poll(); item != null; item = received.poll()) {
+            if (item.file() != null) {
+                item.file().delete();
+            }
+        }
+    }
+
+    /**
+     * After a delimiter, consumes the rest of its line and tells whether it closed the body.
+     */
+    private boolean endOfBody() throws IOException {
+        while (limit - position < 2) {
+            if (!fill()) {
+                throw malformed();
+            }
+        }
+        if (buffer[position] == '-' && buffer[position + 1] == '-') {
+            return true;
+        }
+        readLine();
+        return false;
+    }
+
+    /**
+     * Copies everything up to the next occurrence of {@code marker} to {@code outputStream} and consumes the marker.
+     */
+    private void skipTo(byte[] marker, OutputStream outputStream) throws IOException {
+        while (true) {
+            int match = indexOf(marker);
+            if (match >= 0) {
+                outputStream.write(buffer, position, match - position);
+                position = match + marker.length;
+                return;
+            }
+            // the end of the buffer may hold the start of the marker
+            int safe = Math.max(position, limit - marker.length + 1);
+            outputStream.write(buffer, position, safe - position);
+            position = safe;
+            if (!fill()) {
+                throw malformed();
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        skipTo(new byte[]{'\r', '\n'}, new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (line.size() + len > MAX_HEADER_LINE) {
+                    throw malformed();
+                }
+                line.write(b, off, len);
+            }
+        });
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private int indexOf(byte[] marker) {
+        for (int i = position; i <= limit - marker.length; i++) {
+            if (buffer[i] == marker[0] && Arrays.equals(buffer, i, i + marker.length, marker, 0, marker.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Upload closed");
+        }
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        int read = body.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        receivedBytes += read;
+        if (receivedBytes > maxSize) {
+            throw new PdfErrorException(HttpStatus.PAYLOAD_TOO_LARGE, String.format("Upload exceeds %d bytes", maxSize));
+        }
+        return true;
+    }
+
+    private static String dispositionParameter(String disposition, String name) {
+        if (disposition == null) {
+            return null;
+        }
+        Matcher matcher = DISPOSITION_PARAMETER.matcher(disposition);
+        while (matcher.find()) {
+            if (matcher.group(1).equalsIgnoreCase(name)) {
+                return matcher.group(2).replaceAll("^\"|\"$", "");
+            }
+        }
+        return null;
+    }
+
+    private static PdfErrorException malformed() {
+        return new PdfErrorException(HttpStatus.BAD_REQUEST, "Malformed multipart upload");
+    }
+
+    private record Item(ReceivedFile file, PdfErrorException failure) {
+    }
+
+    /**
+     * One received file, on the heap until it reaches the mapped threshold and in a temporary file from then on.
+     */
+    private final class ReceivedFile implements MultipartFile, FileBackedUpload {
+
+        private final String name;
+        private final String originalFilename;
+        private final String contentType;
+        private byte[] content;
+        private Path path;
+
+        private ReceivedFile(String name, String originalFilename, String contentType) {
+            this.name = name;
+            this.originalFilename = originalFilename;
+            this.contentType = contentType;
+        }
+
+        private OutputStream open() {
+            return new OutputStream() {
+                private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+                private OutputStream spooled;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (spooled == null && memory.size() + len >= mappedThreshold) {
+                        path = Files.createTempFile("pdfapi-upload-", ".tmp");
+                        spooled = new BufferedOutputStream(Files.newOutputStream(path), BUFFER);
+                        memory.writeTo(spooled);
+                        memory = null;
+                    }
+                    (spooled != null ? spooled : memory).write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (spooled != null) {
+                        spooled.close();
+                    } else {
+                        content = memory.toByteArray();
+                    }
+                }
+            };
+        }
+
+        private void delete() {
+            try {
+                if (path != null) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                // a leftover temporary file is not worth failing for
+            }
+        }
+
+        @Override
+        public Optional<Path> localFile() {
+            return Optional.ofNullable(path);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            try {
+                return path != null ? Files.size(path) : content.length;
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return path != null ? Files.readAllBytes(path) : content;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return path != null ? Files.newInputStream(path) : new ByteArrayInputStream(content);
+        }
+
+        /**
+         * Moves a spooled file instead of copying it, as the container does for its own uploads.
+         */
+        @Override
+        public void transferTo(File dest) throws IOException {
+            if (path != null) {
+                Files.move(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                path = dest.toPath();
+            } else {
+                Files.write(dest.toPath(), content);
+            }
+        }
+
+    }
+
+}
@@ -1,13 +1,38 @@
 package com.pdf.pdfapi.controller;
 
+import com.pdf.pdfapi.exception.PdfErrorException;
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfFile;
+import com.pdf.pdfapi.service.PdfFileService;
+import com.pdf.pdfapi.service.PdfPreviewService;
 import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import com.pdf.pdfapi.service.StreamedUpload;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -16,6 +41,12 @@ class PdfControllerTest {
     @Mock
     private PdfService pdfService;
 
+    @Mock
+    private PdfFileService pdfFileService;
+
+    @Mock
+    private PdfPreviewService pdfPreviewService;
+
     @InjectMocks
     private PdfController pdfController;
 
@@ -35,9 +66,33 @@ class PdfControllerTest {
 
         MultipartFile file = mock(MultipartFile.class);
 
-        pdfController.split(file, 1);
+        pdfController.split(file, 1, null, false);
 
-        verify(pdfService, times(1)).split(file, 1);
+        verify(pdfService, times(1)).split(file, SplitStrategy.pageCount(1));
+
+    }
+
+    @Test
+    void test_split_given_size_or_bookmarks_expect_matching_strategy() {
+
+        MultipartFile file = mock(MultipartFile.class);
+
+        pdfController.split(file, null, 1_000_000L, false);
+        pdfController.split(file, null, null, true);
+
+        verify(pdfService, times(1)).split(file, SplitStrategy.size(1_000_000));
+        verify(pdfService, times(1)).split(file, SplitStrategy.bookmarks());
+
+    }
+
+    @Test
+    void test_split_given_no_or_several_strategies_expect_bad_request() {
+
+        MultipartFile file = mock(MultipartFile.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> pdfController.split(file, null, null, false)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> pdfController.split(file, 10, 1_000_000L, false)).getStatusCode());
+        verifyNoInteractions(pdfService);
 
     }
 
@@ -46,9 +101,20 @@ class PdfControllerTest {
 
         MultipartFile file = mock(MultipartFile.class);
 
-        pdfController.extract(file, 1, 2);
+        pdfController.extract(file, 1, 2, null, false);
+
+        verify(pdfService, times(1)).extract(file, PageSet.range(1, 2), false);
+
+    }
+
+    @Test
+    void test_extract_given_pages_and_separate() {
+
+        MultipartFile file = mock(MultipartFile.class);
+
+        pdfController.extract(file, null, null, "1-5,20,40-60", true);
 
-        verify(pdfService, times(1)).extract(file, 1, 2);
+        verify(pdfService, times(1)).extract(file, PageSet.parse("1-5,20,40-60"), true);
 
     }
 
@@ -57,9 +123,9 @@ class PdfControllerTest {
 
         MultipartFile file = mock(MultipartFile.class);
 
-        pdfController.remove(file, 1);
+        pdfController.remove(file, "3-5", 1);
 
-        verify(pdfService, times(1)).remove(file, 1);
+        verify(pdfService, times(1)).remove(file, PageSet.of("3-5", 1));
 
     }
 
@@ -68,10 +134,286 @@ class PdfControllerTest {
 
         MultipartFile file = mock(MultipartFile.class);
 
-        pdfController.convertImageToPDF(file);
+        pdfController.convertImageToPDF(false, file);
+
+        verify(pdfService, times(1)).convertImageToPDF(false, file);
+
+    }
+
+    @Test
+    void test_streamMerge() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfController.streamMerge(file).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).mergeTo(outputStream, file);
+
+    }
+
+    @Test
+    void test_ingestMerge_and_ingestConvertImageToPDF_expect_body_read_by_service() throws IOException {
+
+        StreamedUpload upload = mock(StreamedUpload.class);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/pdfapi/ingest/convertImageToPDF");
+        request.setContentType("multipart/form-data; boundary=boundary");
+        request.setQueryString("singleDocument=true");
+        when(pdfService.receive(any(), eq("multipart/form-data; boundary=boundary"))).thenReturn(upload);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfController.ingestMerge(request).getBody().writeTo(outputStream);
+        ResponseEntity<StreamingResponseBody> response = pdfController.ingestConvertImageToPDF(request);
+        response.getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).mergeTo(outputStream, upload);
+        verify(pdfService, times(1)).convertImageToPDFTo(outputStream, true, upload);
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+
+    }
+
+    @Test
+    void test_streamSplit() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfController.streamSplit(file, 1, null, false).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).splitTo(outputStream, file, SplitStrategy.pageCount(1));
+
+    }
+
+    @Test
+    void test_streamExtract() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.streamExtract(file, 1, 2, null, false);
+        response.getBody().writeTo(outputStream);
+
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+        verify(pdfService, times(1)).extractTo(outputStream, file, PageSet.range(1, 2), false);
+
+    }
+
+    @Test
+    void test_streamExtract_given_pages_outside_document_expect_bad_request_before_streaming() {
+
+        MultipartFile file = mock(MultipartFile.class);
+        doThrow(new PdfErrorException(HttpStatus.BAD_REQUEST, "Page 1-9 is outside the 2 pages of the document"))
+                .when(pdfService).validateExtract(file, PageSet.range(1, 9));
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> pdfController.streamExtract(file, 1, 9, null, false)).getStatusCode());
+        verify(pdfService, never()).extractTo(any(), any(MultipartFile.class), any(PageSet.class), anyBoolean());
+
+    }
+
+    @Test
+    void test_streamExtract_given_separate_expect_zip() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.streamExtract(file, null, null, "1-5,20", true);
+        response.getBody().writeTo(outputStream);
+
+        assertEquals("application/zip", response.getHeaders().getContentType().toString());
+        verify(pdfService, times(1)).extractTo(outputStream, file, PageSet.parse("1-5,20"), true);
+
+    }
+
+    @Test
+    void test_streamRemove() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfController.streamRemove(file, null, 1).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).removeTo(outputStream, file, PageSet.of(1));
 
-        verify(pdfService, times(1)).convertImageToPDF(file);
+    }
+
+    @Test
+    void test_streamConvertImageToPDF() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfController.streamConvertImageToPDF(false, file).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).convertImageToPDFTo(outputStream, false, file);
+
+    }
+
+    @Test
+    void test_streamConvertImageToPDF_given_single_document_expect_pdf() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.streamConvertImageToPDF(true, file);
+        response.getBody().writeTo(outputStream);
+
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+        verify(pdfService, times(1)).convertImageToPDFTo(outputStream, true, file);
+
+    }
+
+    @Test
+    void test_preview_given_one_page_expect_png_and_several_pages_expect_zip() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(pdfPreviewService.validatePreview(file, PageSet.parse("1"), 72)).thenReturn(1);
+        when(pdfPreviewService.validatePreview(file, PageSet.parse("1-3"), 150)).thenReturn(3);
+
+        ResponseEntity<StreamingResponseBody> page = pdfController.preview(file, "1", 72);
+        ResponseEntity<StreamingResponseBody> pages = pdfController.preview(file, "1-3", 150);
+        page.getBody().writeTo(outputStream);
+
+        assertEquals(MediaType.IMAGE_PNG, page.getHeaders().getContentType());
+        assertEquals("application/zip", pages.getHeaders().getContentType().toString());
+        verify(pdfPreviewService, times(1)).previewTo(outputStream, file, PageSet.parse("1"), 72);
+
+    }
+
+    @Test
+    void test_streamPipeline() throws IOException {
+
+        MultipartFile file = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.streamPipeline("merge;remove:3,7;extract:1-50", file, file);
+        response.getBody().writeTo(outputStream);
+
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+        verify(pdfService, times(1)).validatePipeline(anyList(), eq(file), eq(file));
+        verify(pdfService, times(1)).pipelineTo(eq(outputStream), anyList(), eq(file), eq(file));
+
+    }
+
+    @Test
+    void download_expect_whole_file() throws IOException {
+
+        PdfFile file = file();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/pdfapi/files/merged_1.pdf");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", new HttpHeaders(), request);
+        response.getBody().writeTo(outputStream);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
+        assertEquals(100, response.getHeaders().getContentLength());
+        assertEquals("\"64-1\"", response.getHeaders().getETag());
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        verify(pdfFileService, times(1)).transfer(file, 0, 100, outputStream);
+
+    }
+
+    @Test
+    void download_given_range_expect_partial_content() throws IOException {
+
+        PdfFile file = file();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", requestHeaders, new MockHttpServletRequest());
+        response.getBody().writeTo(outputStream);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 10-99/100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(90, response.getHeaders().getContentLength());
+        verify(pdfFileService, times(1)).transfer(file, 10, 90, outputStream);
+
+    }
+
+    @Test
+    void download_given_range_of_other_version_expect_whole_file() {
+
+        file();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-19");
+        requestHeaders.set(HttpHeaders.IF_RANGE, "\"64-0\"");
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", requestHeaders, new MockHttpServletRequest());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(100, response.getHeaders().getContentLength());
+
+    }
+
+    @Test
+    void download_given_unsatisfiable_range_expect_416() {
+
+        file();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=100-");
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", requestHeaders, new MockHttpServletRequest());
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */100", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertNull(response.getBody());
+
+    }
+
+    @Test
+    void download_given_matching_etag_expect_304() {
+
+        file();
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setIfNoneMatch("\"64-1\"");
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", requestHeaders, new MockHttpServletRequest());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+
+    }
+
+    @Test
+    void download_given_sendfile_support_expect_sendfile_attributes() {
+
+        file();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=-10");
+
+        ResponseEntity<StreamingResponseBody> response = pdfController.download("merged_1.pdf", requestHeaders, request);
+
+        assertNull(response.getBody());
+        assertEquals(90L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(100L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+
+    }
+
+    @Test
+    void download_given_unknown_file_expect_404() {
+
+        when(pdfFileService.find("missing.pdf")).thenReturn(Optional.empty());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> pdfController.download("missing.pdf", new HttpHeaders(), new MockHttpServletRequest()));
+
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+
+    }
 
+    private PdfFile file() {
+        PdfFile file = mock(PdfFile.class);
+        lenient().when(file.getName()).thenReturn("merged_1.pdf");
+        lenient().when(file.getPath()).thenReturn(Path.of("output", "merged_1.pdf"));
+        lenient().when(file.getSize()).thenReturn(100L);
+        lenient().when(file.getLastModified()).thenReturn(Instant.ofEpochMilli(1));
+        lenient().when(file.getETag()).thenReturn("\"64-1\"");
+        when(pdfFileService.find("merged_1.pdf")).thenReturn(Optional.of(file));
+        return file;
     }
 
 }
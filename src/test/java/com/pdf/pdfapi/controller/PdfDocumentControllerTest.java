@@ -0,0 +1,102 @@
+package com.pdf.pdfapi.controller;
+
+import com.pdf.pdfapi.service.PageSet;
+import com.pdf.pdfapi.service.PdfDocumentHandle;
+import com.pdf.pdfapi.service.PdfDocumentService;
+import com.pdf.pdfapi.service.PdfService;
+import com.pdf.pdfapi.service.SplitStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PdfDocumentControllerTest {
+
+    @Mock
+    private PdfService pdfService;
+
+    @Mock
+    private PdfDocumentService pdfDocumentService;
+
+    @InjectMocks
+    private PdfDocumentController pdfDocumentController;
+
+    @Test
+    void test_register() {
+
+        MultipartFile file = mock(MultipartFile.class);
+        PdfDocumentHandle handle = mock(PdfDocumentHandle.class);
+        when(handle.getId()).thenReturn("id");
+        when(pdfDocumentService.register(file)).thenReturn(handle);
+
+        ResponseEntity<PdfDocumentHandle> response = pdfDocumentController.register(file);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("/pdfapi/documents/id", response.getHeaders().getLocation().toString());
+
+    }
+
+    @Test
+    void test_extract() throws IOException {
+
+        PdfDocumentHandle handle = mock(PdfDocumentHandle.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(pdfDocumentService.find("id")).thenReturn(Optional.of(handle));
+
+        pdfDocumentController.extract("id", 1, 2, null, false).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).extractTo(outputStream, handle, PageSet.range(1, 2), false);
+
+    }
+
+    @Test
+    void test_remove() throws IOException {
+
+        PdfDocumentHandle handle = mock(PdfDocumentHandle.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(pdfDocumentService.find("id")).thenReturn(Optional.of(handle));
+
+        pdfDocumentController.remove("id", null, 1).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).removeTo(outputStream, handle, PageSet.of(1));
+
+    }
+
+    @Test
+    void test_split() throws IOException {
+
+        PdfDocumentHandle handle = mock(PdfDocumentHandle.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(pdfDocumentService.find("id")).thenReturn(Optional.of(handle));
+
+        pdfDocumentController.split("id", 1, null, false).getBody().writeTo(outputStream);
+
+        verify(pdfService, times(1)).splitTo(outputStream, handle, SplitStrategy.pageCount(1));
+
+    }
+
+    @Test
+    void test_extract_given_unknown_document_expect_not_found() {
+
+        when(pdfDocumentService.find("id")).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> pdfDocumentController.extract("id", 1, 2, null, false));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.pdf.pdfapi.controller;
+
+import com.pdf.pdfapi.service.PdfJob;
+import com.pdf.pdfapi.service.PdfJobService;
+import com.pdf.pdfapi.service.PdfService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PdfJobControllerTest {
+
+    @Mock
+    private PdfService pdfService;
+
+    @Mock
+    private PdfJobService pdfJobService;
+
+    @InjectMocks
+    private PdfJobController pdfJobController;
+
+    @Test
+    void test_merge() {
+
+        MultipartFile file = mock(MultipartFile.class);
+        when(pdfJobService.submit(any(), any(), any(), any(), any())).thenReturn(mock(PdfJob.class));
+
+        pdfJobController.merge(file);
+
+        verify(pdfJobService, times(1)).submit(eq("merge"), eq("merged.pdf"), eq("application/pdf"), eq(new MultipartFile[]{file}), any());
+
+    }
+
+    @Test
+    void test_split() {
+
+        MultipartFile file = mock(MultipartFile.class);
+        when(pdfJobService.submit(any(), any(), any(), any(), any())).thenReturn(mock(PdfJob.class));
+
+        pdfJobController.split(file, 1, null, false);
+
+        verify(pdfJobService, times(1)).submit(eq("split"), eq("splitDocument.zip"), eq("application/zip"), eq(new MultipartFile[]{file}), any());
+
+    }
+
+    @Test
+    void test_pipeline() {
+
+        MultipartFile file = mock(MultipartFile.class);
+        when(pdfJobService.submit(any(), any(), any(), any(), any())).thenReturn(mock(PdfJob.class));
+
+        pdfJobController.pipeline("merge;split:10", file, file);
+
+        verify(pdfService, times(1)).validatePipeline(anyList(), eq(file), eq(file));
+        verify(pdfJobService, times(1)).submit(eq("pipeline"), eq("splitDocument.zip"), eq("application/zip"), eq(new MultipartFile[]{file, file}), any());
+
+    }
+
+    @Test
+    void test_status_given_unknown_job_expect_not_found() {
+
+        when(pdfJobService.find("unknown")).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> pdfJobController.status("unknown"));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalPdfOutputStorageTest {
+
+    @TempDir
+    private Path outputFolder;
+
+    private LocalPdfOutputStorage storage;
+
+    @BeforeEach
+    public void init() {
+        PdfConfig pdfConfig = new PdfConfig();
+        pdfConfig.setOutputFolder(outputFolder + "/");
+        storage = new LocalPdfOutputStorage(pdfConfig);
+    }
+
+    @Test
+    @SneakyThrows
+    void list_expect_produced_files_only() {
+
+        Files.writeString(outputFolder.resolve("merged_1.pdf"), "merged");
+        Files.createDirectory(outputFolder.resolve("cache"));
+
+        assertThat(storage.list()).extracting(PdfFile::getName).containsExactly("merged_1.pdf");
+
+    }
+
+    @Test
+    @SneakyThrows
+    void write_expect_file_in_subfolder_listed_and_no_temporary_file_left() {
+
+        storage.write("merged_1.pdf", "merged".getBytes());
+        storage.write("merged_2.pdf", "merged again".getBytes());
+
+        assertThat(storage.list()).extracting(PdfFile::getName).containsExactlyInAnyOrder("merged_1.pdf", "merged_2.pdf");
+        Path path = storage.find("merged_1.pdf").orElseThrow().getPath();
+        assertEquals("merged", Files.readString(path));
+        assertThat(path.getParent().getFileName().toString()).matches("[0-9a-f]{2}");
+        assertEquals(outputFolder.toRealPath(), path.getParent().getParent().toRealPath());
+        try (var files = Files.walk(outputFolder)) {
+            assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+        assertThrows(IllegalArgumentException.class, () -> storage.write("../secret.pdf", "secret".getBytes()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void delete_given_documents_in_subfolder_and_output_folder_expect_both_gone() {
+
+        storage.write("merged_1.pdf", "merged".getBytes());
+        Files.writeString(outputFolder.resolve("merged_2.pdf"), "written before subfolders");
+        Files.writeString(outputFolder.resolveSibling("secret.pdf"), "secret");
+
+        storage.delete("merged_1.pdf");
+        storage.delete("merged_2.pdf");
+        storage.delete("../secret.pdf");
+        storage.delete("missing.pdf");
+
+        assertThat(storage.list()).isEmpty();
+        assertThat(outputFolder.resolveSibling("secret.pdf")).exists();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void find_given_name_outside_output_folder_expect_empty() {
+
+        Files.writeString(outputFolder.resolve("merged_1.pdf"), "merged");
+        Files.writeString(outputFolder.resolveSibling("secret.pdf"), "secret");
+
+        assertTrue(storage.find("merged_1.pdf").isPresent());
+        assertTrue(storage.find("../secret.pdf").isEmpty());
+        assertTrue(storage.find("cache").isEmpty());
+        assertTrue(storage.find("missing.pdf").isEmpty());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void find_given_changed_file_expect_different_etag() {
+
+        Path path = outputFolder.resolve("merged_1.pdf");
+        Files.writeString(path, "merged");
+        String eTag = storage.find("merged_1.pdf").orElseThrow().getETag();
+
+        Files.writeString(path, "merged again");
+
+        assertNotEquals(eTag, storage.find("merged_1.pdf").orElseThrow().getETag());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void transfer_given_range_expect_range_content() {
+
+        Files.writeString(outputFolder.resolve("merged_1.pdf"), "0123456789");
+        PdfFile file = storage.find("merged_1.pdf").orElseThrow();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        storage.transfer(file, 2, 5, outputStream);
+
+        assertEquals("23456", outputStream.toString());
+
+    }
+
+}
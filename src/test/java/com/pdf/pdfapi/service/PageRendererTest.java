@@ -0,0 +1,154 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageRendererTest {
+
+    private static final int RED = 0xff0000;
+    private static final int BLUE = 0x0000ff;
+    private static final int WHITE = 0xffffff;
+
+    @Test
+    @SneakyThrows
+    void render_given_page_expect_size_at_dpi_and_content_in_place() {
+
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(document())))) {
+
+            BufferedImage image = PageRenderer.render(pdfDocument.getPage(1), 144, Long.MAX_VALUE);
+
+            assertEquals(400, image.getWidth());
+            assertEquals(600, image.getHeight());
+            // red square at (20, 220)-(80, 280) in PDF space, y growing upwards
+            assertEquals(RED, rgb(image, 100, 100));
+            assertEquals(WHITE, rgb(image, 20, 20));
+            // the clipped part of the blue square is not drawn
+            assertEquals(BLUE, rgb(image, 250, 520));
+            assertEquals(WHITE, rgb(image, 350, 520));
+            assertTrue(darkPixels(image, 0, 250, 200, 300) > 100, "text is drawn");
+            assertTrue(nonWhitePixels(image, 200, 200, 400, 400) > 1000, "image is drawn");
+            assertEquals(WHITE, rgb(image, 205, 205), "transparent corner of the image");
+
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void render_given_rotated_or_oversized_page_expect_turned_and_scaled_down() {
+
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(document())))) {
+
+            PdfPage page = pdfDocument.getPage(1);
+            page.setRotation(90);
+            BufferedImage rotated = PageRenderer.render(page, 72, Long.MAX_VALUE);
+            BufferedImage capped = PageRenderer.render(pdfDocument.getPage(2), 300, 20_000);
+
+            // turned clockwise, so the upper left corner of the page is now the upper right
+            assertEquals(300, rotated.getWidth());
+            assertEquals(200, rotated.getHeight());
+            assertEquals(RED, rgb(rotated, 250, 50));
+            assertTrue((long) capped.getWidth() * capped.getHeight() <= 20_000 + capped.getWidth() + capped.getHeight() + 1);
+            assertEquals(1.5, (double) capped.getHeight() / capped.getWidth(), 0.02);
+
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void render_given_pages_expect_png_per_page_in_order() {
+
+        byte[] content = document();
+        List<Integer> written = new ArrayList<>();
+        List<byte[]> pngs = new ArrayList<>();
+
+        try (PdfInput input = PdfInput.heap(content)) {
+            new PageRenderer(input, 2, 36, Long.MAX_VALUE).render(List.of(3, 1, 2), (page, png) -> {
+                written.add(page);
+                pngs.add(png);
+            });
+        }
+
+        assertEquals(List.of(3, 1, 2), written);
+        for (byte[] png : pngs) {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            assertEquals(100, image.getWidth());
+            assertEquals(150, image.getHeight());
+        }
+
+    }
+
+    /**
+     * Three 200 x 300 pages: a red square, a blue square clipped in half, a line of text and an image.
+     */
+    @SneakyThrows
+    static byte[] document() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(outputStream))) {
+            for (int i = 0; i < 3; i++) {
+                PdfCanvas canvas = new PdfCanvas(pdfDocument.addNewPage(new PageSize(200, 300)));
+                canvas.setFillColor(ColorConstants.RED).rectangle(20, 220, 60, 60).fill();
+                canvas.saveState().rectangle(100, 0, 50, 300).clip().endPath()
+                        .setFillColor(ColorConstants.BLUE).rectangle(100, 20, 100, 60).fill().restoreState();
+                canvas.setFillColor(ColorConstants.BLACK).beginText().setFontAndSize(PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD), 16)
+                        .moveText(10, 150).showText("Preview " + (i + 1)).endText();
+                canvas.addImageFittedIntoRectangle(ImageDataFactory.create(Files.readAllBytes(Path.of("src/test/resources/image/image.png"))),
+                        new Rectangle(100, 100, 100, 100), false);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static int rgb(BufferedImage image, int x, int y) {
+        return image.getRGB(x, y) & 0xffffff;
+    }
+
+    private static int darkPixels(BufferedImage image, int x0, int y0, int x1, int y1) {
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int rgb = rgb(image, x, y);
+                if (((rgb >> 16) & 0xff) < 100 && ((rgb >> 8) & 0xff) < 100 && (rgb & 0xff) < 100) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int nonWhitePixels(BufferedImage image, int x0, int y0, int x1, int y1) {
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (rgb(image, x, y) != WHITE) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+}
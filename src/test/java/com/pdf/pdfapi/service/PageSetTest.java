@@ -0,0 +1,63 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.exception.PdfErrorException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageSetTest {
+
+    @Test
+    void resolve_given_unsorted_overlapping_ranges_expect_sorted_unique_pages() {
+
+        BitSet pages = PageSet.parse("8-, 2-4, 3, 10").resolve(10);
+
+        assertEquals("{2, 3, 4, 8, 9, 10}", pages.toString());
+
+    }
+
+    @Test
+    void of_given_expression_and_pages_expect_union() {
+
+        PageSet pageSet = PageSet.of("1-2", 5, 1);
+
+        assertEquals("{1, 2, 5}", pageSet.resolve(5).toString());
+        assertEquals("5,1,1-2", pageSet.toString());
+
+    }
+
+    @Test
+    void resolve_given_pages_outside_document_expect_failure() {
+
+        assertThrows(PdfErrorException.class, () -> PageSet.parse("5-12").resolve(10));
+        assertThrows(PdfErrorException.class, () -> PageSet.parse("11-").resolve(10));
+        assertThrows(PdfErrorException.class, () -> PageSet.parse("4-2").resolve(10));
+        assertThrows(PdfErrorException.class, () -> PageSet.of(0).resolve(10));
+
+    }
+
+    @Test
+    void parse_given_invalid_expression_expect_bad_request() {
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> PageSet.parse("1-a")).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> PageSet.of(null, (Integer[]) null)).getStatusCode());
+
+    }
+
+    @Test
+    void pageRanges_given_ranges_expect_given_order_with_duplicates() {
+
+        PageSet pages = PageSet.ranges("10-,2", 3, 4);
+
+        assertEquals(List.of(List.of(10, 11, 12), List.of(2), List.of(3, 4)), pages.pageRanges(12).stream().map(range -> range.getQualifyingPageNums(12)).toList());
+        assertEquals(List.of(10, 11, 12, 2, 3, 4), pages.pageRange(12).getQualifyingPageNums(12));
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class, () -> PageSet.ranges(null, 3, null)).getStatusCode());
+
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelMergerTest {
+
+    private byte[] document;
+
+    @BeforeEach
+    @SneakyThrows
+    public void init() {
+        document = new ClassPathResource("merge/file1.pdf").getContentAsByteArray();
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTree_given_more_sources_than_chunk_size_expect_all_pages_and_no_temporary_files() {
+
+        List<Path> before = temporaryFiles();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        int pages = new ParallelMerger(2, 2).mergeTree(new PdfWriter(outputStream), sources(9), false);
+
+        assertEquals(9 * pages(document), pages);
+        assertEquals(pages, pages(outputStream.toByteArray()));
+        assertEquals(before, temporaryFiles());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTree_given_failing_chunk_expect_failure_and_no_temporary_files() {
+
+        List<Path> before = temporaryFiles();
+        List<ParallelMerger.Source> sources = sources(9);
+        sources.set(6, () -> {
+            throw new IOException("unreadable");
+        });
+
+        assertThrows(IOException.class, () -> new ParallelMerger(2, 2).mergeTree(new PdfWriter(new ByteArrayOutputStream()), sources, false));
+
+        assertEquals(before, temporaryFiles());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTree_given_interrupted_while_chunks_merge_expect_failure_and_no_temporary_files() {
+
+        List<Path> before = temporaryFiles();
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<ParallelMerger.Source> sources = sources(4);
+        // holds up the second chunk, which still produces its intermediate after the merge was interrupted
+        sources.set(2, () -> {
+            opening.countDown();
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    // the chunk is cancelled, but finishes anyway
+                }
+            }
+            return PdfInput.heap(document);
+        });
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread merging = Thread.ofPlatform().start(() -> {
+            try {
+                new ParallelMerger(2, 2).mergeTree(new PdfWriter(new ByteArrayOutputStream()), sources, false);
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+
+        opening.await();
+        merging.interrupt();
+        release.countDown();
+        merging.join(5000);
+
+        assertInstanceOf(PdfErrorException.class, failure.get());
+        assertEquals(before, temporaryFiles());
+
+    }
+
+    private List<ParallelMerger.Source> sources(int count) {
+        ParallelMerger.Source source = () -> PdfInput.heap(document);
+        return new ArrayList<>(Collections.nCopies(count, source));
+    }
+
+    private static int pages(byte[] pdf) throws IOException {
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(pdf)))) {
+            return pdfDocument.getNumberOfPages();
+        }
+    }
+
+    private static List<Path> temporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("pdfapi-merge-")).sorted().toList();
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.WriterProperties;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ParallelSplitterTest {
+
+    @Test
+    @SneakyThrows
+    void split_given_error_in_worker_expect_error_rethrown_instead_of_waiting_for_parts() {
+
+        PdfInput input = spy(PdfInput.heap(Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf"))));
+        // the calling thread plans the parts on the first reader, the workers fail to open theirs
+        doCallRealMethod().doThrow(new OutOfMemoryError("worker")).when(input).newReader();
+        PdfPartSink sink = mock(PdfPartSink.class);
+
+        OutOfMemoryError error = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(OutOfMemoryError.class,
+                () -> new ParallelSplitter(input, 2, new WriterProperties()).split(sink, "splitDocument_", SplitStrategy.pageCount(1))));
+
+        assertEquals("worker", error.getMessage());
+        verifyNoInteractions(sink);
+
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfBufferPoolTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getBuffers().setPooled(true);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void acquire_given_released_buffer_of_same_size_expect_it_back() {
+
+        PdfBufferPool pool = new PdfBufferPool(pdfConfig, meterRegistry);
+
+        byte[] buffer = pool.acquire(10_000);
+        pool.release(buffer);
+
+        assertEquals(16 * 1024, buffer.length);
+        assertSame(buffer, pool.acquire(9_000));
+        assertEquals(PdfBufferPool.MIN_BUFFER, pool.acquire(1).length);
+        assertEquals(1, meterRegistry.get("pdfapi.buffers.requests").tag("result", "hit").counter().count());
+        assertEquals(2, meterRegistry.get("pdfapi.buffers.requests").tag("result", "miss").counter().count());
+
+    }
+
+    @Test
+    void release_given_pool_full_or_buffer_not_pooled_expect_dropped() {
+
+        pdfConfig.getBuffers().setPoolSize(DataSize.ofKilobytes(24));
+        pdfConfig.getBuffers().setMaxBufferSize(DataSize.ofKilobytes(32));
+        PdfBufferPool pool = new PdfBufferPool(pdfConfig, meterRegistry);
+
+        byte[] oversized = pool.acquire(40 * 1024);
+        byte[][] buffers = {pool.acquire(16 * 1024), pool.acquire(8 * 1024), pool.acquire(8 * 1024)};
+        for (byte[] buffer : buffers) {
+            pool.release(buffer);
+        }
+        pool.release(new byte[10_000]);
+        pool.release(oversized);
+
+        assertEquals(40 * 1024, oversized.length);
+        assertEquals(24 * 1024, meterRegistry.get("pdfapi.buffers.pooled").gauge().value());
+
+    }
+
+    @Test
+    void acquire_given_pooling_off_expect_exact_arrays_and_nothing_kept() {
+
+        pdfConfig.getBuffers().setPooled(false);
+        PdfBufferPool pool = new PdfBufferPool(pdfConfig, meterRegistry);
+
+        byte[] buffer = pool.acquire(10_000);
+        pool.release(buffer);
+
+        assertEquals(10_000, buffer.length);
+        assertNotSame(buffer, pool.acquire(10_000));
+        assertEquals(0, meterRegistry.get("pdfapi.buffers.pooled").gauge().value());
+
+    }
+
+    @Test
+    void output_given_content_larger_than_first_buffer_expect_content_and_buffers_kept() {
+
+        PdfBufferPool pool = new PdfBufferPool(pdfConfig, meterRegistry);
+        byte[] content = new byte[50_000];
+        Arrays.fill(content, (byte) 7);
+
+        PdfBufferPool.Output output = pool.output();
+        output.write(1);
+        output.write(content, 0, content.length);
+        output.close();
+        byte[] written = output.toByteArray();
+        output.release();
+
+        assertEquals(50_001, written.length);
+        assertEquals(1, written[0]);
+        assertEquals(7, written[50_000]);
+        // the first buffer, outgrown by the second write, and the one that took its place
+        assertEquals((8 + 64) * 1024, meterRegistry.get("pdfapi.buffers.pooled").gauge().value());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void read_and_forEachChunk_given_upload_expect_its_content() {
+
+        PdfBufferPool pool = new PdfBufferPool(pdfConfig, meterRegistry);
+        byte[] content = new byte[20_000];
+        Arrays.fill(content, (byte) 3);
+        MockMultipartFile file = new MockMultipartFile("file", content);
+
+        PdfBufferPool.Content read = pool.read(file);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        pool.forEachChunk(file, (chunk, length) -> whole.write(chunk, 0, length));
+        pdfConfig.getInput().setMappedThreshold(DataSize.ofBytes(1));
+        ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+        new PdfBufferPool(pdfConfig, meterRegistry).forEachChunk(file, (chunk, length) -> chunked.write(chunk, 0, length));
+
+        assertEquals(32 * 1024, read.buffer().length);
+        assertEquals(content.length, read.length());
+        assertArrayEquals(content, Arrays.copyOf(read.buffer(), read.length()));
+        assertArrayEquals(content, whole.toByteArray());
+        assertArrayEquals(content, chunked.toByteArray());
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfConcurrencyLimiterTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getConcurrency().setLimits(Map.of("merge", 2));
+        pdfConfig.getConcurrency().setAcquireTimeout(Duration.ofMillis(10));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void acquire_given_limit_reached_expect_too_many_requests_until_a_slot_is_released() {
+
+        PdfConcurrencyLimiter limiter = new PdfConcurrencyLimiter(pdfConfig, meterRegistry);
+
+        Runnable first = limiter.acquire("merge");
+        limiter.acquire("merge");
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> limiter.acquire("merge"));
+        first.run();
+        // releasing twice must not free a slot the operation no longer holds
+        first.run();
+        limiter.acquire("merge");
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatusCode());
+        assertThrows(ResponseStatusException.class, () -> limiter.acquire("merge"));
+        assertEquals(2, meterRegistry.get("pdfapi.concurrency.rejected").tag("operation", "merge").counter().count());
+        assertEquals(0, meterRegistry.get("pdfapi.concurrency.available").tag("operation", "merge").gauge().value());
+
+    }
+
+    @Test
+    void acquire_given_operation_without_limit_expect_never_blocked() {
+
+        PdfConcurrencyLimiter limiter = new PdfConcurrencyLimiter(pdfConfig, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("extract");
+        }
+
+        assertTrue(meterRegistry.find("pdfapi.concurrency.wait").tag("operation", "extract").timers().isEmpty());
+
+    }
+
+    @Test
+    void acquire_given_slot_released_while_waiting_expect_waiter_admitted() throws Exception {
+
+        pdfConfig.getConcurrency().setAcquireTimeout(Duration.ofSeconds(10));
+        PdfConcurrencyLimiter limiter = new PdfConcurrencyLimiter(pdfConfig, meterRegistry);
+        Runnable first = limiter.acquire("merge");
+        limiter.acquire("merge");
+
+        CompletableFuture<Runnable> waiter = CompletableFuture.supplyAsync(() -> limiter.acquire("merge"));
+        Thread.sleep(50);
+        assertFalse(waiter.isDone());
+        first.run();
+
+        assertNotNull(waiter.get(5, TimeUnit.SECONDS));
+
+    }
+
+}
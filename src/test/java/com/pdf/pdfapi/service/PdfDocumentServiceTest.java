@@ -0,0 +1,171 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PdfDocumentServiceTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PdfDocumentService pdfDocumentService;
+
+    private MockMultipartFile file;
+
+    @BeforeEach
+    @SneakyThrows
+    public void init() {
+        pdfConfig = new PdfConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        pdfDocumentService = new PdfDocumentService(pdfConfig, new PdfInputFactory(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry)), meterRegistry);
+        file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        pdfDocumentService.shutdown();
+    }
+
+    @Test
+    @SneakyThrows
+    void register_given_pdf_expect_handle_until_deleted() {
+
+        PdfDocumentHandle handle = pdfDocumentService.register(file);
+
+        assertEquals(2, handle.getPages());
+        assertEquals(file.getSize(), handle.getSize());
+        assertThat(pdfDocumentService.find(handle.getId())).containsSame(handle);
+
+        pdfDocumentService.delete(handle.getId());
+
+        assertThat(pdfDocumentService.find(handle.getId())).isEmpty();
+        assertThrows(PdfErrorException.class, () -> handle.read(pdfDocument -> pdfDocument.getNumberOfPages()));
+
+    }
+
+    @Test
+    void register_given_invalid_document_expect_failure() {
+
+        assertThrows(PdfErrorException.class, () -> pdfDocumentService.register(new MockMultipartFile("file", "not a pdf".getBytes())));
+
+    }
+
+    @Test
+    void register_given_document_larger_than_memory_size_expect_payload_too_large() {
+
+        pdfConfig.getDocuments().setMemorySize(DataSize.ofBytes(file.getSize() - 1));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> pdfDocumentService.register(file));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exception.getStatusCode());
+
+    }
+
+    @Test
+    void register_given_memory_size_exceeded_expect_least_recently_used_evicted() {
+
+        pdfConfig.getDocuments().setMemorySize(DataSize.ofBytes(file.getSize() * 2));
+
+        PdfDocumentHandle first = pdfDocumentService.register(file);
+        PdfDocumentHandle second = pdfDocumentService.register(file);
+        PdfDocumentHandle third = pdfDocumentService.register(file);
+
+        assertThat(pdfDocumentService.find(first.getId())).isEmpty();
+        assertThat(pdfDocumentService.find(second.getId())).isPresent();
+        assertThat(pdfDocumentService.find(third.getId())).isPresent();
+        assertEquals(1, meterRegistry.get("pdfapi.documents.evictions").tag("reason", "memory").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void find_given_document_idle_longer_than_ttl_expect_empty() {
+
+        pdfConfig.getDocuments().setTtl(Duration.ZERO);
+
+        PdfDocumentHandle handle = pdfDocumentService.register(file);
+        Thread.sleep(10);
+
+        assertThat(pdfDocumentService.find(handle.getId())).isEmpty();
+        assertEquals(1, meterRegistry.get("pdfapi.documents.evictions").tag("reason", "ttl").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void find_given_expired_document_in_use_expect_empty_without_waiting_for_it() {
+
+        pdfConfig.getDocuments().setTtl(Duration.ZERO);
+
+        PdfDocumentHandle handle = pdfDocumentService.register(file);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = Thread.ofPlatform().start(() -> hold(handle, reading, release));
+
+        try {
+            reading.await();
+            Thread.sleep(10);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThat(pdfDocumentService.find(handle.getId())).isEmpty());
+        } finally {
+            release.countDown();
+            reader.join();
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void register_given_document_idle_longer_than_ttl_expect_purged_without_further_requests() {
+
+        pdfDocumentService.shutdown();
+        pdfConfig.getDocuments().setTtl(Duration.ofMillis(1));
+        pdfConfig.getDocuments().setPurgeInterval(Duration.ofMillis(20));
+        meterRegistry = new SimpleMeterRegistry();
+        pdfDocumentService = new PdfDocumentService(pdfConfig, new PdfInputFactory(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry)), meterRegistry);
+
+        PdfDocumentHandle handle = pdfDocumentService.register(file);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (meterRegistry.get("pdfapi.documents.count").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, meterRegistry.get("pdfapi.documents.count").gauge().value());
+        assertEquals(1, meterRegistry.get("pdfapi.documents.evictions").tag("reason", "ttl").counter().count());
+        assertThrows(PdfErrorException.class, () -> handle.read(pdfDocument -> pdfDocument.getNumberOfPages()));
+
+    }
+
+    @SneakyThrows
+    private static void hold(PdfDocumentHandle handle, CountDownLatch reading, CountDownLatch release) {
+        handle.read(pdfDocument -> {
+            reading.countDown();
+            awaitQuietly(release);
+            return null;
+        });
+    }
+
+    @SneakyThrows
+    private static void awaitQuietly(CountDownLatch latch) {
+        latch.await();
+    }
+
+}
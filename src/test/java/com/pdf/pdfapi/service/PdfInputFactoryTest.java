@@ -0,0 +1,99 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PdfInputFactoryTest {
+
+    private PdfConfig pdfConfig;
+
+    private PdfInputFactory pdfInputFactory;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfInputFactory = new PdfInputFactory(pdfConfig, new PdfBufferPool(pdfConfig, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    @SneakyThrows
+    void open_given_file_below_threshold_expect_heap_input() {
+
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        try (PdfInput input = pdfInputFactory.open(file); PdfDocument document = new PdfDocument(input.newReader())) {
+            assertThat(input.isMapped()).isFalse();
+            assertEquals(2, document.getNumberOfPages());
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void open_given_file_above_threshold_expect_mapped_input_and_spooled_file_deleted_on_close() {
+
+        pdfConfig.getInput().setMappedThreshold(DataSize.ofBytes(1));
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+        long spooledFilesBefore = countSpooledFiles();
+
+        PdfInput input = pdfInputFactory.open(file);
+        assertThat(input.isMapped()).isTrue();
+        assertEquals(spooledFilesBefore + 1, countSpooledFiles());
+
+        try (PdfDocument first = new PdfDocument(input.newReader()); PdfDocument second = new PdfDocument(input.newReader())) {
+            assertEquals(2, first.getNumberOfPages());
+            assertEquals(2, second.getNumberOfPages());
+        }
+
+        input.close();
+        assertEquals(spooledFilesBefore, countSpooledFiles());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void open_given_pooled_buffers_expect_input_in_larger_buffer_released_once_on_close() {
+
+        pdfConfig.getBuffers().setPooled(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pdfInputFactory = new PdfInputFactory(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry));
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        PdfInput input = pdfInputFactory.open(file);
+        try (PdfDocument document = new PdfDocument(input.newReader())) {
+            assertEquals(2, document.getNumberOfPages());
+        }
+        input.close();
+        input.close();
+        double pooled = meterRegistry.get("pdfapi.buffers.pooled").gauge().value();
+
+        try (PdfInput again = pdfInputFactory.open(file); PdfDocument document = new PdfDocument(again.newReader())) {
+            assertEquals(2, document.getNumberOfPages());
+        }
+
+        assertEquals(Integer.highestOneBit((int) file.getSize() - 1) * 2, pooled);
+        assertEquals(1, meterRegistry.get("pdfapi.buffers.requests").tag("result", "hit").counter().count());
+
+    }
+
+    @SneakyThrows
+    private long countSpooledFiles() {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("pdfapi-")).count();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PdfJobServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PdfJobService pdfJobService;
+
+    private PdfConfig pdfConfig;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getJobs().setWorkers(1);
+        pdfConfig.getJobs().setQueueCapacity(1);
+        meterRegistry = new SimpleMeterRegistry();
+        pdfJobService = new PdfJobService(pdfConfig, meterRegistry);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        pdfJobService.shutdown();
+    }
+
+    @Test
+    void submit_given_work_expect_result_available_after_completion() throws Exception {
+
+        MultipartFile file = new MockMultipartFile("file", "content".getBytes());
+
+        PdfJob job = pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[]{file},
+                (outputStream, files) -> outputStream.write(files[0].getBytes()));
+
+        awaitFinished(job);
+
+        assertEquals(PdfJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals("content", Files.readString(job.getResult()));
+        assertEquals(1, meterRegistry.get("pdfapi.jobs.queue.wait").timer().count());
+        assertEquals(1, meterRegistry.get("pdfapi.jobs.run").tag("outcome", "success").timer().count());
+
+    }
+
+    @Test
+    void submit_given_failing_work_expect_failed_job() throws Exception {
+
+        PdfJob job = pdfJobService.submit("split", "split.zip", "application/zip", new MultipartFile[0],
+                (outputStream, files) -> {
+                    throw new IllegalStateException("boom");
+                });
+
+        awaitFinished(job);
+
+        assertEquals(PdfJob.Status.FAILED, job.getStatus());
+        assertEquals("boom", job.getError());
+
+    }
+
+    @Test
+    void submit_given_full_queue_expect_too_many_requests() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        PdfJobService.Work blocking = (outputStream, files) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        PdfJob running = pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[0], blocking);
+        PdfJob queued = pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[0], blocking);
+
+        MultipartFile rejected = spy(new MockMultipartFile("file", "content".getBytes()));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[]{rejected}, blocking));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatusCode());
+        // rejected before its upload was copied to disk
+        verify(rejected, never()).transferTo(any(File.class));
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+        assertThat(pdfJobService.find(queued.getId())).isPresent();
+
+    }
+
+    @Test
+    void delete_given_finished_job_expect_job_and_result_removed() throws Exception {
+
+        PdfJob job = pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[0],
+                (outputStream, files) -> outputStream.write(1));
+        awaitFinished(job);
+
+        pdfJobService.delete(job.getId());
+
+        assertThat(pdfJobService.find(job.getId())).isEmpty();
+        assertThat(Files.exists(job.getResult())).isFalse();
+
+    }
+
+    @Test
+    void submit_given_result_ttl_elapsed_expect_job_and_result_purged_without_further_requests() throws Exception {
+
+        pdfJobService.shutdown();
+        pdfConfig.getJobs().setResultTtl(Duration.ofMillis(1));
+        pdfConfig.getJobs().setPurgeInterval(Duration.ofMillis(20));
+        pdfJobService = new PdfJobService(pdfConfig, new SimpleMeterRegistry());
+
+        PdfJob job = pdfJobService.submit("merge", "merged.pdf", "application/pdf", new MultipartFile[0],
+                (outputStream, files) -> outputStream.write(1));
+        awaitFinished(job);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (pdfJobService.find(job.getId()).isPresent() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(pdfJobService.find(job.getId())).isEmpty();
+        assertThat(Files.exists(job.getResult())).isFalse();
+
+    }
+
+    private void awaitFinished(PdfJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertThat(job.isFinished()).isTrue();
+    }
+
+}
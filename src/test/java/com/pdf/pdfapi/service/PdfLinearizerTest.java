@@ -0,0 +1,122 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@DisabledOnOs(OS.WINDOWS)
+class PdfLinearizerTest {
+
+    @TempDir
+    private Path directory;
+
+    private PdfConfig pdfConfig;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getOutput().setLinearize(true);
+    }
+
+    @Test
+    void write_given_linearize_disabled_expect_document_written_directly() {
+
+        pdfConfig.getOutput().setLinearize(false);
+        pdfConfig.getOutput().setQpdf(directory.resolve("missing").toString());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        new PdfLinearizer(pdfConfig, new SimpleMeterRegistry()).write(outputStream, out -> write(out, "document"));
+
+        assertEquals("document", outputStream.toString());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void write_given_linearize_enabled_expect_qpdf_output() {
+
+        // stands in for qpdf: writes the input to the output behind a marker
+        pdfConfig.getOutput().setQpdf(script("linearized.sh", "{ printf 'linearized '; cat \"$2\"; } > \"$3\"").toString());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        new PdfLinearizer(pdfConfig, meterRegistry).write(outputStream, out -> write(out, "document"));
+
+        assertEquals("linearized document", outputStream.toString());
+        assertEquals(1, meterRegistry.get("pdfapi.output.linearize").timer().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void write_given_qpdf_fails_expect_failure_with_its_message() {
+
+        pdfConfig.getOutput().setQpdf(script("failing.sh", "echo 'not a PDF file'; exit 2").toString());
+        PdfLinearizer pdfLinearizer = new PdfLinearizer(pdfConfig, new SimpleMeterRegistry());
+
+        PdfErrorException e = assertThrows(PdfErrorException.class, () -> pdfLinearizer.write(new ByteArrayOutputStream(), out -> write(out, "document")));
+
+        assertThat(e.getMessage()).contains("exit code 2").contains("not a PDF file");
+
+    }
+
+    @Test
+    @SneakyThrows
+    void write_given_real_qpdf_expect_linearized_document() {
+
+        assumeTrue(qpdfInstalled(), "qpdf is not installed");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] original = Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf"));
+
+        new PdfLinearizer(pdfConfig, new SimpleMeterRegistry()).write(outputStream, out -> write(out, original));
+
+        // the linearization dictionary must be the first object in the file
+        assertThat(new String(outputStream.toByteArray(), 0, 1024)).contains("/Linearized");
+
+    }
+
+    private static boolean qpdfInstalled() {
+        try {
+            return new ProcessBuilder("qpdf", "--version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    private Path script(String name, String body) throws IOException {
+        Path script = directory.resolve(name);
+        Files.writeString(script, "#!/bin/sh\n" + body + "\n");
+        assertTrue(script.toFile().setExecutable(true));
+        return script;
+    }
+
+    private static void write(OutputStream outputStream, String content) {
+        write(outputStream, content.getBytes());
+    }
+
+    private static void write(OutputStream outputStream, byte[] content) {
+        try {
+            outputStream.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PdfOutputRetentionTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PdfOutputStorage storage;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getRetention().setEnabled(false);
+        meterRegistry = new SimpleMeterRegistry();
+        storage = mock(PdfOutputStorage.class);
+    }
+
+    @Test
+    void sweep_given_documents_older_than_their_ttl_expect_deleted() throws IOException {
+
+        pdfConfig.getRetention().setTtl(Duration.ofHours(3));
+        pdfConfig.getRetention().getOperationTtl().put("extract", Duration.ofHours(1));
+        when(storage.list()).thenReturn(List.of(
+                file("extractedPages_1.pdf", 10, Duration.ofMinutes(30)),
+                file("merged_1.pdf", 20, Duration.ofHours(2)),
+                file("extractedPages_2.pdf", 30, Duration.ofHours(2)),
+                file("merged_2.pdf", 40, Duration.ofHours(4))));
+
+        new PdfOutputRetention(pdfConfig, storage, meterRegistry).sweep();
+
+        verify(storage).delete("extractedPages_2.pdf");
+        verify(storage).delete("merged_2.pdf");
+        verify(storage, times(2)).delete(any());
+        assertEquals(2, meterRegistry.get("pdfapi.retention.deleted").tag("reason", "ttl").counter().count());
+        assertEquals(70, meterRegistry.get("pdfapi.retention.reclaimed").tag("reason", "ttl").counter().count());
+        assertEquals(30, meterRegistry.get("pdfapi.retention.stored").gauge().value());
+        assertEquals(1, meterRegistry.get("pdfapi.retention.sweep").timer().count());
+
+    }
+
+    @Test
+    void sweep_given_documents_exceeding_max_size_expect_oldest_deleted() throws IOException {
+
+        pdfConfig.getRetention().setMaxSize(DataSize.ofBytes(100));
+        when(storage.list()).thenReturn(List.of(
+                file("merged_4.pdf", 40, Duration.ofMinutes(1)),
+                file("merged_3.pdf", 40, Duration.ofMinutes(2)),
+                file("merged_2.pdf", 40, Duration.ofMinutes(3)),
+                file("merged_1.pdf", 10, Duration.ofMinutes(4))));
+
+        new PdfOutputRetention(pdfConfig, storage, meterRegistry).sweep();
+
+        // the oldest document would still fit, but is older than one that did not
+        verify(storage).delete("merged_2.pdf");
+        verify(storage).delete("merged_1.pdf");
+        verify(storage, times(2)).delete(any());
+        assertEquals(50, meterRegistry.get("pdfapi.retention.reclaimed").tag("reason", "size").counter().count());
+        assertEquals(80, meterRegistry.get("pdfapi.retention.stored").gauge().value());
+
+    }
+
+    @Test
+    void sweep_given_failing_delete_or_listing_expect_no_exception_and_others_deleted() throws IOException {
+
+        pdfConfig.getRetention().setTtl(Duration.ofHours(1));
+        when(storage.list())
+                .thenReturn(List.of(file("merged_2.pdf", 10, Duration.ofHours(2)), file("merged_1.pdf", 20, Duration.ofHours(2))))
+                .thenThrow(new IOException("unreachable"));
+        doThrow(new IOException("locked")).when(storage).delete("merged_2.pdf");
+        PdfOutputRetention retention = new PdfOutputRetention(pdfConfig, storage, meterRegistry);
+
+        retention.sweep();
+        retention.sweep();
+
+        verify(storage).delete("merged_1.pdf");
+        assertEquals(20, meterRegistry.get("pdfapi.retention.reclaimed").tag("reason", "ttl").counter().count());
+        assertEquals(2, meterRegistry.get("pdfapi.retention.sweep").timer().count());
+
+    }
+
+    private static PdfFile file(String name, long size, Duration age) {
+        return new PdfFile(name, size, Instant.now().minus(age));
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PdfOutputWriterTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InMemoryPdfOutputStorage storage;
+
+    private PdfOutputWriter pdfOutputWriter;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getStorage().setWriters(1);
+        pdfConfig.getStorage().setMaxPendingWrites(2);
+        meterRegistry = new SimpleMeterRegistry();
+        storage = spy(new InMemoryPdfOutputStorage());
+        pdfOutputWriter = new PdfOutputWriter(pdfConfig, storage, meterRegistry);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        pdfOutputWriter.shutdown();
+    }
+
+    @Test
+    void write_given_slow_storage_expect_return_before_stored_and_wait_when_max_pending_reached() throws Exception {
+
+        CountDownLatch storageBlocked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            storageBlocked.await();
+            return invocation.callRealMethod();
+        }).when(storage).write(any(), any());
+
+        pdfOutputWriter.write("first.pdf", new byte[]{1});
+        pdfOutputWriter.write("second.pdf", new byte[]{2});
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> pdfOutputWriter.write("third.pdf", new byte[]{3}));
+        Thread.sleep(50);
+
+        assertTrue(storage.list().isEmpty());
+        assertFalse(third.isDone());
+        assertEquals(2, meterRegistry.get("pdfapi.storage.pending").gauge().value());
+
+        storageBlocked.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        pdfOutputWriter.flush();
+
+        assertThat(storage.list()).extracting(PdfFile::getName).containsExactlyInAnyOrder("first.pdf", "second.pdf", "third.pdf");
+        assertEquals(3, meterRegistry.get("pdfapi.storage.write").tag("outcome", "success").timer().count());
+
+    }
+
+    @Test
+    void write_given_max_pending_size_reached_expect_wait_until_stored() throws Exception {
+
+        pdfOutputWriter.shutdown();
+        pdfConfig.getStorage().setMaxPendingWrites(8);
+        pdfConfig.getStorage().setMaxPendingSize(DataSize.ofKilobytes(100));
+        meterRegistry = new SimpleMeterRegistry();
+        pdfOutputWriter = new PdfOutputWriter(pdfConfig, storage, meterRegistry);
+        CountDownLatch storageBlocked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            storageBlocked.await();
+            return invocation.callRealMethod();
+        }).when(storage).write(any(), any());
+
+        pdfOutputWriter.write("first.pdf", new byte[60 * 1024]);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> pdfOutputWriter.write("second.pdf", new byte[60 * 1024]));
+        // larger than the whole budget, so it waits for everything else
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> pdfOutputWriter.write("third.pdf", new byte[200 * 1024]));
+        Thread.sleep(50);
+        boolean waiting = !second.isDone() && !third.isDone();
+        double pendingSize = meterRegistry.get("pdfapi.storage.pending.size").gauge().value();
+        storageBlocked.countDown();
+        CompletableFuture.allOf(second, third).get(5, TimeUnit.SECONDS);
+        pdfOutputWriter.flush();
+
+        assertTrue(waiting);
+        assertEquals(60 * 1024, pendingSize);
+        assertTrue(waiting);
+        assertEquals(60 * 1024, pendingSize);
+        assertThat(storage.list()).extracting(PdfFile::getName).containsExactlyInAnyOrder("first.pdf", "second.pdf", "third.pdf");
+        assertEquals(0, meterRegistry.get("pdfapi.storage.pending.size").gauge().value());
+
+    }
+
+    @Test
+    void write_given_storage_failure_expect_failure_counted_and_later_writes_stored() throws Exception {
+
+        doThrow(new UncheckedIOException(new IOException("disk full"))).when(storage).write(eq("failing.pdf"), any());
+
+        pdfOutputWriter.write("failing.pdf", new byte[]{1});
+        pdfOutputWriter.write("stored.pdf", new byte[]{2});
+        pdfOutputWriter.flush();
+
+        assertThat(storage.list()).extracting(PdfFile::getName).containsExactly("stored.pdf");
+        assertEquals(1, meterRegistry.get("pdfapi.storage.write").tag("outcome", "failure").timer().count());
+
+    }
+
+    @Test
+    void write_given_writer_shut_down_expect_failure_and_pending_released() {
+
+        pdfOutputWriter.shutdown();
+
+        assertThrows(PdfErrorException.class, () -> pdfOutputWriter.write("late.pdf", new byte[]{1}));
+
+        assertEquals(0, meterRegistry.get("pdfapi.storage.pending").gauge().value());
+        assertEquals(0, meterRegistry.get("pdfapi.storage.pending.size").gauge().value());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), pdfOutputWriter::flush);
+        assertThat(storage.list()).isEmpty();
+
+    }
+
+    @Test
+    void uniqueName_given_many_names_in_same_millisecond_expect_no_collision() {
+
+        Set<String> names = new HashSet<>();
+        IntStream.range(0, 10_000).forEach(i -> names.add(PdfOutputWriter.uniqueName("merged_", ".pdf")));
+
+        assertEquals(10_000, names.size());
+        assertThat(names).allMatch(name -> name.matches("merged_\\d{17}_[0-9a-f-]{36}\\.pdf"));
+
+    }
+
+}
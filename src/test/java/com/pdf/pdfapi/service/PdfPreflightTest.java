@@ -0,0 +1,165 @@
+package com.pdf.pdfapi.service;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
+import com.itextpdf.kernel.pdf.*;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PdfPreflightTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void numberOfPages_given_pdf_expect_page_count() {
+
+        PdfPreflight preflight = new PdfPreflight(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+
+        assertEquals(300, preflight.numberOfPages(new MockMultipartFile("file", document(300))));
+        assertEquals(1, meterRegistry.get("pdfapi.preflight").tag("outcome", "accepted").timer().count());
+
+    }
+
+    @Test
+    void numberOfPages_given_corrupt_or_truncated_upload_expect_bad_request() {
+
+        PdfPreflight preflight = new PdfPreflight(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+        byte[] content = document(10);
+
+        PdfErrorException garbage = assertThrows(PdfErrorException.class,
+                () -> preflight.numberOfPages(new MockMultipartFile("file", "garbage.pdf", "application/pdf", "not a pdf".getBytes())));
+        PdfErrorException truncated = assertThrows(PdfErrorException.class,
+                () -> preflight.numberOfPages(new MockMultipartFile("file", "truncated.pdf", "application/pdf", Arrays.copyOf(content, 100))));
+
+        assertEquals(HttpStatus.BAD_REQUEST, garbage.getStatusCode());
+        assertEquals("garbage.pdf is not a readable PDF", garbage.getMessage());
+        assertEquals(HttpStatus.BAD_REQUEST, truncated.getStatusCode());
+        assertEquals(2, meterRegistry.get("pdfapi.preflight").tag("outcome", "rejected").timer().count());
+
+    }
+
+    @Test
+    void numberOfPages_given_large_upload_expect_only_a_few_windows_read() {
+
+        pdfConfig.getInput().setMappedThreshold(DataSize.ofBytes(0));
+        PdfPreflight preflight = new PdfPreflight(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+        byte[] content = document(5000);
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicInteger opened = new AtomicInteger();
+        AtomicInteger windows = new AtomicInteger();
+        MockMultipartFile file = new MockMultipartFile("file", content) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                opened.incrementAndGet();
+                return new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = super.read(b, off, len);
+                        if (read > 0) {
+                            bytesRead.addAndGet(read);
+                            windows.incrementAndGet();
+                        }
+                        return read;
+                    }
+                };
+            }
+        };
+
+        assertEquals(5000, preflight.numberOfPages(file));
+        assertThat(bytesRead.get()).isLessThan(content.length / 2);
+        // windows further on are read from the stream already open
+        assertThat(opened.get()).isLessThan(windows.get());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void numberOfPages_given_large_upload_in_local_file_expect_page_count_without_streaming() {
+
+        pdfConfig.getInput().setMappedThreshold(DataSize.ofBytes(0));
+        PdfPreflight preflight = new PdfPreflight(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+        SpooledMultipartFile file = spy(SpooledMultipartFile.spool(new MockMultipartFile("file", document(5000))));
+        SpooledMultipartFile compressed = spy(SpooledMultipartFile.spool(
+                new MockMultipartFile("file", document(300, new WriterProperties().setFullCompressionMode(true)))));
+
+        try {
+            assertEquals(5000, preflight.numberOfPages(file));
+            assertEquals(300, preflight.numberOfPages(compressed));
+            verify(file, never()).getInputStream();
+            verify(compressed, never()).getInputStream();
+        } finally {
+            file.delete();
+            compressed.delete();
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void quickNumberOfPages_given_incremental_update_or_xref_stream_expect_latest_count_or_fallback() {
+
+        ByteArrayOutputStream updated = new ByteArrayOutputStream();
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfReader(new ByteArrayInputStream(document(10))), new PdfWriter(updated),
+                new StampingProperties().useAppendMode())) {
+            pdfDocument.removePage(1);
+            pdfDocument.removePage(1);
+        }
+        byte[] compressed = document(10, new WriterProperties().setFullCompressionMode(true));
+        RandomAccessSourceFactory factory = new RandomAccessSourceFactory();
+        PdfPreflight preflight = new PdfPreflight(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+
+        assertEquals(OptionalInt.of(8), PdfPreflight.quickNumberOfPages(factory.createSource(updated.toByteArray())));
+        assertEquals(OptionalInt.empty(), PdfPreflight.quickNumberOfPages(factory.createSource(compressed)));
+        assertEquals(10, preflight.numberOfPages(new MockMultipartFile("file", compressed)));
+
+    }
+
+    private static byte[] document(int pages) {
+        return document(pages, new WriterProperties());
+    }
+
+    @SneakyThrows
+    private static byte[] document(int pages, WriterProperties writerProperties) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(outputStream, writerProperties))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                new PdfCanvas(pdfDocument.addNewPage()).beginText().setFontAndSize(font, 12).moveText(36, 800).showText("page " + i).endText();
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+}
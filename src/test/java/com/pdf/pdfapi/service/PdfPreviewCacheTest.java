@@ -0,0 +1,88 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PdfPreviewCacheTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @SneakyThrows
+    void hash_given_same_content_expect_same_hash() {
+
+        PdfPreviewCache cache = new PdfPreviewCache(pdfConfig, meterRegistry);
+
+        assertEquals(cache.hash(new MockMultipartFile("file", "a.pdf", null, "content".getBytes())),
+                cache.hash(new MockMultipartFile("other", "b.pdf", null, "content".getBytes())));
+        assertNotEquals(cache.hash(new MockMultipartFile("file", "content".getBytes())), cache.hash(new MockMultipartFile("file", "other".getBytes())));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void hash_given_upload_below_mapped_threshold_expect_streamed_without_copy() {
+
+        PdfPreviewCache cache = new PdfPreviewCache(pdfConfig, meterRegistry);
+        MockMultipartFile file = spy(new MockMultipartFile("file", "content".getBytes()));
+
+        assertEquals("ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73", cache.hash(file));
+        verify(file, never()).getBytes();
+
+    }
+
+    @Test
+    void get_given_page_cached_at_other_dpi_expect_miss() {
+
+        PdfPreviewCache cache = new PdfPreviewCache(pdfConfig, meterRegistry);
+        byte[] png = new byte[10];
+
+        cache.put("document", 1, 72, png);
+
+        assertSame(png, cache.get("document", 1, 72));
+        assertNull(cache.get("document", 1, 150));
+        assertNull(cache.get("document", 2, 72));
+        assertEquals(1, meterRegistry.get("pdfapi.preview.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2, meterRegistry.get("pdfapi.preview.cache.requests").tag("result", "miss").counter().count());
+
+    }
+
+    @Test
+    void put_given_cache_full_expect_least_recently_used_evicted() {
+
+        pdfConfig.getPreview().setCacheSize(DataSize.ofBytes(300));
+        PdfPreviewCache cache = new PdfPreviewCache(pdfConfig, meterRegistry);
+
+        cache.put("document", 1, 72, new byte[100]);
+        cache.put("document", 2, 72, new byte[100]);
+        cache.put("document", 3, 72, new byte[100]);
+        cache.get("document", 1, 72);
+        cache.put("document", 4, 72, new byte[100]);
+        cache.put("document", 5, 72, new byte[400]);
+
+        assertNotNull(cache.get("document", 1, 72));
+        assertNull(cache.get("document", 2, 72));
+        assertNotNull(cache.get("document", 3, 72));
+        assertNotNull(cache.get("document", 4, 72));
+        assertNull(cache.get("document", 5, 72));
+        assertEquals(300, meterRegistry.get("pdfapi.preview.cache.size").gauge().value());
+
+    }
+
+}
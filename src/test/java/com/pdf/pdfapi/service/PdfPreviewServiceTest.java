@@ -0,0 +1,101 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfPreviewServiceTest {
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PdfPreviewService pdfPreviewService;
+
+    private MockMultipartFile file;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.getPreview().setParallelism(2);
+        meterRegistry = new SimpleMeterRegistry();
+        PdfBufferPool pdfBufferPool = new PdfBufferPool(pdfConfig, meterRegistry);
+        pdfPreviewService = new PdfPreviewService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), new PdfMetrics(meterRegistry),
+                new PdfConcurrencyLimiter(pdfConfig, meterRegistry), new PdfPreflight(pdfConfig, pdfBufferPool, meterRegistry), new PdfPreviewCache(pdfConfig, meterRegistry));
+        file = new MockMultipartFile("file", "document.pdf", "application/pdf", PageRendererTest.document());
+    }
+
+    @Test
+    @SneakyThrows
+    void previewTo_given_single_page_expect_png_and_second_view_from_cache() {
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+
+        pdfPreviewService.previewTo(first, file, PageSet.parse("2"), 144);
+        pdfPreviewService.previewTo(second, file, PageSet.parse("2"), 144);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(first.toByteArray()));
+        assertEquals(400, image.getWidth());
+        assertEquals(600, image.getHeight());
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertEquals(1, meterRegistry.get("pdfapi.operation").tag("operation", "preview").timer().count());
+        assertEquals(1, meterRegistry.get("pdfapi.preview.cache.requests").tag("result", "hit").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void previewTo_given_several_pages_some_cached_expect_zip_in_page_order_rendering_only_the_others() {
+
+        pdfPreviewService.previewTo(new ByteArrayOutputStream(), file, PageSet.parse("2"), 72);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfPreviewService.previewTo(outputStream, file, PageSet.parse("3,1-2,2"), 72);
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+                entries.add(entry.getName());
+                assertEquals(200, ImageIO.read(new ByteArrayInputStream(zipInputStream.readAllBytes())).getWidth());
+            }
+        }
+        assertEquals(List.of("page_1.png", "page_2.png", "page_3.png"), entries);
+        // page 2 was rendered by the first call only
+        assertEquals(3, meterRegistry.get("pdfapi.operation.pages").tag("operation", "preview").summary().totalAmount());
+
+    }
+
+    @Test
+    void validatePreview_given_dpi_or_pages_out_of_range_expect_bad_request() {
+
+        assertEquals(2, pdfPreviewService.validatePreview(file, PageSet.parse("1,1-2"), 72));
+
+        PdfErrorException dpi = assertThrows(PdfErrorException.class, () -> pdfPreviewService.validatePreview(file, PageSet.parse("1"), 301));
+        PdfErrorException page = assertThrows(PdfErrorException.class, () -> pdfPreviewService.validatePreview(file, PageSet.parse("4"), 72));
+
+        assertEquals(HttpStatus.BAD_REQUEST, dpi.getStatusCode());
+        assertEquals("dpi must be between 1 and 300", dpi.getMessage());
+        assertEquals(HttpStatus.BAD_REQUEST, page.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(PdfErrorException.class,
+                () -> pdfPreviewService.validatePreview(file, PageSet.parse("1"), 0)).getStatusCode());
+
+    }
+
+}
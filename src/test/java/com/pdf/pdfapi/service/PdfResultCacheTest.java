@@ -0,0 +1,127 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfResultCacheTest {
+
+    @TempDir
+    private Path outputFolder;
+
+    private PdfConfig pdfConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        pdfConfig = new PdfConfig();
+        pdfConfig.setOutputFolder(outputFolder + "/");
+        pdfConfig.getCache().setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @SneakyThrows
+    void key_given_same_content_expect_same_key_and_different_parameters_expect_different_key() {
+
+        PdfResultCache cache = new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+        MockMultipartFile file = new MockMultipartFile("file", "a.pdf", null, "content".getBytes());
+        MockMultipartFile sameContent = new MockMultipartFile("other", "b.pdf", null, "content".getBytes());
+
+        assertEquals(cache.key("extract", List.of(1, 2), file), cache.key("extract", List.of(1, 2), sameContent));
+        assertNotEquals(cache.key("extract", List.of(1, 2), file), cache.key("extract", List.of(1, 3), file));
+        assertNotEquals(cache.key("extract", List.of(1, 2), file), cache.key("remove", List.of(1, 2), file));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void serve_given_result_not_committed_expect_miss() {
+
+        PdfResultCache cache = new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+
+        try (PdfResultCache.Entry entry = cache.store("key", new ByteArrayOutputStream())) {
+            entry.outputStream().write("partial".getBytes());
+        }
+
+        assertFalse(cache.serve("key", new ByteArrayOutputStream()));
+        try (var files = Files.list(outputFolder.resolve("cache"))) {
+            assertEquals(0, files.count());
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void serve_given_result_too_big_for_memory_expect_hit_from_disk() {
+
+        pdfConfig.getCache().setMemoryEntrySize(DataSize.ofBytes(4));
+        PdfResultCache cache = new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        ByteArrayOutputStream served = new ByteArrayOutputStream();
+
+        store(cache, "key", "result", rendered);
+
+        assertTrue(cache.serve("key", served));
+        assertEquals("result", rendered.toString());
+        assertEquals("result", served.toString());
+        assertEquals(1, meterRegistry.get("pdfapi.cache.requests").tag("tier", "disk").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void store_given_disk_size_exceeded_expect_least_recently_used_evicted() {
+
+        pdfConfig.getCache().setDiskSize(DataSize.ofBytes(10));
+        pdfConfig.getCache().setMemoryEntrySize(DataSize.ofBytes(1));
+        PdfResultCache cache = new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry);
+
+        store(cache, "first", "12345", new ByteArrayOutputStream());
+        store(cache, "second", "12345", new ByteArrayOutputStream());
+        assertTrue(cache.serve("first", new ByteArrayOutputStream()));
+        store(cache, "third", "12345", new ByteArrayOutputStream());
+
+        assertTrue(cache.serve("first", new ByteArrayOutputStream()));
+        assertFalse(cache.serve("second", new ByteArrayOutputStream()));
+        assertTrue(cache.serve("third", new ByteArrayOutputStream()));
+        assertThat(outputFolder.resolve("cache/second")).doesNotExist();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void init_given_results_on_disk_expect_served_after_restart() {
+
+        store(new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), meterRegistry), "key", "result", new ByteArrayOutputStream());
+        ByteArrayOutputStream served = new ByteArrayOutputStream();
+
+        assertTrue(new PdfResultCache(pdfConfig, new PdfBufferPool(pdfConfig, meterRegistry), new SimpleMeterRegistry()).serve("key", served));
+        assertEquals("result", served.toString());
+
+    }
+
+    @SneakyThrows
+    private void store(PdfResultCache cache, String key, String content, ByteArrayOutputStream outputStream) {
+        try (PdfResultCache.Entry entry = cache.store(key, outputStream)) {
+            entry.outputStream().write(content.getBytes());
+            entry.outputStream().close();
+            entry.commit();
+        }
+    }
+
+}
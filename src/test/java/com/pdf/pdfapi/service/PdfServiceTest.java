@@ -1,45 +1,90 @@
 package com.pdf.pdfapi.service;
 
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfOutline;
 import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.kernel.pdf.navigation.PdfExplicitDestination;
 import com.pdf.pdfapi.config.PdfConfig;
 import com.pdf.pdfapi.exception.PdfErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class PdfServiceTest {
 
+    private static final String MULTIPART = "multipart/form-data; boundary=boundary";
+
+    // stored documents are spread over subfolders, so only their names tell their order
+    private static final Comparator<String> BY_FILE_NAME = Comparator.comparing(fileName -> Path.of(fileName).getFileName());
+
     @Mock
     private PdfConfig pdfConfig;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
+
     private PdfService pdfService;
 
+    private PdfOutputWriter pdfOutputWriter;
+
+    private PdfBufferPool pdfBufferPool;
+
     @BeforeEach
     public void init() {
         deleteTemporaryFiles();
         lenient().when(pdfConfig.getOutputFolder()).thenReturn("./output/");
+        lenient().when(pdfConfig.getInput()).thenReturn(new PdfConfig.Input());
+        lenient().when(pdfConfig.getBuffers()).thenReturn(new PdfConfig.Buffers());
+        lenient().when(pdfConfig.getOutput()).thenReturn(new PdfConfig.Output());
+        lenient().when(pdfConfig.getSplit()).thenReturn(new PdfConfig.Split());
+        lenient().when(pdfConfig.getMerge()).thenReturn(new PdfConfig.Merge());
+        lenient().when(pdfConfig.getImages()).thenReturn(new PdfConfig.Images());
+        lenient().when(pdfConfig.getConcurrency()).thenReturn(new PdfConfig.Concurrency());
+        lenient().when(pdfConfig.getStorage()).thenReturn(new PdfConfig.Storage());
+        PdfConfig.Cache cache = new PdfConfig.Cache();
+        cache.setEnabled(false);
+        lenient().when(pdfConfig.getCache()).thenReturn(cache);
+        meterRegistry = new SimpleMeterRegistry();
+        pdfBufferPool = new PdfBufferPool(pdfConfig, meterRegistry);
+        pdfOutputWriter = new PdfOutputWriter(pdfConfig, new LocalPdfOutputStorage(pdfConfig), meterRegistry);
+        pdfService = pdfService();
     }
 
     @Test
@@ -69,6 +114,90 @@ class PdfServiceTest {
 
     }
 
+    @Test
+    @SneakyThrows
+    void merge_and_split_given_pooled_buffers_expect_same_documents_and_buffers_reused() {
+
+        PdfConfig.Buffers buffers = new PdfConfig.Buffers();
+        buffers.setPooled(true);
+        when(pdfConfig.getBuffers()).thenReturn(buffers);
+        pdfBufferPool = new PdfBufferPool(pdfConfig, meterRegistry);
+        pdfService = pdfService();
+        MockMultipartFile file1 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        MockMultipartFile file2 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/merge/file2.pdf")));
+        MockMultipartFile original = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        pdfService.merge(file1, file2);
+        pdfService.split(original, 1);
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        pdfService.mergeTo(merged, file1, file2);
+
+        List<String> fileNames = getFileNames();
+        compareFiles("src/test/resources/merge/merged_file.pdf", fileNames.stream().filter(name -> name.contains("merged_")).findFirst().orElse(""));
+        assertEquals(pdfToText("src/test/resources/merge/merged_file.pdf"), pdfToText(merged.toByteArray()));
+        assertEquals(2, fileNames.stream().filter(name -> name.contains("splitDocument_")).count());
+        assertThat(meterRegistry.get("pdfapi.buffers.requests").tag("result", "hit").counter().count()).isGreaterThan(0);
+
+    }
+
+    @Test
+    @SneakyThrows
+    void merge_given_parallel_engine_expect_same_document_as_sequential_merge() {
+
+        MultipartFile[] files = new MultipartFile[7];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = mock(MultipartFile.class);
+            when(files[i].getBytes()).thenReturn(Files.readAllBytes(Path.of(i % 2 == 0 ? "src/test/resources/merge/file1.pdf" : "src/test/resources/merge/file2.pdf")));
+        }
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+
+        pdfService.mergeTo(sequential, files);
+
+        PdfConfig.Merge merge = new PdfConfig.Merge();
+        merge.setParallelism(2);
+        merge.setParallelThreshold(2);
+        merge.setChunkSize(2);
+        when(pdfConfig.getMerge()).thenReturn(merge);
+
+        pdfService.mergeTo(parallel, files);
+
+        assertThat(pdfToText(parallel.toByteArray())).isNotBlank().isEqualTo(pdfToText(sequential.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_each_optimization_expect_same_document_and_smaller_output() {
+
+        MultipartFile file1 = mock(MultipartFile.class);
+        MultipartFile file2 = mock(MultipartFile.class);
+        byte[] content = Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf"));
+
+        when(file1.getBytes()).thenReturn(content);
+        when(file2.getBytes()).thenReturn(content);
+
+        PdfConfig.Output output = new PdfConfig.Output();
+        when(pdfConfig.getOutput()).thenReturn(output);
+        List<byte[]> results = new ArrayList<>();
+        for (PdfConfig.Output.Optimization optimization : PdfConfig.Output.Optimization.values()) {
+            output.setOptimization(optimization);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            pdfService.mergeTo(outputStream, file1, file2);
+            results.add(outputStream.toByteArray());
+        }
+
+        byte[] none = results.get(0);
+        byte[] compressed = results.get(1);
+        byte[] smart = results.get(2);
+        assertEquals(pdfToText(none), pdfToText(compressed));
+        assertEquals(pdfToText(none), pdfToText(smart));
+        assertThat(compressed.length).isLessThanOrEqualTo(none.length);
+        // both inputs embed the same fonts and images, which smart mode writes only once
+        assertThat(smart.length).isLessThan(compressed.length);
+
+    }
+
     @Test
     @SneakyThrows
     void split_given_one_file_expect_multiple_files() {
@@ -79,8 +208,33 @@ class PdfServiceTest {
 
         pdfService.split(originalFile, 1);
 
-        compareFiles("src/test/resources/split/splitDocument_1.pdf", getFileNames().stream().min(Comparator.naturalOrder()).orElse(""));
-        compareFiles("src/test/resources/split/splitDocument_2.pdf", getFileNames().stream().max(Comparator.naturalOrder()).orElse(""));
+        compareFiles("src/test/resources/split/splitDocument_1.pdf", getFileNames().stream().min(BY_FILE_NAME).orElse(""));
+        compareFiles("src/test/resources/split/splitDocument_2.pdf", getFileNames().stream().max(BY_FILE_NAME).orElse(""));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void split_given_parallelism_expect_same_parts_as_sequential_split() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        PdfConfig.Split split = new PdfConfig.Split();
+        split.setParallelism(4);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(pdfConfig.getSplit()).thenReturn(split);
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        pdfService.split(originalFile, 1);
+        pdfService.splitTo(outputStream, originalFile, 1);
+
+        compareFiles("src/test/resources/split/splitDocument_1.pdf", getFileNames().stream().min(BY_FILE_NAME).orElse(""));
+        compareFiles("src/test/resources/split/splitDocument_2.pdf", getFileNames().stream().max(BY_FILE_NAME).orElse(""));
+
+        List<byte[]> parts = unzip(outputStream.toByteArray());
+        assertEquals(2, parts.size());
+        assertEquals(pdfToText("src/test/resources/split/splitDocument_1.pdf"), pdfToText(parts.get(0)));
+        assertEquals(pdfToText("src/test/resources/split/splitDocument_2.pdf"), pdfToText(parts.get(1)));
 
     }
 
@@ -126,6 +280,695 @@ class PdfServiceTest {
 
     }
 
+    @Test
+    @SneakyThrows
+    void convertImageToPDF_given_several_images_expect_one_file_per_image() {
+
+        MultipartFile image1 = mock(MultipartFile.class);
+        MultipartFile image2 = mock(MultipartFile.class);
+        byte[] content = Files.readAllBytes(Path.of("src/test/resources/image/image.png"));
+
+        when(image1.getBytes()).thenReturn(content);
+        when(image2.getBytes()).thenReturn(content);
+
+        pdfService.convertImageToPDF(image1, image2);
+
+        assertThat(getFileNames()).hasSize(2).allMatch(fileName -> fileName.endsWith(".pdf"));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void convertImageToPDF_given_single_document_expect_one_page_per_image() {
+
+        MultipartFile[] images = new MultipartFile[3];
+        byte[] content = Files.readAllBytes(Path.of("src/test/resources/image/image.png"));
+        for (int i = 0; i < images.length; i++) {
+            images[i] = mock(MultipartFile.class);
+            when(images[i].getBytes()).thenReturn(content);
+        }
+
+        pdfService.convertImageToPDF(true, images);
+
+        List<String> fileNames = getFileNames();
+        assertThat(fileNames).hasSize(1);
+        try (PdfDocument document = new PdfDocument(new PdfReader(fileNames.get(0)))) {
+            assertEquals(3, document.getNumberOfPages());
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void convertImageToPDFTo_given_parallel_decoding_expect_every_image_in_order() {
+
+        PdfConfig.Images parallelImages = new PdfConfig.Images();
+        parallelImages.setParallelism(4);
+        parallelImages.setMaxDecodedImages(2);
+        when(pdfConfig.getImages()).thenReturn(parallelImages);
+
+        MultipartFile[] images = new MultipartFile[5];
+        byte[] content = Files.readAllBytes(Path.of("src/test/resources/image/image.png"));
+        for (int i = 0; i < images.length; i++) {
+            images[i] = mock(MultipartFile.class);
+            when(images[i].getBytes()).thenReturn(content);
+        }
+        ByteArrayOutputStream perImage = new ByteArrayOutputStream();
+        ByteArrayOutputStream singleDocument = new ByteArrayOutputStream();
+
+        pdfService.convertImageToPDFTo(perImage, false, images);
+        pdfService.convertImageToPDFTo(singleDocument, true, images);
+
+        assertEquals(5, unzip(perImage.toByteArray()).size());
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(singleDocument.toByteArray())))) {
+            assertEquals(5, document.getNumberOfPages());
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_two_files_expect_combined_document_in_stream_and_no_file() {
+
+        MultipartFile file1 = mock(MultipartFile.class);
+        MultipartFile file2 = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(file1.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        when(file2.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/merge/file2.pdf")));
+
+        pdfService.mergeTo(outputStream, file1, file2);
+
+        assertEquals(pdfToText("src/test/resources/merge/merged_file.pdf"), pdfToText(outputStream.toByteArray()));
+        assertThat(getFileNames()).isEmpty();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_streamed_upload_expect_combined_document_and_input_recorded() {
+
+        byte[] body = multipart(Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")),
+                Files.readAllBytes(Path.of("src/test/resources/merge/file2.pdf")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfService.mergeTo(outputStream, pdfService.receive(new ByteArrayInputStream(body), MULTIPART));
+
+        assertEquals(pdfToText("src/test/resources/merge/merged_file.pdf"), pdfToText(outputStream.toByteArray()));
+        assertEquals(body.length, meterRegistry.get("pdfapi.operation.input.bytes").tag("operation", "merge").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("pdfapi.operation.documents").tag("operation", "merge").summary().totalAmount());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_streamed_upload_with_one_file_expect_bad_request_before_any_output() {
+
+        byte[] body = multipart(Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        PdfErrorException exception = assertThrows(PdfErrorException.class,
+                () -> pdfService.mergeTo(outputStream, pdfService.receive(new ByteArrayInputStream(body), MULTIPART)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals(0, outputStream.size());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void convertImageToPDFTo_given_streamed_upload_expect_every_image() {
+
+        byte[] image = Files.readAllBytes(Path.of("src/test/resources/image/image.png"));
+        ByteArrayOutputStream perImage = new ByteArrayOutputStream();
+        ByteArrayOutputStream singleDocument = new ByteArrayOutputStream();
+
+        pdfService.convertImageToPDFTo(perImage, false, pdfService.receive(new ByteArrayInputStream(multipart(image, image, image)), MULTIPART));
+        pdfService.convertImageToPDFTo(singleDocument, true, pdfService.receive(new ByteArrayInputStream(multipart(image, image, image)), MULTIPART));
+
+        assertEquals(3, unzip(perImage.toByteArray()).size());
+        assertEquals(3, numberOfPages(singleDocument.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_invalid_document_expect_failure() {
+
+        MultipartFile file1 = mock(MultipartFile.class);
+        MultipartFile file2 = mock(MultipartFile.class);
+
+        when(file1.getBytes()).thenReturn("not a pdf".getBytes());
+
+        assertThrows(PdfErrorException.class, () -> pdfService.mergeTo(new ByteArrayOutputStream(), file1, file2));
+
+        assertEquals(1, meterRegistry.get("pdfapi.operation").tag("operation", "merge").tag("outcome", "failure").timer().count());
+        assertEquals(1, meterRegistry.get("pdfapi.operation.errors").tag("operation", "merge").counter().count());
+        assertEquals(0, meterRegistry.get("pdfapi.operation.in.flight").tag("operation", "merge").gauge().value());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_one_file_expect_operation_metrics() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        byte[] content = Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf"));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(originalFile.getSize()).thenReturn((long) content.length);
+        when(originalFile.getBytes()).thenReturn(content);
+
+        pdfService.extractTo(outputStream, originalFile, 1, 2);
+
+        assertEquals(1, meterRegistry.get("pdfapi.operation").tag("operation", "extract").tag("outcome", "success").timer().count());
+        assertEquals(content.length, meterRegistry.get("pdfapi.operation.input.bytes").tag("operation", "extract").summary().totalAmount());
+        assertEquals(outputStream.size(), meterRegistry.get("pdfapi.operation.output.bytes").tag("operation", "extract").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("pdfapi.operation.pages").tag("operation", "extract").summary().totalAmount());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void mergeTo_given_merge_limit_reached_expect_too_many_requests_while_other_operations_run() {
+
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        PdfConfig.Concurrency concurrency = new PdfConfig.Concurrency();
+        concurrency.setLimits(Map.of("merge", 1));
+        concurrency.setAcquireTimeout(Duration.ofMillis(10));
+        when(pdfConfig.getConcurrency()).thenReturn(concurrency);
+        PdfConcurrencyLimiter limiter = new PdfConcurrencyLimiter(pdfConfig, meterRegistry);
+        pdfService = pdfService(limiter);
+
+        Runnable release = limiter.acquire("merge");
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> pdfService.mergeTo(new ByteArrayOutputStream(), file, file));
+        pdfService.extractTo(new ByteArrayOutputStream(), file, 1, 1);
+        release.run();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exception.getStatusCode());
+        assertThrows(PdfErrorException.class, () -> pdfService.mergeTo(new ByteArrayOutputStream(), file, new MockMultipartFile("file", new byte[]{1})));
+        // the failed merge handed its slot back
+        pdfService.mergeTo(new ByteArrayOutputStream(), file, file);
+        assertEquals(1, meterRegistry.get("pdfapi.concurrency.rejected").tag("operation", "merge").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void merge_extract_remove_given_limit_reached_expect_too_many_requests_and_no_file() {
+
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        PdfConfig.Concurrency concurrency = new PdfConfig.Concurrency();
+        concurrency.setLimits(Map.of("merge", 1, "extract", 1, "remove", 1));
+        concurrency.setAcquireTimeout(Duration.ofMillis(10));
+        when(pdfConfig.getConcurrency()).thenReturn(concurrency);
+        PdfConcurrencyLimiter limiter = new PdfConcurrencyLimiter(pdfConfig, meterRegistry);
+        pdfService = pdfService(limiter);
+
+        List<Runnable> releases = List.of(limiter.acquire("merge"), limiter.acquire("extract"), limiter.acquire("remove"));
+        ResponseStatusException merge = assertThrows(ResponseStatusException.class, () -> pdfService.merge(file, file));
+        MockMultipartFile pages = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+        ResponseStatusException extract = assertThrows(ResponseStatusException.class, () -> pdfService.extract(pages, 1, 1));
+        ResponseStatusException remove = assertThrows(ResponseStatusException.class, () -> pdfService.remove(pages, 1));
+        releases.forEach(Runnable::run);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, merge.getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, extract.getStatusCode());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, remove.getStatusCode());
+        assertThat(getFileNames()).isEmpty();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void merge_extract_remove_given_render_failure_expect_logged_and_no_file() {
+
+        // qpdf cannot be run, so every linearized render fails with a PdfErrorException
+        PdfConfig.Output output = new PdfConfig.Output();
+        output.setLinearize(true);
+        output.setQpdf("./missing-qpdf");
+        when(pdfConfig.getOutput()).thenReturn(output);
+        pdfService = pdfService();
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/merge/file1.pdf")));
+        MockMultipartFile pages = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        pdfService.merge(file, file);
+        pdfService.extract(pages, 1, 1);
+        pdfService.remove(pages, 1);
+
+        assertThat(getFileNames()).isEmpty();
+        assertEquals(3, meterRegistry.get("pdfapi.output.linearize").timer().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_same_input_twice_expect_second_result_from_cache() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+
+        PdfConfig.Cache cache = new PdfConfig.Cache();
+        cache.setEnabled(true);
+        when(pdfConfig.getCache()).thenReturn(cache);
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        pdfService = pdfService();
+
+        pdfService.extractTo(first, originalFile, 2, 2);
+        pdfService.extractTo(second, originalFile, 2, 2);
+
+        assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+        assertEquals(1, meterRegistry.get("pdfapi.operation").tag("operation", "extract").timer().count());
+        assertEquals(1, meterRegistry.get("pdfapi.cache.requests").tag("result", "hit").tag("tier", "memory").counter().count());
+        assertEquals(1, meterRegistry.get("pdfapi.cache.requests").tag("result", "miss").counter().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_removeTo_splitTo_given_registered_document_expect_same_results_as_upload() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        when(pdfConfig.getDocuments()).thenReturn(new PdfConfig.Documents());
+        PdfDocumentService pdfDocumentService = new PdfDocumentService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), meterRegistry);
+        PdfDocumentHandle handle = pdfDocumentService.register(originalFile);
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        ByteArrayOutputStream removed = new ByteArrayOutputStream();
+        ByteArrayOutputStream split = new ByteArrayOutputStream();
+
+        pdfService.extractTo(extracted, handle, 2, 2);
+        pdfService.removeTo(removed, handle, 2);
+        pdfService.splitTo(split, handle, 1);
+
+        assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf"), pdfToText(extracted.toByteArray()));
+        assertEquals(pdfToText("src/test/resources/remove/removedPages.pdf"), pdfToText(removed.toByteArray()));
+        assertEquals(2, unzip(split.toByteArray()).size());
+        assertThrows(PdfErrorException.class, () -> pdfService.removeTo(new ByteArrayOutputStream(), handle, 3));
+
+        pdfDocumentService.shutdown();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_slow_client_of_registered_document_expect_other_operations_not_blocked() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        when(pdfConfig.getDocuments()).thenReturn(new PdfConfig.Documents());
+        PdfDocumentService pdfDocumentService = new PdfDocumentService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), meterRegistry);
+        PdfDocumentHandle handle = pdfDocumentService.register(originalFile);
+        CountDownLatch downloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            @SneakyThrows
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            @SneakyThrows
+            public void write(byte[] b, int off, int len) {
+                downloading.countDown();
+                release.await();
+            }
+        };
+        Thread download = Thread.ofPlatform().start(() -> pdfService.extractTo(slowClient, handle, 1, 1));
+
+        try {
+            downloading.await();
+            ByteArrayOutputStream removed = new ByteArrayOutputStream();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pdfService.removeTo(removed, handle, 2));
+            assertEquals(pdfToText("src/test/resources/remove/removedPages.pdf"), pdfToText(removed.toByteArray()));
+        } finally {
+            release.countDown();
+            download.join();
+            pdfDocumentService.shutdown();
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void splitTo_given_one_file_expect_zip_with_one_entry_per_part() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        pdfService.splitTo(outputStream, originalFile, 1);
+
+        List<byte[]> parts = unzip(outputStream.toByteArray());
+        assertEquals(2, parts.size());
+        assertEquals(pdfToText("src/test/resources/split/splitDocument_1.pdf"), pdfToText(parts.get(0)));
+        assertEquals(pdfToText("src/test/resources/split/splitDocument_2.pdf"), pdfToText(parts.get(1)));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void splitTo_given_bookmarks_expect_one_part_per_top_level_outline_sequentially_and_in_parallel() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", document(5, 2, 4));
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        PdfConfig.Split split = new PdfConfig.Split();
+
+        when(pdfConfig.getSplit()).thenReturn(split);
+
+        pdfService.splitTo(sequential, originalFile, SplitStrategy.bookmarks());
+        split.setParallelism(4);
+        pdfService.splitTo(parallel, originalFile, SplitStrategy.bookmarks());
+
+        for (List<byte[]> parts : List.of(unzip(sequential.toByteArray()), unzip(parallel.toByteArray()))) {
+            assertEquals(List.of(1, 2, 2), parts.stream().map(this::numberOfPages).toList());
+            assertThat(pdfToText(parts.get(1))).startsWith("page 2");
+            assertThat(pdfToText(parts.get(2))).startsWith("page 4");
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void splitTo_given_max_size_expect_every_part_within_budget_sequentially_and_in_parallel() {
+
+        byte[] content = document(20);
+        MockMultipartFile originalFile = new MockMultipartFile("file", content);
+        long maxSize = content.length / 4;
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        PdfConfig.Split split = new PdfConfig.Split();
+
+        when(pdfConfig.getSplit()).thenReturn(split);
+
+        pdfService.splitTo(sequential, originalFile, SplitStrategy.size(maxSize));
+        split.setParallelism(4);
+        pdfService.splitTo(parallel, originalFile, SplitStrategy.size(maxSize));
+
+        for (List<byte[]> parts : List.of(unzip(sequential.toByteArray()), unzip(parallel.toByteArray()))) {
+            assertThat(parts).hasSizeGreaterThanOrEqualTo(4).allMatch(part -> part.length <= maxSize);
+            assertEquals(20, parts.stream().mapToInt(this::numberOfPages).sum());
+            assertEquals(pdfToText(content), parts.stream().map(this::pdfToText).reduce("", String::concat));
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_one_file_expect_pages_in_stream() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        pdfService.extractTo(outputStream, originalFile, 2, 2);
+
+        assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf"), pdfToText(outputStream.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_several_ranges_expect_one_document_with_pages_in_given_order() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        ByteArrayOutputStream firstPage = new ByteArrayOutputStream();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfService.extractTo(firstPage, originalFile, 1, 1);
+        pdfService.extractTo(outputStream, originalFile, PageSet.parse("2,1-1"), false);
+
+        assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf") + pdfToText(firstPage.toByteArray()), pdfToText(outputStream.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_separate_ranges_expect_same_parts_sequentially_and_in_parallel() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        ByteArrayOutputStream firstPage = new ByteArrayOutputStream();
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        PdfConfig.Split split = new PdfConfig.Split();
+
+        when(pdfConfig.getSplit()).thenReturn(split);
+
+        pdfService.extractTo(firstPage, originalFile, 1, 1);
+        pdfService.extractTo(sequential, originalFile, PageSet.parse("2,1-2,1"), true);
+        split.setParallelism(4);
+        pdfService.extractTo(parallel, originalFile, PageSet.parse("2,1-2,1"), true);
+
+        for (List<byte[]> parts : List.of(unzip(sequential.toByteArray()), unzip(parallel.toByteArray()))) {
+            assertEquals(3, parts.size());
+            assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf"), pdfToText(parts.get(0)));
+            assertEquals(pdfToText("src/test/resources/extract/original_file.pdf"), pdfToText(parts.get(1)));
+            assertEquals(pdfToText(firstPage.toByteArray()), pdfToText(parts.get(2)));
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extract_given_separate_ranges_expect_one_file_per_range() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        pdfService.extract(originalFile, PageSet.parse("2,1"), true);
+
+        List<String> fileNames = getFileNames();
+        assertEquals(2, fileNames.size());
+        assertThat(fileNames).allMatch(fileName -> fileName.contains("extractedPages_"));
+        compareFiles("src/test/resources/extract/extractedPages.pdf", fileNames.stream().filter(fileName -> fileName.endsWith("_1.pdf")).findFirst().orElse(""));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extract_remove_given_pages_outside_document_or_corrupt_upload_expect_bad_request_before_any_work() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        MockMultipartFile corruptFile = new MockMultipartFile("file", "corrupt.pdf", "application/pdf", "%PDF-1.7 truncated".getBytes());
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(PdfErrorException.class, () -> pdfService.extract(originalFile, PageSet.range(1, 9), false)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(PdfErrorException.class, () -> pdfService.remove(originalFile, PageSet.parse("1-"))).getStatusCode());
+        PdfErrorException corrupt = assertThrows(PdfErrorException.class, () -> pdfService.split(corruptFile, SplitStrategy.pageCount(1)));
+        assertEquals(HttpStatus.BAD_REQUEST, corrupt.getStatusCode());
+        assertEquals("corrupt.pdf is not a readable PDF", corrupt.getMessage());
+
+        assertThat(getFileNames()).isEmpty();
+        assertThat(meterRegistry.find("pdfapi.operation").timers()).isEmpty();
+        assertEquals(3, meterRegistry.get("pdfapi.preflight").tag("outcome", "accepted").timer().count()
+                + meterRegistry.get("pdfapi.preflight").tag("outcome", "rejected").timer().count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void validatePipeline_given_step_outside_document_expect_bad_request() {
+
+        MockMultipartFile file1 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        MockMultipartFile file2 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+        int pages = numberOfPages(file1.getBytes()) + numberOfPages(file2.getBytes());
+
+        pdfService.validatePipeline(PdfPipelineStep.parse("merge;extract:1-" + pages), file1, file2);
+        PdfErrorException exception = assertThrows(PdfErrorException.class,
+                () -> pdfService.validatePipeline(PdfPipelineStep.parse("merge;remove:1;extract:1-" + pages), file1, file2));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_given_range_beyond_document_expect_failure() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        assertThrows(PdfErrorException.class, () -> pdfService.extractTo(new ByteArrayOutputStream(), originalFile, PageSet.parse("1,3-4"), false));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void removeTo_given_one_file_expect_remaining_pages_in_stream() {
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        pdfService.removeTo(outputStream, originalFile, 2);
+
+        assertEquals(pdfToText("src/test/resources/remove/removedPages.pdf"), pdfToText(outputStream.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void removeTo_given_unsorted_overlapping_pages_expect_each_removed_once() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        ByteArrayOutputStream firstPage = new ByteArrayOutputStream();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfService.extractTo(firstPage, originalFile, 1, 1);
+        pdfService.removeTo(outputStream, originalFile, PageSet.parse("2-, 2, 2-2, 2"));
+
+        assertEquals(pdfToText(firstPage.toByteArray()), pdfToText(outputStream.toByteArray()));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void removeTo_given_pages_beyond_document_or_every_page_expect_failure() {
+
+        MockMultipartFile originalFile = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        assertThrows(PdfErrorException.class, () -> pdfService.removeTo(new ByteArrayOutputStream(), originalFile, PageSet.parse("1-1000")));
+        assertThrows(PdfErrorException.class, () -> pdfService.removeTo(new ByteArrayOutputStream(), originalFile, PageSet.parse("1-")));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTo_removeTo_given_linearize_expect_results_rewritten_by_qpdf() {
+
+        // stands in for qpdf: keeps the document as it is and records each run
+        Path runs = Files.createTempFile("pdfapi-qpdf-", ".log");
+        Path qpdf = Files.createTempFile("pdfapi-qpdf-", ".sh");
+        Files.writeString(qpdf, String.format("#!/bin/sh%necho run >> %s%ncp \"$2\" \"$3\"%n", runs));
+        qpdf.toFile().setExecutable(true);
+        PdfConfig.Output output = new PdfConfig.Output();
+        output.setLinearize(true);
+        output.setQpdf(qpdf.toString());
+        when(pdfConfig.getOutput()).thenReturn(output);
+        pdfService = pdfService();
+
+        MultipartFile originalFile = mock(MultipartFile.class);
+        when(originalFile.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        ByteArrayOutputStream removed = new ByteArrayOutputStream();
+
+        try {
+            pdfService.extractTo(extracted, originalFile, 2, 2);
+            pdfService.removeTo(removed, originalFile, 2);
+
+            assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf"), pdfToText(extracted.toByteArray()));
+            assertEquals(pdfToText("src/test/resources/remove/removedPages.pdf"), pdfToText(removed.toByteArray()));
+            assertEquals(2, Files.readAllLines(runs).size());
+        } finally {
+            Files.delete(runs);
+            Files.delete(qpdf);
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void pipelineTo_given_merge_remove_extract_split_expect_same_parts_as_one_operation_at_a_time() {
+
+        MockMultipartFile file1 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        MockMultipartFile file2 = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/split/original_file.pdf")));
+
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        pdfService.mergeTo(merged, file1, file2);
+        ByteArrayOutputStream removed = new ByteArrayOutputStream();
+        pdfService.removeTo(removed, new MockMultipartFile("file", merged.toByteArray()), 1);
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        pdfService.extractTo(extracted, new MockMultipartFile("file", removed.toByteArray()), 1, 2);
+        ByteArrayOutputStream split = new ByteArrayOutputStream();
+        pdfService.splitTo(split, new MockMultipartFile("file", extracted.toByteArray()), 1);
+
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        pdfService.pipelineTo(pipeline, PdfPipelineStep.parse("merge; remove:1; extract:1-2; split:1"), file1, file2);
+
+        List<byte[]> expected = unzip(split.toByteArray());
+        List<byte[]> actual = unzip(pipeline.toByteArray());
+        assertEquals(2, actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(pdfToText(expected.get(i)), pdfToText(actual.get(i)));
+        }
+        assertEquals(2, meterRegistry.get("pdfapi.operation.pages").tag("operation", "pipeline").summary().totalAmount());
+        assertThat(getFileNames()).isEmpty();
+
+    }
+
+    @Test
+    @SneakyThrows
+    void pipelineTo_given_single_file_without_split_expect_one_document() {
+
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        pdfService.pipelineTo(outputStream, PdfPipelineStep.parse("extract:2-2"), file);
+
+        assertEquals(pdfToText("src/test/resources/extract/extractedPages.pdf"), pdfToText(outputStream.toByteArray()));
+
+    }
+
+    @Test
+    void pipelineTo_given_invalid_pipeline_expect_bad_request() {
+
+        MockMultipartFile file = new MockMultipartFile("file", new byte[0]);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> pdfService.pipelineTo(outputStream, PdfPipelineStep.parse("remove:1"), file, file)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> pdfService.pipelineTo(outputStream, PdfPipelineStep.parse("split:2;extract:1-2"), file)).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> PdfPipelineStep.parse("extract:3")).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> PdfPipelineStep.parse("rotate:90")).getStatusCode());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void pipelineTo_given_pages_beyond_document_expect_failure() {
+
+        MockMultipartFile file = new MockMultipartFile("file", Files.readAllBytes(Path.of("src/test/resources/extract/original_file.pdf")));
+
+        assertThrows(PdfErrorException.class, () -> pdfService.pipelineTo(new ByteArrayOutputStream(), PdfPipelineStep.parse("extract:1-1000"), file));
+
+    }
+
+    @Test
+    @SneakyThrows
+    void convertImageToPDFTo_given_images_expect_zip_with_one_pdf_per_image() {
+
+        MultipartFile image1 = mock(MultipartFile.class);
+        MultipartFile image2 = mock(MultipartFile.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        when(image1.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/image/image.png")));
+        when(image2.getBytes()).thenReturn(Files.readAllBytes(Path.of("src/test/resources/image/image.png")));
+
+        pdfService.convertImageToPDFTo(outputStream, image1, image2);
+
+        List<byte[]> parts = unzip(outputStream.toByteArray());
+        assertEquals(2, parts.size());
+        for (byte[] part : parts) {
+            try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(part)))) {
+                assertEquals(1, document.getNumberOfPages());
+            }
+        }
+
+    }
+
+    private PdfService pdfService() {
+        return pdfService(new PdfConcurrencyLimiter(pdfConfig, meterRegistry));
+    }
+
+    @SneakyThrows
+    private PdfService pdfService(PdfConcurrencyLimiter limiter) {
+        return new PdfService(pdfConfig, new PdfInputFactory(pdfConfig, pdfBufferPool), new PdfMetrics(meterRegistry), new PdfResultCache(pdfConfig, pdfBufferPool, meterRegistry), new PdfLinearizer(pdfConfig, meterRegistry), limiter, pdfOutputWriter, new PdfPreflight(pdfConfig, pdfBufferPool, meterRegistry), pdfBufferPool);
+    }
+
     private void compareFiles(String expectedFileName, String actualFileName) {
 
         assertThat(actualFileName).isNotBlank().endsWith(".pdf");
@@ -149,6 +992,83 @@ class PdfServiceTest {
 
     }
 
+    @SneakyThrows
+    private String pdfToText(byte[] content) {
+
+        StringBuilder text = new StringBuilder();
+
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(content)))) {
+            int pages = document.getNumberOfPages();
+            for (int i = 1; i <= pages; i++) {
+                text.append(PdfTextExtractor.getTextFromPage(document.getPage(i)));
+            }
+        }
+
+        return text.toString();
+
+    }
+
+    /**
+     * A document of {@code pages} pages of random text, each starting with {@code page <n>}, with a top-level
+     * bookmark on each of {@code bookmarkPages} and a nested one below the last.
+     */
+    @SneakyThrows
+    private byte[] document(int pages, int... bookmarkPages) {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Random random = new Random(pages);
+        try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(outputStream))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            for (int i = 1; i <= pages; i++) {
+                PdfCanvas canvas = new PdfCanvas(pdfDocument.addNewPage()).beginText().setFontAndSize(font, 6).moveText(20, 820).showText("page " + i);
+                for (int line = 0; line < 60; line++) {
+                    canvas.moveText(0, -12).showText(random.ints(120, 'a', 'z' + 1).collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString());
+                }
+                canvas.endText();
+            }
+            PdfOutline outline = null;
+            for (int page : bookmarkPages) {
+                outline = pdfDocument.getOutlines(false).addOutline("Chapter " + page);
+                outline.addDestination(PdfExplicitDestination.createFit(pdfDocument.getPage(page)));
+            }
+            if (outline != null) {
+                outline.addOutline("Section").addDestination(PdfExplicitDestination.createFit(pdfDocument.getPage(pages)));
+            }
+        }
+        return outputStream.toByteArray();
+
+    }
+
+    @SneakyThrows
+    private byte[] multipart(byte[]... files) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (int i = 0; i < files.length; i++) {
+            body.write(String.format("--boundary\r\nContent-Disposition: form-data; name=\"file\"; filename=\"%d\"\r\n\r\n", i).getBytes());
+            body.write(files[i]);
+            body.write("\r\n".getBytes());
+        }
+        body.write("--boundary--\r\n".getBytes());
+        return body.toByteArray();
+    }
+
+    @SneakyThrows
+    private int numberOfPages(byte[] content) {
+        try (PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(content)))) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    @SneakyThrows
+    private List<byte[]> unzip(byte[] content) {
+        List<byte[]> entries = new ArrayList<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(content))) {
+            for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+                entries.add(zipInputStream.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
     @SneakyThrows
     private void deleteTemporaryFiles() {
         try (Stream<Path> files = Files.walk(Path.of("./output/")).filter(Files::isRegularFile)) {
@@ -163,6 +1083,7 @@ class PdfServiceTest {
 
     @SneakyThrows
     private List<String> getFileNames() {
+        pdfOutputWriter.flush();
         List<String> fileNames = new ArrayList<>();
         try (Stream<Path> files = Files.walk(Path.of("./output/")).filter(Files::isRegularFile)) {
             files.forEach(file -> fileNames.add(file.toString()));
@@ -0,0 +1,187 @@
+package com.pdf.pdfapi.service;
+
+import com.pdf.pdfapi.config.PdfConfig;
+import com.pdf.pdfapi.exception.PdfErrorException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamedUploadTest {
+
+    private static final String BOUNDARY = "----boundary7MA4YWxkTrZu0gW";
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=\"" + BOUNDARY + "\"";
+
+    private PdfConfig.Input config;
+
+    private StreamedUpload upload;
+
+    @BeforeEach
+    public void init() {
+        config = new PdfConfig.Input();
+    }
+
+    @AfterEach
+    public void close() {
+        if (upload != null) {
+            upload.close();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void next_given_body_expect_file_parts_in_order_and_other_fields_skipped() {
+
+        // content that contains line breaks and most of the delimiter must come through unchanged
+        byte[] first = ("%PDF-1.7\r\n--" + BOUNDARY.substring(0, 10) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] second = new byte[200_000];
+        new Random(1).nextBytes(second);
+        byte[] body = concat("preamble\r\n".getBytes(), field("steps", "merge"), part("file", "a.pdf", first), part("file", "b.pdf", second), end());
+
+        upload = start(new ByteArrayInputStream(body));
+        List<MultipartFile> files = new ArrayList<>();
+        upload.forEachRemaining(files::add);
+
+        assertThat(files).extracting(MultipartFile::getOriginalFilename).containsExactly("a.pdf", "b.pdf");
+        assertArrayEquals(first, files.get(0).getBytes());
+        assertArrayEquals(second, files.get(1).getBytes());
+        assertEquals("application/pdf", files.get(0).getContentType());
+        assertEquals(2, upload.getReceivedFiles());
+        assertEquals(body.length, upload.getReceivedBytes());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void hasNext_given_body_still_arriving_expect_received_file_handed_out() {
+
+        PipedOutputStream client = new PipedOutputStream();
+        upload = start(new PipedInputStream(client, 64 * 1024));
+
+        // a file is complete once the delimiter after it has arrived
+        byte[] second = part("file", "b.pdf", "second".getBytes());
+        client.write(concat(part("file", "a.pdf", "first".getBytes()), Arrays.copyOf(second, 40)));
+        client.flush();
+        MultipartFile first = CompletableFuture.supplyAsync(() -> upload.next()).get(5, TimeUnit.SECONDS);
+        assertEquals("first", new String(first.getBytes()));
+
+        client.write(concat(Arrays.copyOfRange(second, 40, second.length), end()));
+        client.close();
+        assertEquals("second", new String(upload.next().getBytes()));
+        assertFalse(upload.hasNext());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void read_given_slow_consumer_expect_reading_stops_at_read_ahead() {
+
+        config.setIngestReadAhead(1);
+        byte[] body = concat(part("file", "1.pdf", new byte[10]), part("file", "2.pdf", new byte[10]), part("file", "3.pdf", new byte[10]),
+                part("file", "4.pdf", new byte[10]), end());
+
+        upload = start(new ByteArrayInputStream(body));
+        Thread.sleep(100);
+
+        // one file queued and one waiting to be queued
+        assertEquals(2, upload.getReceivedFiles());
+        assertEquals(4, Stream.generate(() -> upload.hasNext() ? upload.next() : null).takeWhile(file -> file != null).count());
+
+    }
+
+    @Test
+    @SneakyThrows
+    void close_given_files_above_mapped_threshold_expect_temporary_files_deleted() {
+
+        config.setMappedThreshold(DataSize.ofKilobytes(1));
+        byte[] content = new byte[10_000];
+        new Random(2).nextBytes(content);
+        long before = temporaryFiles();
+
+        upload = start(new ByteArrayInputStream(concat(part("file", "a.pdf", content), part("file", "b.pdf", content), end())));
+        MultipartFile first = upload.next();
+
+        assertArrayEquals(content, first.getBytes());
+        assertEquals(content.length, first.getSize());
+        assertThat(temporaryFiles()).isGreaterThan(before);
+
+        upload.close();
+        Thread.sleep(50);
+
+        assertEquals(before, temporaryFiles());
+
+    }
+
+    @Test
+    void next_given_malformed_or_too_large_body_expect_error() {
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(PdfErrorException.class,
+                () -> StreamedUpload.of(InputStream.nullInputStream(), "application/pdf", config)).getStatusCode());
+
+        byte[] second = part("file", "b.pdf", "second".getBytes());
+        StreamedUpload truncated = start(new ByteArrayInputStream(concat(part("file", "a.pdf", "first".getBytes()), Arrays.copyOf(second, 60))));
+        truncated.next();
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(PdfErrorException.class, truncated::hasNext).getStatusCode());
+        truncated.close();
+
+        config.setIngestMaxSize(DataSize.ofKilobytes(1));
+        upload = start(new ByteArrayInputStream(concat(part("file", "a.pdf", new byte[100_000]), end())));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, assertThrows(PdfErrorException.class, upload::hasNext).getStatusCode());
+
+    }
+
+    private StreamedUpload start(InputStream body) {
+        StreamedUpload streamedUpload = StreamedUpload.of(body, CONTENT_TYPE, config);
+        streamedUpload.start();
+        return streamedUpload;
+    }
+
+    private static byte[] part(String name, String filename, byte[] content) {
+        String headers = String.format("--%s\r\nContent-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\nContent-Type: application/pdf\r\n\r\n",
+                BOUNDARY, name, filename);
+        return concat(headers.getBytes(StandardCharsets.ISO_8859_1), content, "\r\n".getBytes());
+    }
+
+    private static byte[] field(String name, String value) {
+        return String.format("--%s\r\nContent-Disposition: form-data; name=\"%s\"\r\n\r\n%s\r\n", BOUNDARY, name, value).getBytes();
+    }
+
+    private static byte[] end() {
+        return ("--" + BOUNDARY + "--\r\n").getBytes();
+    }
+
+    @SneakyThrows
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            outputStream.write(part);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @SneakyThrows
+    private static long temporaryFiles() {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("pdfapi-upload-")).count();
+        }
+    }
+
+}